@@ -0,0 +1,35 @@
+package com.reactivespring.benchmarks;
+
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static MovieInfo movieInfo(String id) {
+        return new MovieInfo(id, "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane", "Liam Neeson"),
+                LocalDate.parse("2005-06-15"), 3L);
+    }
+
+    static List<Review> reviews(String movieId, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> new Review(movieId + "-" + i, Long.valueOf(movieId), "Awesome Movie, review number " + i, (double) (i % 5) + 0.5))
+                .collect(Collectors.toList());
+    }
+
+    static Movie movie(String id, int reviewCount) {
+        return new Movie(movieInfo(id), reviews(id, reviewCount));
+    }
+
+    static List<String> ids(int count) {
+        return IntStream.rangeClosed(1, count).mapToObj(String::valueOf).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,113 @@
+package com.reactivespring.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips of the payloads the services exchange. The ObjectMapper is configured like Spring Boot's,
+ * and the codec benchmarks go through the same WebFlux encoder and decoder as the WebClient and the controllers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JsonCodecBenchmark {
+
+    private static final ResolvableType MOVIE_TYPE = ResolvableType.forClass(Movie.class);
+
+    @Param({"10", "100"})
+    private int reviewCount;
+
+    private ObjectMapper objectMapper;
+    private Jackson2JsonEncoder encoder;
+    private Jackson2JsonDecoder decoder;
+
+    private MovieInfo movieInfo;
+    private Review review;
+    private Movie movie;
+    private byte[] movieInfoJson;
+    private byte[] reviewJson;
+    private byte[] movieJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        encoder = new Jackson2JsonEncoder(objectMapper);
+        decoder = new Jackson2JsonDecoder(objectMapper);
+
+        movieInfo = Fixtures.movieInfo("1");
+        review = Fixtures.reviews("1", 1).get(0);
+        movie = Fixtures.movie("1", reviewCount);
+        movieInfoJson = objectMapper.writeValueAsBytes(movieInfo);
+        reviewJson = objectMapper.writeValueAsBytes(review);
+        movieJson = objectMapper.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public byte[] encodeMovieInfo() throws IOException {
+        return objectMapper.writeValueAsBytes(movieInfo);
+    }
+
+    @Benchmark
+    public MovieInfo decodeMovieInfo() throws IOException {
+        return objectMapper.readValue(movieInfoJson, MovieInfo.class);
+    }
+
+    @Benchmark
+    public byte[] encodeReview() throws IOException {
+        return objectMapper.writeValueAsBytes(review);
+    }
+
+    @Benchmark
+    public Review decodeReview() throws IOException {
+        return objectMapper.readValue(reviewJson, Review.class);
+    }
+
+    @Benchmark
+    public byte[] encodeMovie() throws IOException {
+        return objectMapper.writeValueAsBytes(movie);
+    }
+
+    @Benchmark
+    public Movie decodeMovie() throws IOException {
+        return objectMapper.readValue(movieJson, Movie.class);
+    }
+
+    @Benchmark
+    public void encodeMovieWithCodec(Blackhole blackhole) {
+        DataBuffer buffer = encoder.encodeValue(movie, DefaultDataBufferFactory.sharedInstance, MOVIE_TYPE,
+                MediaType.APPLICATION_JSON, null);
+        blackhole.consume(buffer);
+        DataBufferUtils.release(buffer);
+    }
+
+    @Benchmark
+    public Object decodeMovieWithCodec() {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(movieJson);
+        return decoder.decode(buffer, MOVIE_TYPE, MediaType.APPLICATION_JSON, null);
+    }
+}
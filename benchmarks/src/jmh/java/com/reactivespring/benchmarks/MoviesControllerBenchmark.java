@@ -0,0 +1,147 @@
+package com.reactivespring.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.controller.MoviesController;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.ReflectionUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * The MoviesController aggregation (zip or flatMap, top-N reviews, ETag hashing and the batch endpoint) against
+ * clients that answer from memory, so only the pipeline itself and the serialization are measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class MoviesControllerBenchmark {
+
+    private static final int BATCH_SIZE = 50;
+
+    @Param({"true", "false"})
+    private boolean parallelAggregation;
+
+    @Param({"10", "100"})
+    private int reviewCount;
+
+    private MoviesController moviesController;
+    private List<String> batchIds;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+        batchIds = Fixtures.ids(BATCH_SIZE);
+        moviesController = new MoviesController(new StubMoviesInfoRestClient(batchIds),
+                new StubReviewsRestClient(batchIds, reviewCount), objectMapper);
+        // The @Value fields, as application.yml would set them
+        setField("parallelAggregation", parallelAggregation);
+        setField("maxBatchIds", 100);
+        setField("defaultTopReviews", 0);
+        setField("maxTopReviews", 100);
+        setField("maxAge", Duration.ZERO);
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> getMovieById() {
+        return moviesController.getMovieById("1", null).block();
+    }
+
+    @Benchmark
+    public ResponseEntity<byte[]> getMovieByIdTopReviews() {
+        return moviesController.getMovieById("1", 5).block();
+    }
+
+    @Benchmark
+    public List<Movie> getMoviesByIds() {
+        return moviesController.getMoviesByIds(batchIds).getBody().collectList().block();
+    }
+
+    private void setField(String name, Object value) {
+        Field field = ReflectionUtils.findField(MoviesController.class, name);
+        ReflectionUtils.makeAccessible(field);
+        ReflectionUtils.setField(field, moviesController, value);
+    }
+
+    static class StubMoviesInfoRestClient extends MoviesInfoRestClient {
+
+        private final Map<String, MovieInfo> movieInfos;
+
+        StubMoviesInfoRestClient(List<String> ids) {
+            super(null, null, null);
+            this.movieInfos = ids.stream().collect(Collectors.toMap(Function.identity(), Fixtures::movieInfo));
+        }
+
+        @Override
+        public Mono<MovieInfo> getMovieInfo(String movieId) {
+            return Mono.justOrEmpty(movieInfos.get(movieId));
+        }
+
+        @Override
+        public Flux<MovieInfo> getMovieInfos(List<String> movieIds) {
+            return Flux.fromIterable(movieIds).mapNotNull(movieInfos::get);
+        }
+    }
+
+    static class StubReviewsRestClient extends ReviewsRestClient {
+
+        private final Map<String, List<Review>> reviews;
+        private final Map<String, ReviewSummary> summaries;
+
+        StubReviewsRestClient(List<String> ids, int reviewCount) {
+            super(null, null, null);
+            this.reviews = ids.stream().collect(Collectors.toMap(Function.identity(), id -> Fixtures.reviews(id, reviewCount)));
+            this.summaries = ids.stream().collect(Collectors.toMap(Function.identity(), id -> summary(id, reviews.get(id))));
+        }
+
+        @Override
+        public Flux<Review> getReviews(String movieId) {
+            return Flux.fromIterable(reviews.getOrDefault(movieId, List.of()));
+        }
+
+        @Override
+        public Flux<Review> getTopReviews(String movieId, int limit) {
+            return getReviews(movieId).take(limit);
+        }
+
+        @Override
+        public Mono<ReviewSummary> getReviewSummary(String movieId) {
+            return Mono.justOrEmpty(summaries.get(movieId));
+        }
+
+        @Override
+        public Flux<Review> getReviews(List<String> movieIds) {
+            return Flux.fromIterable(movieIds).concatMapIterable(id -> reviews.getOrDefault(id, List.of()));
+        }
+
+        private static ReviewSummary summary(String movieId, List<Review> movieReviews) {
+            double average = movieReviews.stream().mapToDouble(Review::getRating).average().orElse(0);
+            return new ReviewSummary(Long.valueOf(movieId), movieReviews.size(), average, 0.0, Map.of());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.reactivespring.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * The name transforming chains from the reactive-programming-using-reactor exercises, run synchronously so the
+ * score is the per-operator overhead rather than scheduling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class OperatorChainBenchmark {
+
+    private static final List<String> NAMES = List.of("alex", "ben", "chloe");
+
+    @Param({"3", "300"})
+    private int size;
+
+    private List<String> names;
+
+    @Setup
+    public void setUp() {
+        names = IntStream.range(0, size).mapToObj(i -> NAMES.get(i % NAMES.size())).collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<String> mapFilter() {
+        return Flux.fromIterable(names)
+                .map(String::toUpperCase)
+                .filter(name -> name.length() > 3)
+                .map(name -> name.length() + "-" + name)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public Long flatMap() {
+        return Flux.fromIterable(names)
+                .map(String::toUpperCase)
+                .flatMap(name -> Flux.fromArray(name.split("")))
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public Long concatMap() {
+        return Flux.fromIterable(names)
+                .map(String::toUpperCase)
+                .concatMap(name -> Flux.fromArray(name.split("")))
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public Long transformWithDefault() {
+        return Flux.fromIterable(names)
+                .transform(flux -> flux.map(String::toUpperCase).filter(name -> name.length() > 6))
+                .defaultIfEmpty("default")
+                .count()
+                .block();
+    }
+
+    @Benchmark
+    public List<String> zip() {
+        Flux<String> first = Flux.fromIterable(names);
+        Flux<String> second = Flux.fromIterable(names).map(String::toUpperCase);
+        return Flux.zip(first, second, (a, b) -> a + b)
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public Long merge() {
+        return Flux.merge(Flux.fromIterable(names), Flux.fromIterable(names).map(String::toUpperCase))
+                .count()
+                .block();
+    }
+}
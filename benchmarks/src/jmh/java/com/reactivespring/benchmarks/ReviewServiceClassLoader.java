@@ -0,0 +1,62 @@
+package com.reactivespring.benchmarks;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+
+/**
+ * Loads the classes of movies-review-service ahead of the benchmark classpath, where com.reactivespring.domain.Review
+ * is the movies-service one. Everything else, service-support and the validation API included, comes from the
+ * benchmark classpath, so instances can be handed straight to the shared code.
+ */
+final class ReviewServiceClassLoader extends URLClassLoader {
+
+    static final String CLASSPATH_PROPERTY = "benchmarks.reviewService.classpath";
+
+    private ReviewServiceClassLoader(URL[] urls, ClassLoader parent) {
+        super(urls, parent);
+    }
+
+    // The jmh task passes the movies-review-service jar in CLASSPATH_PROPERTY
+    static ReviewServiceClassLoader fromSystemProperty() {
+        String classpath = System.getProperty(CLASSPATH_PROPERTY);
+        if (classpath == null || classpath.isBlank()) {
+            throw new IllegalStateException(CLASSPATH_PROPERTY + " is not set; run the benchmarks with ./gradlew :benchmarks:jmh");
+        }
+        URL[] urls = Arrays.stream(classpath.split(File.pathSeparator))
+                .map(ReviewServiceClassLoader::toUrl)
+                .toArray(URL[]::new);
+        return new ReviewServiceClassLoader(urls, ReviewServiceClassLoader.class.getClassLoader());
+    }
+
+    @Override
+    protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded == null && name.startsWith("com.reactivespring.")) {
+                try {
+                    loaded = findClass(name);
+                } catch (ClassNotFoundException e) {
+                    // not part of the review service, so shared with the benchmark classpath
+                }
+            }
+            if (loaded == null) {
+                return super.loadClass(name, resolve);
+            }
+            if (resolve) {
+                resolveClass(loaded);
+            }
+            return loaded;
+        }
+    }
+
+    private static URL toUrl(String path) {
+        try {
+            return new File(path).toURI().toURL();
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(path, e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.reactivespring.benchmarks;
+
+import com.reactivespring.validation.BeanValidation;
+import com.reactivespring.validation.ValidationErrors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The work ReviewHandler does for every review posted to movies-review-service: the shared BeanValidation run against
+ * the service's own Review. That Review clashes with the movies-service one on this classpath, so it comes from
+ * {@link ReviewServiceClassLoader}; only the setup goes through reflection.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ReviewValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private ReviewServiceClassLoader reviewServiceClassLoader;
+    private BeanValidation beanValidation;
+    private Object validReview;
+    private Object invalidReview;
+
+    @Setup
+    public void setUp() throws Exception {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        beanValidation = new BeanValidation(validatorFactory.getValidator());
+        reviewServiceClassLoader = ReviewServiceClassLoader.fromSystemProperty();
+        Constructor<?> review = reviewServiceClassLoader.loadClass("com.reactivespring.domain.Review")
+                .getConstructor(String.class, Long.class, String.class, Double.class);
+        validReview = review.newInstance("1", 1L, "Awesome Movie", 4.5);
+        invalidReview = review.newInstance("2", 0L, " ", 7.5);
+        if (beanValidation.validate(validReview).hasErrors() || !beanValidation.validate(invalidReview).hasErrors()) {
+            throw new IllegalStateException("Review constraints were not picked up from " + review.getDeclaringClass());
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        validatorFactory.close();
+        reviewServiceClassLoader.close();
+    }
+
+    @Benchmark
+    public ValidationErrors validateValidReview() {
+        return beanValidation.validate(validReview);
+    }
+
+    @Benchmark
+    public ValidationErrors validateInvalidReview() {
+        return beanValidation.validate(invalidReview);
+    }
+}
@@ -0,0 +1,51 @@
+package com.reactivespring.benchmarks;
+
+import com.reactivespring.logging.ReactiveLogging;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of Reactor signal logging on a short Mono pipeline: an unconditional log() against
+ * ReactiveLogging.debugSignals with the per-request flag off and on. The signals are written to a file
+ * (see logback.xml) so the console stays readable.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SignalLoggingBenchmark {
+
+    private static final String CATEGORY = "benchmarks.signals";
+
+    @Benchmark
+    public String noLogging() {
+        return pipeline().block();
+    }
+
+    @Benchmark
+    public String log() {
+        return pipeline().log(CATEGORY).block();
+    }
+
+    @Benchmark
+    public String debugSignalsOff() {
+        return ReactiveLogging.debugSignals(pipeline(), CATEGORY).block();
+    }
+
+    @Benchmark
+    public String debugSignalsOn() {
+        return ReactiveLogging.debugSignals(pipeline(), CATEGORY)
+                .contextWrite(context -> context.put(ReactiveLogging.DEBUG_KEY, true))
+                .block();
+    }
+
+    private static Mono<String> pipeline() {
+        return Mono.just("alex").map(String::toUpperCase).filter(name -> name.length() > 3);
+    }
+}
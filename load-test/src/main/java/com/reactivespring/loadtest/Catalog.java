@@ -0,0 +1,92 @@
+package com.reactivespring.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The seeded movies and reviews. movieInfoId n is the n-th most popular movie: it gets the n-th largest share of the
+ * reviews and is picked for reads with the same Zipf probability. Payloads are plain maps so the load test does not
+ * depend on (and clash between) the services' own domain classes.
+ */
+public class Catalog {
+
+    private static final List<String> CAST = List.of("Christian Bale", "Michael Cane", "Liam Neeson", "Heath Ledger");
+
+    private final int movies;
+    private final double[] cumulative;
+    private final Map<String, List<Map<String, Object>>> reviewsByMovieId = new LinkedHashMap<>();
+
+    public Catalog(int movies, int reviewsPerMovie, double skew, long seed) {
+        this.movies = movies;
+        this.cumulative = new double[movies];
+        double[] weights = new double[movies];
+        double total = 0;
+        for (int rank = 1; rank <= movies; rank++) {
+            weights[rank - 1] = 1 / Math.pow(rank, skew);
+            total += weights[rank - 1];
+        }
+        double sum = 0;
+        for (int i = 0; i < movies; i++) {
+            sum += weights[i] / total;
+            cumulative[i] = sum;
+        }
+
+        Random random = new Random(seed);
+        long totalReviews = (long) movies * reviewsPerMovie;
+        for (int rank = 1; rank <= movies; rank++) {
+            String movieId = String.valueOf(rank);
+            int count = (int) Math.round(totalReviews * weights[rank - 1] / total);
+            List<Map<String, Object>> reviews = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                reviews.add(review(movieId + "-" + i, movieId, random));
+            }
+            reviewsByMovieId.put(movieId, Collections.unmodifiableList(reviews));
+        }
+    }
+
+    public int size() {
+        return movies;
+    }
+
+    /** A movieInfoId drawn by popularity. */
+    public String randomMovieId(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int rank = index >= 0 ? index + 1 : Math.min(-index, movies);
+        return String.valueOf(rank);
+    }
+
+    public Map<String, Object> movieInfo(String movieId) {
+        int id = Integer.parseInt(movieId);
+        Map<String, Object> movieInfo = new LinkedHashMap<>();
+        movieInfo.put("movieInfoId", movieId);
+        movieInfo.put("name", "Movie " + movieId);
+        movieInfo.put("year", 1950 + id % 70);
+        movieInfo.put("cast", CAST.subList(0, 1 + id % CAST.size()));
+        movieInfo.put("releaseDate", String.format("%d-%02d-%02d", 1950 + id % 70, 1 + id % 12, 1 + id % 28));
+        return movieInfo;
+    }
+
+    public List<Map<String, Object>> reviews(String movieId) {
+        return reviewsByMovieId.getOrDefault(movieId, List.of());
+    }
+
+    public long reviewCount() {
+        return reviewsByMovieId.values().stream().mapToLong(List::size).sum();
+    }
+
+    public static Map<String, Object> review(String reviewId, String movieId, Random random) {
+        Map<String, Object> review = new LinkedHashMap<>();
+        if (reviewId != null) {
+            review.put("reviewId", reviewId);
+        }
+        review.put("movieInfoId", Long.valueOf(movieId));
+        review.put("comment", "Review of movie " + movieId);
+        review.put("rating", random.nextInt(51) / 10.0);
+        return review;
+    }
+}
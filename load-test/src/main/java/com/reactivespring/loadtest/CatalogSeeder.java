@@ -0,0 +1,51 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes the catalog through the bulk NDJSON endpoints of movies-info-service and movies-review-service.
+ */
+@Slf4j
+public class CatalogSeeder {
+
+    private static final Set<Object> WRITTEN = Set.of("CREATED", "UPDATED");
+
+    private final WebClient webClient;
+
+    public CatalogSeeder(WebClient webClient) {
+        this.webClient = webClient;
+    }
+
+    public void seed(Catalog catalog, String moviesInfoUrl, String reviewsUrl) {
+        Flux<String> movieIds = Flux.range(1, catalog.size()).map(String::valueOf);
+        long failedMovieInfos = bulk(moviesInfoUrl + "/v1/movie-infos/bulk", movieIds.map(catalog::movieInfo));
+        long failedReviews = bulk(reviewsUrl + "/v1/reviews/bulk", movieIds.flatMapIterable(catalog::reviews));
+        if (failedMovieInfos > 0 || failedReviews > 0) {
+            throw new IllegalStateException("Seeding failed for " + failedMovieInfos + " movie infos and " + failedReviews + " reviews");
+        }
+        log.info("Seeded {} movie infos and {} reviews", catalog.size(), catalog.reviewCount());
+    }
+
+    // Number of items the service did not write
+    @SuppressWarnings("rawtypes")
+    private long bulk(String url, Flux<Map<String, Object>> items) {
+        Long failed = webClient.post()
+                .uri(url)
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(items, Map.class)
+                .retrieve()
+                .bodyToFlux(Map.class)
+                .filter(result -> !WRITTEN.contains(result.get("status")))
+                .doOnNext(result -> log.warn("Not seeded: {}", result))
+                .count()
+                .block();
+        return failed == null ? 0 : failed;
+    }
+}
@@ -0,0 +1,154 @@
+package com.reactivespring.loadtest;
+
+import io.netty.channel.ChannelOption;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Entry point of ./gradlew :load-test:loadTest: starts the topology, seeds it, runs the load and reports.
+ */
+@Slf4j
+public class LoadTest {
+
+    private static final String MOVIES_INFO_SERVICE = "movies-info-service";
+    private static final String MOVIES_REVIEW_SERVICE = "movies-review-service";
+    private static final String MOVIES_SERVICE = "movies-service";
+
+    private final LoadTestSettings settings;
+    private final Catalog catalog;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    // Closed in reverse order, also by the shutdown hook if the run is interrupted
+    private final List<AutoCloseable> started = Collections.synchronizedList(new ArrayList<>());
+
+    public LoadTest(LoadTestSettings settings) {
+        this.settings = settings;
+        this.catalog = new Catalog(settings.getMovies(), settings.getReviewsPerMovie(), settings.getSkew(), 42);
+        this.connectionProvider = ConnectionProvider.builder("load-test")
+                .maxConnections(settings.getMaxInFlight())
+                .pendingAcquireMaxCount(-1)
+                .pendingAcquireTimeout(settings.getRequestTimeout())
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, 5000)
+                .responseTimeout(settings.getRequestTimeout());
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(16 * 1024 * 1024))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTest loadTest = new LoadTest(new LoadTestSettings());
+        Runtime.getRuntime().addShutdownHook(new Thread(loadTest::stop));
+        try {
+            loadTest.run();
+        } finally {
+            loadTest.stop();
+        }
+    }
+
+    public void run() throws Exception {
+        Workload workload = settings.getTopology() == LoadTestSettings.Topology.SERVICES ? startServices() : startWithStubs();
+        Map<Workload.Route, RouteStats> stats = new OpenLoadGenerator(workload, settings).run();
+
+        LoadTestReport report = new LoadTestReport(settings, stats);
+        Path file = settings.getReportDir().resolve("report.json");
+        report.write(file);
+        report.print(System.out);
+        log.info("Report written to {}", file);
+    }
+
+    private Workload startServices() throws Exception {
+        requireCachedMongo();
+        List<String> common = List.of("--tracing.exporter=none", "--spring.mongodb.embedded.version=" + settings.getMongoVersion());
+        String reviewsUrl = "http://localhost:" + settings.getReviewsPort();
+        String moviesInfoUrl = "http://localhost:" + settings.getMoviesInfoPort();
+
+        ServiceProcess reviews = start(MOVIES_REVIEW_SERVICE, "com.reactivespring.MoviesReviewServiceApplication",
+                settings.getReviewsPort(), common);
+        ServiceProcess moviesInfo = start(MOVIES_INFO_SERVICE, "com.reactivespring.MoviesInfoServiceApplication",
+                settings.getMoviesInfoPort(), concat(common, "--reviews.url=" + reviewsUrl + "/v1/reviews"));
+        reviews.awaitHealthy(webClient, settings.getStartupTimeout());
+        moviesInfo.awaitHealthy(webClient, settings.getStartupTimeout());
+        new CatalogSeeder(webClient).seed(catalog, moviesInfoUrl, reviewsUrl);
+
+        ServiceProcess movies = startMoviesService(moviesInfoUrl, reviewsUrl);
+        return new Workload(webClient, catalog, settings, movies.baseUrl(), moviesInfoUrl, reviewsUrl);
+    }
+
+    // flapdoodle would otherwise try to download Mongo in each service and time out there without network access
+    private void requireCachedMongo() throws IOException {
+        Path cache = settings.getMongoCache();
+        String version = settings.getMongoVersion();
+        boolean cached = false;
+        if (Files.isDirectory(cache)) {
+            try (Stream<Path> files = Files.walk(cache)) {
+                // the downloaded archive is named after the version, and so is the directory it is extracted to
+                cached = files.filter(Files::isRegularFile)
+                        .anyMatch(file -> cache.relativize(file).toString().contains(version));
+            }
+        }
+        if (!cached) {
+            throw new IllegalStateException("No Mongo " + version + " binary in " + cache + ". topology=services runs the "
+                    + "services on the embedded Mongo the integration tests cache there; run them once with network access, "
+                    + "point -Ploadtest.mongoCache at a filled cache, or use -Ploadtest.topology=stubs");
+        }
+    }
+
+    private Workload startWithStubs() throws Exception {
+        StubDownstreams stubs = new StubDownstreams(catalog, settings.getMoviesInfoPort());
+        started.add(stubs);
+        log.info("Serving {} movies and {} reviews from stubs at {}", catalog.size(), catalog.reviewCount(), stubs.baseUrl());
+
+        ServiceProcess movies = startMoviesService(stubs.baseUrl(), stubs.baseUrl());
+        return new Workload(webClient, catalog, settings, movies.baseUrl(), null, null);
+    }
+
+    private ServiceProcess startMoviesService(String moviesInfoUrl, String reviewsUrl) throws Exception {
+        ServiceProcess movies = start(MOVIES_SERVICE, "com.reactivespring.MoviesServiceApplication", settings.getMoviesPort(), List.of(
+                "--tracing.exporter=none",
+                "--restClient.moviesInfoUrl=" + moviesInfoUrl + "/v1/movie-infos",
+                "--restClient.reviewsUrl=" + reviewsUrl + "/v1/reviews"));
+        movies.awaitHealthy(webClient, settings.getStartupTimeout());
+        return movies;
+    }
+
+    private ServiceProcess start(String name, String mainClass, int port, List<String> args) throws Exception {
+        ServiceProcess service = ServiceProcess.start(name, mainClass, port, settings, args);
+        started.add(service);
+        return service;
+    }
+
+    private void stop() {
+        synchronized (started) {
+            for (int i = started.size() - 1; i >= 0; i--) {
+                try {
+                    started.get(i).close();
+                } catch (Exception e) {
+                    log.warn("Failed to stop {}", started.get(i), e);
+                }
+            }
+            started.clear();
+        }
+        connectionProvider.dispose();
+    }
+
+    private static List<String> concat(List<String> args, String arg) {
+        List<String> all = new ArrayList<>(args);
+        all.add(arg);
+        return all;
+    }
+}
@@ -0,0 +1,102 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.Value;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Throughput, latency percentiles and error rate per route over the measured window, printed as a table and
+ * written as JSON next to the settings that produced it.
+ */
+public class LoadTestReport {
+
+    @Value
+    public static class RouteResult {
+        String route;
+        long requests;
+        double throughput;
+        double p50Millis;
+        double p99Millis;
+        double p999Millis;
+        double maxMillis;
+        double errorRate;
+        Map<String, Long> outcomes;
+    }
+
+    private final Map<String, Object> settings = new LinkedHashMap<>();
+    private final List<RouteResult> routes = new ArrayList<>();
+
+    public LoadTestReport(LoadTestSettings settings, Map<Workload.Route, RouteStats> stats) {
+        this.settings.put("topology", settings.getTopology());
+        this.settings.put("movies", settings.getMovies());
+        this.settings.put("reviewsPerMovie", settings.getReviewsPerMovie());
+        this.settings.put("skew", settings.getSkew());
+        this.settings.put("rate", settings.getRate());
+        this.settings.put("warmup", settings.getWarmup().toString());
+        this.settings.put("duration", settings.getDuration().toString());
+        this.settings.put("mix", settings.getMix());
+
+        double seconds = settings.getDuration().toMillis() / 1000.0;
+        Histogram total = new Histogram(3);
+        long totalRequests = 0;
+        long totalErrors = 0;
+        Map<String, Long> totalOutcomes = new LinkedHashMap<>();
+        for (Map.Entry<Workload.Route, RouteStats> entry : stats.entrySet()) {
+            RouteStats routeStats = entry.getValue();
+            routes.add(result(entry.getKey().getName(), routeStats.getRequests(), routeStats.getErrors(), routeStats.getLatencies(),
+                    routeStats.getOutcomes(), seconds));
+            total.add(routeStats.getLatencies());
+            totalRequests += routeStats.getRequests();
+            totalErrors += routeStats.getErrors();
+            routeStats.getOutcomes().forEach((outcome, count) -> totalOutcomes.merge(outcome, count, Long::sum));
+        }
+        routes.add(result("total", totalRequests, totalErrors, total, totalOutcomes, seconds));
+    }
+
+    private static RouteResult result(String route, long requests, long errors, Histogram latencies, Map<String, Long> outcomes, double seconds) {
+        return new RouteResult(route, requests, requests / seconds,
+                millis(latencies.getValueAtPercentile(50)),
+                millis(latencies.getValueAtPercentile(99)),
+                millis(latencies.getValueAtPercentile(99.9)),
+                millis(latencies.getMaxValue()),
+                requests == 0 ? 0 : (double) errors / requests,
+                outcomes);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    public void print(PrintStream out) {
+        String format = "%-36s %9s %10s %10s %10s %10s %10s %8s  %s%n";
+        out.printf(format, "route", "requests", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "errors", "outcomes");
+        for (RouteResult route : routes) {
+            out.printf(format, route.getRoute(), route.getRequests(),
+                    String.format("%.1f", route.getThroughput()),
+                    String.format("%.2f", route.getP50Millis()),
+                    String.format("%.2f", route.getP99Millis()),
+                    String.format("%.2f", route.getP999Millis()),
+                    String.format("%.2f", route.getMaxMillis()),
+                    String.format("%.2f%%", route.getErrorRate() * 100),
+                    route.getOutcomes());
+        }
+    }
+
+    public void write(Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("routes", routes);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+    }
+}
@@ -0,0 +1,92 @@
+package com.reactivespring.loadtest;
+
+import lombok.Getter;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the load test can be tuned with, read from loadtest.* system properties (the Gradle task passes its
+ * -Ploadtest.* properties through).
+ */
+@Getter
+public class LoadTestSettings {
+
+    public enum Topology {
+        // all three services, the info and review services on the embedded Mongo cached in mongoCache
+        SERVICES,
+        // movies-service only, its downstreams answered from memory by StubDownstreams
+        STUBS
+    }
+
+    private static final String STUBS_MIX = "movie=75,movie-top=19,movies-batch=6";
+    private static final String SERVICES_MIX =
+            "movie=60,movie-top=15,movies-batch=5,movie-info=5,review-write=10,movie-info-write=4,stream=1";
+
+    private final Topology topology = Topology.valueOf(property("topology", "services").toUpperCase());
+
+    // Catalog: movieInfoIds 1..movies, reviews per movie following a Zipf distribution over the movie ids
+    private final int movies = Integer.parseInt(property("movies", "1000"));
+    private final int reviewsPerMovie = Integer.parseInt(property("reviewsPerMovie", "20"));
+    // 0 spreads reviews and reads evenly; around 1 a few movies get most of both
+    private final double skew = Double.parseDouble(property("skew", "1.0"));
+
+    // Open model: requests arrive at this average rate (Poisson) whether or not earlier ones have completed
+    private final double rate = Double.parseDouble(property("rate", "200"));
+    private final Duration warmup = duration("warmup", "15s");
+    private final Duration duration = duration("duration", "60s");
+    // The stubs only answer movies-service, so its default mix has the movies routes alone
+    private final Map<String, Integer> mix = mix(property("mix", topology == Topology.SERVICES ? SERVICES_MIX : STUBS_MIX));
+    private final int batchSize = Integer.parseInt(property("batchSize", "20"));
+    private final int topReviews = Integer.parseInt(property("topReviews", "10"));
+    // how long each stream request stays subscribed after its headers arrive
+    private final Duration streamHold = duration("streamHold", "5s");
+    // arrivals beyond this many outstanding requests are counted as dropped instead of queueing in the generator
+    private final int maxInFlight = Integer.parseInt(property("maxInFlight", "5000"));
+    private final Duration requestTimeout = duration("requestTimeout", "30s");
+
+    private final int moviesInfoPort = Integer.parseInt(property("moviesInfoPort", "18080"));
+    private final int reviewsPort = Integer.parseInt(property("reviewsPort", "18081"));
+    private final int moviesPort = Integer.parseInt(property("moviesPort", "18082"));
+    private final String mongoVersion = property("mongoVersion", "3.5.5");
+    // where flapdoodle keeps the Mongo archives it downloaded and the binaries it extracted from them
+    private final Path mongoCache = Path.of(property("mongoCache", System.getProperty("user.home") + "/.embedmongo"));
+    private final List<String> serviceJvmArgs = Arrays.asList(property("serviceJvmArgs", "-Xms512m -Xmx512m").trim().split("\\s+"));
+    private final Duration startupTimeout = duration("startupTimeout", "3m");
+
+    private final Path reportDir = Path.of(property("reportDir", "build/reports/load-test"));
+    private final Path logDir = Path.of(property("logDir", "build/load-test"));
+
+    public String classpath(String service) {
+        String classpath = System.getProperty("loadtest.classpath." + service);
+        if (classpath == null) {
+            throw new IllegalStateException("loadtest.classpath." + service + " is not set; run the load test with ./gradlew :load-test:loadTest");
+        }
+        return classpath;
+    }
+
+    private static String property(String name, String defaultValue) {
+        return System.getProperty("loadtest." + name, defaultValue);
+    }
+
+    private static Duration duration(String name, String defaultValue) {
+        return DurationStyle.detectAndParse(property(name, defaultValue));
+    }
+
+    private static Map<String, Integer> mix(String value) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split("=");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("loadtest.mix entries look like route=weight, got " + entry);
+            }
+            weights.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+}
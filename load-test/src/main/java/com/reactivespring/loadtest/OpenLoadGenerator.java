@@ -0,0 +1,89 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load: arrivals follow a Poisson process at loadtest.rate, independent of how fast responses come back,
+ * so a slow system sees requests pile up the way it would in production instead of the generator backing off.
+ * Requests are sent without blocking from a single thread; the warmup arrivals are sent but not recorded.
+ */
+@Slf4j
+public class OpenLoadGenerator {
+
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private final Workload workload;
+    private final LoadTestSettings settings;
+    private final Map<Workload.Route, RouteStats> stats = new LinkedHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public OpenLoadGenerator(Workload workload, LoadTestSettings settings) {
+        this.workload = workload;
+        this.settings = settings;
+        workload.getRoutes().forEach(route -> stats.put(route, new RouteStats()));
+    }
+
+    public Map<Workload.Route, RouteStats> run() {
+        Random random = new Random(7);
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / settings.getRate();
+        long start = System.nanoTime();
+        long measureFrom = start + settings.getWarmup().toNanos();
+        long end = measureFrom + settings.getDuration().toNanos();
+        long nextProgress = start + PROGRESS_INTERVAL;
+        double next = start;
+
+        log.info("Sending {} requests/s for {} of warmup and {} measured", settings.getRate(), settings.getWarmup(), settings.getDuration());
+        while (next < end) {
+            long now = System.nanoTime();
+            while (next <= now && next < end) {
+                fire(workload.next(random), random, (long) next, next >= measureFrom);
+                next += -Math.log(1 - random.nextDouble()) * meanGapNanos;
+            }
+            if (now >= nextProgress) {
+                log.info("{}s elapsed, {} requests in flight", TimeUnit.NANOSECONDS.toSeconds(now - start), inFlight.get());
+                nextProgress += PROGRESS_INTERVAL;
+            }
+            LockSupport.parkNanos(Math.max(0, Math.min((long) next - System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(1))));
+        }
+
+        // Requests that arrived inside the window count even when they complete after it
+        long drainUntil = System.nanoTime() + settings.getRequestTimeout().toNanos();
+        while (inFlight.get() > 0 && System.nanoTime() < drainUntil) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        return stats;
+    }
+
+    private void fire(Workload.Route route, Random random, long dueNanos, boolean measured) {
+        RouteStats routeStats = measured ? stats.get(route) : null;
+        if (inFlight.incrementAndGet() > settings.getMaxInFlight()) {
+            inFlight.decrementAndGet();
+            if (routeStats != null) {
+                routeStats.recordDropped();
+            }
+            return;
+        }
+        Duration timeout = settings.getRequestTimeout();
+        Mono.defer(() -> route.request(random))
+                .timeout(timeout)
+                .doFinally(signal -> inFlight.decrementAndGet())
+                .subscribe(status -> {
+                    if (routeStats != null) {
+                        routeStats.recordResponse(status, System.nanoTime() - dueNanos);
+                    }
+                }, e -> {
+                    if (routeStats != null) {
+                        routeStats.recordIoError(System.nanoTime() - dueNanos);
+                    }
+                });
+    }
+}
@@ -0,0 +1,65 @@
+package com.reactivespring.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcomes of one route during the measured part of the run. Latencies are recorded in microseconds from the
+ * moment the request was due to be sent, so time spent queueing behind slow requests is not hidden.
+ */
+public class RouteStats {
+
+    public static final String DROPPED = "dropped";
+    public static final String IO_ERROR = "io-error";
+
+    private final Histogram latencies = new ConcurrentHistogram(3);
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public void recordResponse(int status, long latencyNanos) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        record(String.valueOf(status), status >= 400);
+    }
+
+    public void recordIoError(long latencyNanos) {
+        latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        record(IO_ERROR, true);
+    }
+
+    public void recordDropped() {
+        record(DROPPED, true);
+    }
+
+    private void record(String outcome, boolean error) {
+        requests.increment();
+        if (error) {
+            errors.increment();
+        }
+        outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public Histogram getLatencies() {
+        return latencies;
+    }
+
+    public Map<String, Long> getOutcomes() {
+        Map<String, Long> counts = new TreeMap<>();
+        outcomes.forEach((outcome, count) -> counts.put(outcome, count.sum()));
+        return counts;
+    }
+}
@@ -0,0 +1,82 @@
+package com.reactivespring.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One service running in its own JVM, so the services keep their own classpaths (their domain classes share names).
+ * Its output goes to logDir/name.log.
+ */
+@Slf4j
+public class ServiceProcess implements AutoCloseable {
+
+    private final String name;
+    private final int port;
+    private final Process process;
+    private final Path logFile;
+
+    private ServiceProcess(String name, int port, Process process, Path logFile) {
+        this.name = name;
+        this.port = port;
+        this.process = process;
+        this.logFile = logFile;
+    }
+
+    public static ServiceProcess start(String name, String mainClass, int port, LoadTestSettings settings, List<String> args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(settings.getServiceJvmArgs());
+        command.add("-cp");
+        command.add(settings.classpath(name));
+        command.add(mainClass);
+        command.add("--server.port=" + port);
+        command.addAll(args);
+
+        Files.createDirectories(settings.getLogDir());
+        Path logFile = settings.getLogDir().resolve(name + ".log");
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile.toFile())
+                .start();
+        log.info("Started {} on port {} (pid {}), logging to {}", name, port, process.pid(), logFile);
+        return new ServiceProcess(name, port, process, logFile);
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + port;
+    }
+
+    public void awaitHealthy(WebClient webClient, Duration timeout) {
+        webClient.get()
+                .uri(baseUrl() + "/actuator/health")
+                .retrieve()
+                .toBodilessEntity()
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, Duration.ofMillis(500)).filter(e -> process.isAlive()))
+                .timeout(timeout)
+                .onErrorMap(e -> new IllegalStateException(name + " did not become healthy, see " + logFile, e))
+                .block();
+        log.info("{} is up", name);
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
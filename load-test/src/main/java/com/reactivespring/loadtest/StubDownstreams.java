@@ -0,0 +1,113 @@
+package com.reactivespring.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * The movies-info-service and movies-review-service endpoints movies-service calls, answered from the catalog in
+ * memory on one port. Lets movies-service be loaded on its own, without Mongo or the other two services.
+ */
+public class StubDownstreams implements AutoCloseable {
+
+    private final Catalog catalog;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final DisposableServer server;
+
+    public StubDownstreams(Catalog catalog, int port) {
+        this.catalog = catalog;
+        this.server = HttpServer.create()
+                .port(port)
+                .route(routes -> routes
+                        // the change feed stays open and quiet, so cached movie infos are never invalidated
+                        .get("/v1/movie-infos/stream", (request, response) -> response
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE)
+                                .sendString(Flux.never()))
+                        .get("/v1/movie-infos/{id}", (request, response) -> {
+                            String id = request.param("id");
+                            if (Integer.parseInt(id) > catalog.size()) {
+                                return response.status(HttpResponseStatus.NOT_FOUND).send();
+                            }
+                            return json(response, catalog.movieInfo(id));
+                        })
+                        .get("/v1/movie-infos", (request, response) ->
+                                json(response, ids(request, "ids").stream().map(catalog::movieInfo).collect(Collectors.toList())))
+                        .get("/v1/reviews/{id}/summary", (request, response) -> json(response, summary(request.param("id"))))
+                        .get("/v1/reviews/{id}", (request, response) -> json(response, reviews(request)))
+                        .get("/v1/reviews", (request, response) -> json(response, ids(request, "movieInfoId").stream()
+                                .flatMap(id -> catalog.reviews(id).stream())
+                                .collect(Collectors.toList()))))
+                .bindNow();
+    }
+
+    public String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    private List<Map<String, Object>> reviews(HttpServerRequest request) {
+        List<Map<String, Object>> reviews = catalog.reviews(request.param("id"));
+        Map<String, List<String>> query = new QueryStringDecoder(request.uri()).parameters();
+        if (!query.containsKey("sort")) {
+            return reviews;
+        }
+        int limit = Integer.parseInt(query.getOrDefault("limit", List.of("50")).get(0));
+        return reviews.stream()
+                .sorted(Comparator.comparing((Map<String, Object> review) -> (Double) review.get("rating")).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    private Map<String, Object> summary(String movieId) {
+        List<Map<String, Object>> reviews = catalog.reviews(movieId);
+        DoubleSummaryStatistics statistics = reviews.stream().mapToDouble(review -> (Double) review.get("rating")).summaryStatistics();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("movieInfoId", Long.valueOf(movieId));
+        summary.put("count", statistics.getCount());
+        summary.put("average", statistics.getCount() == 0 ? null : statistics.getAverage());
+        summary.put("standardDeviation", null);
+        summary.put("histogram", reviews.stream().collect(Collectors.groupingBy(
+                review -> String.valueOf(Math.round((Double) review.get("rating"))), TreeMap::new, Collectors.counting())));
+        return summary;
+    }
+
+    private static List<String> ids(HttpServerRequest request, String name) {
+        return new QueryStringDecoder(request.uri()).parameters().getOrDefault(name, List.of()).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .collect(Collectors.toList());
+    }
+
+    private Mono<Void> json(HttpServerResponse response, Object body) {
+        byte[] bytes;
+        try {
+            bytes = objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            return Mono.error(e);
+        }
+        return response.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .sendByteArray(Mono.just(bytes))
+                .then();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+}
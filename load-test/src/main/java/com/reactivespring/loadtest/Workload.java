@@ -0,0 +1,144 @@
+package com.reactivespring.loadtest;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The request mix. Each route is picked in proportion to its loadtest.mix weight and turns into one request that
+ * completes with the response status; the body is read and discarded.
+ */
+public class Workload {
+
+    public static class Route {
+
+        private final String key;
+        private final String name;
+        private final Function<Random, Mono<Integer>> request;
+
+        Route(String key, String name, Function<Random, Mono<Integer>> request) {
+            this.key = key;
+            this.name = name;
+            this.request = request;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        // The route template, used as the name in the report
+        public String getName() {
+            return name;
+        }
+
+        public Mono<Integer> request(Random random) {
+            return request.apply(random);
+        }
+    }
+
+    private final List<Route> routes = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    private final AtomicLong writes = new AtomicLong();
+
+    public Workload(WebClient webClient, Catalog catalog, LoadTestSettings settings, String moviesUrl, String moviesInfoUrl, String reviewsUrl) {
+        Map<String, Route> available = new LinkedHashMap<>();
+        add(available, new Route("movie", "GET /v1/movies/{id}", random ->
+                exchange(webClient.get().uri(moviesUrl + "/v1/movies/{id}", catalog.randomMovieId(random)))));
+        add(available, new Route("movie-top", "GET /v1/movies/{id}?topReviews", random ->
+                exchange(webClient.get().uri(moviesUrl + "/v1/movies/{id}?topReviews={top}", catalog.randomMovieId(random), settings.getTopReviews()))));
+        add(available, new Route("movies-batch", "GET /v1/movies?ids", random ->
+                exchange(webClient.get().uri(moviesUrl + "/v1/movies?ids={ids}", batch(catalog, random, settings.getBatchSize()))
+                        .accept(MediaType.APPLICATION_NDJSON))));
+        if (moviesInfoUrl != null && reviewsUrl != null) {
+            add(available, new Route("movie-info", "GET /v1/movie-infos/{id}", random ->
+                    exchange(webClient.get().uri(moviesInfoUrl + "/v1/movie-infos/{id}", catalog.randomMovieId(random)))));
+            add(available, new Route("review-write", "POST /v1/reviews", random ->
+                    exchange(webClient.post().uri(reviewsUrl + "/v1/reviews")
+                            .bodyValue(Catalog.review(null, catalog.randomMovieId(random), random)))));
+            add(available, new Route("movie-info-write", "PUT /v1/movie-infos/{id}", random -> {
+                String movieId = catalog.randomMovieId(random);
+                Map<String, Object> movieInfo = catalog.movieInfo(movieId);
+                movieInfo.put("name", movieInfo.get("name") + " (revision " + writes.incrementAndGet() + ")");
+                return exchange(webClient.put().uri(moviesInfoUrl + "/v1/movie-infos/{id}", movieId).bodyValue(movieInfo));
+            }));
+            add(available, new Route("stream", "GET /v1/movie-infos/stream", random ->
+                    stream(webClient.get().uri(moviesInfoUrl + "/v1/movie-infos/stream").accept(MediaType.APPLICATION_NDJSON),
+                            settings.getStreamHold())));
+        }
+
+        List<Integer> weights = new ArrayList<>();
+        settings.getMix().forEach((key, weight) -> {
+            Route route = available.get(key);
+            if (route == null) {
+                throw new IllegalArgumentException("Unknown or unavailable route in loadtest.mix: " + key + ", available: " + available.keySet());
+            }
+            if (weight > 0) {
+                routes.add(route);
+                weights.add(weight);
+            }
+        });
+        if (routes.isEmpty()) {
+            throw new IllegalArgumentException("loadtest.mix selects no route");
+        }
+        cumulativeWeights = new int[weights.size()];
+        int sum = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            sum += weights.get(i);
+            cumulativeWeights[i] = sum;
+        }
+    }
+
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    public Route next(Random random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return routes.get(i);
+            }
+        }
+        throw new IllegalStateException("unreachable");
+    }
+
+    private static void add(Map<String, Route> routes, Route route) {
+        routes.put(route.getKey(), route);
+    }
+
+    private static String batch(Catalog catalog, Random random, int size) {
+        return Stream.generate(() -> catalog.randomMovieId(random))
+                .limit(size)
+                .collect(Collectors.joining(","));
+    }
+
+    private static Mono<Integer> exchange(WebClient.RequestHeadersSpec<?> request) {
+        return request.exchangeToMono(response -> response.releaseBody().thenReturn(response.rawStatusCode()));
+    }
+
+    // Completes with the status once the headers are in; the body is then read in the background for hold.
+    private static Mono<Integer> stream(WebClient.RequestHeadersSpec<?> request, Duration hold) {
+        return request.retrieve()
+                .toEntityFlux(DataBuffer.class)
+                .doOnNext(entity -> entity.getBody()
+                        .take(hold)
+                        .subscribe(DataBufferUtils::release, e -> { }))
+                .map(ResponseEntity::getStatusCodeValue)
+                .onErrorResume(WebClientResponseException.class, e -> Mono.just(e.getRawStatusCode()));
+    }
+}
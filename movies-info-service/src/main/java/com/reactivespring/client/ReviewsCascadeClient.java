@@ -0,0 +1,101 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Deletes the reviews of a deleted movie through DELETE /v1/reviews?movieInfoId=, which removes them with a
+ * single deleteMany. The call runs detached once the movie delete is acknowledged, in the Reactor Context of the
+ * request that deleted it so it is traced with it: deleting a movie neither waits for nor fails with the reviews
+ * service. Each attempt is bounded by responseTimeout, server errors are retried and reviews left behind once the
+ * retries are used up are only logged.
+ * <p>
+ * Reviews reference movies by numeric id, so movies with any other id have no reviews to cascade to.
+ */
+@Component
+@Slf4j
+public class ReviewsCascadeClient {
+
+    private final WebClient webClient;
+
+    private final Timer deleteTimer;
+
+    private final DistributionSummary deletedReviews;
+
+    @Value("${reviews.url}")
+    private String reviewsUrl;
+
+    @Value("${reviews.cascadeDelete.enabled:true}")
+    private boolean enabled;
+
+    @Value("${reviews.cascadeDelete.maxRetries:3}")
+    private int maxRetries;
+
+    public ReviewsCascadeClient(WebClient.Builder webClientBuilder, MeterRegistry meterRegistry,
+                                @Value("${reviews.cascadeDelete.responseTimeout:5s}") Duration responseTimeout) {
+        this.webClient = webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create().responseTimeout(responseTimeout)))
+                .build();
+        this.deleteTimer = Timer.builder("movieinfo.cascade.reviews.delete")
+                .description("Time to delete all reviews of a deleted movie")
+                .register(meterRegistry);
+        this.deletedReviews = DistributionSummary.builder("movieinfo.cascade.reviews.deleted")
+                .description("Reviews removed per cascaded movie delete")
+                .baseUnit("reviews")
+                .register(meterRegistry);
+    }
+
+    // Completes at once; the delete itself is subscribed to separately, with the caller's Reactor Context
+    public Mono<Void> deleteReviewsInBackground(String movieInfoId) {
+        return Mono.deferContextual(context -> {
+            deleteReviewsFor(movieInfoId).contextWrite(context).subscribe();
+            return Mono.empty();
+        });
+    }
+
+    Mono<Void> deleteReviewsFor(String movieInfoId) {
+        if (!enabled || !movieInfoId.chars().allMatch(Character::isDigit)) {
+            return Mono.empty();
+        }
+        return deleteReviews(movieInfoId)
+                .doOnNext(deleted -> log.debug("Deleted {} reviews of movie {}", deleted, movieInfoId))
+                .onErrorResume(e -> {
+                    log.warn("Could not delete the reviews of movie {}: {}", movieInfoId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    // Emits the number of reviews removed
+    Mono<Long> deleteReviews(String movieInfoId) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return webClient.delete()
+                    .uri(reviewsUrl + "?movieInfoId={id}", movieInfoId)
+                    .retrieve()
+                    .bodyToMono(Map.class)
+                    .map(body -> ((Number) body.get("deletedCount")).longValue())
+                    .retryWhen(Retry.backoff(maxRetries, Duration.ofMillis(200))
+                            .filter(e -> !(e instanceof WebClientResponseException)
+                                    || ((WebClientResponseException) e).getStatusCode().is5xxServerError())
+                            .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                    .doOnNext(deleted -> {
+                        deleteTimer.record(Duration.ofNanos(System.nanoTime() - start));
+                        deletedReviews.record(deleted);
+                    });
+        });
+    }
+}
@@ -8,6 +8,8 @@ import reactor.core.publisher.Mono;
 
 import java.time.Duration;
 
+import static com.reactivespring.logging.ReactiveLogging.debugSignals;
+
 @RestController
 public class FluxAndMonoController {
 
@@ -16,25 +18,25 @@ public class FluxAndMonoController {
         return Flux
                 .just(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
                 .delayElements(Duration.ofMillis(200))
-                .log();
+                .transform(flux -> debugSignals(flux, "FluxAndMonoController.getFlux"));
     }
 
     @GetMapping("mono")
     public Mono<String> getMono() {
-        return Mono.just("Jasper").log();
+        return debugSignals(Mono.just("Jasper"), "FluxAndMonoController.getMono");
     }
 
     @GetMapping(value = "stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<Long> stream() {
         return Flux
                 .interval(Duration.ofSeconds(1))
-                .log();
+                .transform(flux -> debugSignals(flux, "FluxAndMonoController.stream"));
     }
 
     @GetMapping(value = "otherStream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<Long> otherStream() {
         return Flux
                 .interval(Duration.ofMillis(200))
-                .log();
+                .transform(flux -> debugSignals(flux, "FluxAndMonoController.otherStream"));
     }
 }
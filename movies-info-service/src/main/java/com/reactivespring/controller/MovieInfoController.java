@@ -1,66 +1,137 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.MovieInfoVersionConflictException;
 import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.validation.BeanValidation;
+import com.reactivespring.validation.ValidationErrors;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 
-import javax.validation.Valid;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.reactivespring.logging.ReactiveLogging.debugSignals;
 
 @RestController
 @Slf4j
 @RequestMapping("/v1")
 public class MovieInfoController {
 
+    private static final Set<String> PROJECTABLE_FIELDS = Set.of("name", "year", "cast", "releaseDate");
+
     private final MovieInfoService movieInfoService;
 
-    Sinks.Many<MovieInfo> movieInfoSink = Sinks.many().replay().all();
+    private final BeanValidation beanValidation;
+
+    @Value("${movieInfo.page.defaultLimit:50}")
+    private int defaultPageLimit;
+
+    @Value("${movieInfo.page.maxLimit:500}")
+    private int maxPageLimit;
+
+    @Value("${movieInfo.bulk.batchSize:1000}")
+    private int bulkBatchSize;
+
+    // 0 lets clients keep the movie info but makes them revalidate it with If-None-Match on every read
+    @Value("${movieInfo.http.maxAge:0s}")
+    private Duration maxAge;
 
-    public MovieInfoController(MovieInfoService movieInfoService) {
+    public MovieInfoController(MovieInfoService movieInfoService, BeanValidation beanValidation) {
         this.movieInfoService = movieInfoService;
+        this.beanValidation = beanValidation;
     }
 
-    @GetMapping("/movie-infos")
-    public Flux<MovieInfo> getAllMovieInfo(@RequestParam(value = "year", required = false) Integer year) {
+    // Send Accept: application/x-ndjson to stream a full scan instead of collecting it into one JSON array.
+    // Passing after and/or limit returns one keyset page; the next page starts after the last movieInfoId.
+    @GetMapping(value = "/movie-infos", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<MovieInfo> getAllMovieInfo(@RequestParam(value = "year", required = false) Integer year,
+                                           @RequestParam(value = "ids", required = false) List<String> ids,
+                                           @RequestParam(value = "after", required = false) String after,
+                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                           @RequestParam(value = "fields", required = false) List<String> fields) {
+        if (ids != null) return movieInfoService.getMovieInfosByIds(ids);
         if (year != null) return movieInfoService.getAllMovieInfosByYear(year);
+        validateFields(fields);
+        if (after != null || limit != null) {
+            int pageLimit = limit == null ? defaultPageLimit : limit;
+            if (pageLimit < 1 || pageLimit > maxPageLimit) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "limit must be between 1 and " + maxPageLimit);
+            }
+            return movieInfoService.getMovieInfoPage(after, pageLimit, fields);
+        }
+        if (fields != null) return movieInfoService.getAllMovieInfo(fields);
         return movieInfoService.getAllMovieInfo();
     }
 
+    // The ETag is the version, so the result handler answers 304 without a body when If-None-Match still matches.
     @GetMapping("/movie-infos/{id}")
     public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable String id) {
         return movieInfoService.getMovieInfoById(id)
-                .map(movie -> {
-                    return ResponseEntity.ok().body(movie);
-                })
+                .map(movie -> withETag(ResponseEntity.ok(), movie).cacheControl(cacheControl()).body(movie))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
 
     @GetMapping(value = "/movie-infos/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
-    public Flux<MovieInfo> movieInfoStream() {
-        return movieInfoSink.asFlux();
+    public Flux<MovieInfoEvent> movieInfoStream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return movieInfoService.getMovieInfoEvents(lastEventId);
     }
 
+    // Invalid bodies are answered with problem+json here rather than through @Valid and a WebExchangeBindException.
     @PostMapping("/movie-infos")
-    @ResponseStatus(HttpStatus.CREATED)
-    public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo) {
-        log.info("Received addMovieInfo request with body {}", movieInfo);
+    public Mono<ResponseEntity<?>> addMovieInfo(@RequestBody MovieInfo movieInfo) {
+        log.debug("Received addMovieInfo request for {}", movieInfo.getName());
+        ValidationErrors errors = beanValidation.validate(movieInfo);
+        if (errors.hasErrors()) {
+            return Mono.just(badRequest(errors));
+        }
         return movieInfoService.addMovieInfo(movieInfo)
-                .doOnNext(savedInfo -> movieInfoSink.tryEmitNext(savedInfo));
+                .map(saved -> ResponseEntity.status(HttpStatus.CREATED).body(saved));
     }
 
+    // One NDJSON line in, one MovieInfoBulkResult line out; ordered=true stops at the first failure.
+    @PostMapping(value = "/movie-infos/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoBulkResult> bulkUpsertMovieInfo(@RequestBody Flux<MovieInfo> movieInfos,
+                                                         @RequestParam(value = "ordered", defaultValue = "false") boolean ordered) {
+        return movieInfoService.bulkUpsert(movieInfos, bulkBatchSize, ordered);
+    }
+
+    // PUT and PATCH both write only the fields that are sent. If-Match with the ETag of a previous read makes the
+    // write conditional and answers 412 when the movie info has changed since.
     @PutMapping("/movie-infos/{id}")
-    public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody @Valid MovieInfo movieInfo, @PathVariable String id) {
-        return movieInfoService.updateMovieInfo(movieInfo, id)
-                .map(ResponseEntity.ok()::body)
-                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
-                .log();
+    public Mono<ResponseEntity<?>> updateMovieInfo(@RequestBody MovieInfo movieInfo, @PathVariable String id,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        ValidationErrors errors = beanValidation.validate(movieInfo);
+        if (errors.hasErrors()) {
+            return Mono.just(badRequest(errors));
+        }
+        return debugSignals(update(movieInfo, id, ifMatch), "MovieInfoController.updateMovieInfo");
+    }
+
+    // A PATCH body is partial, so only the fields it sends are checked; the write stays one conditional findAndModify.
+    @PatchMapping("/movie-infos/{id}")
+    public Mono<ResponseEntity<?>> patchMovieInfo(@RequestBody MovieInfo changes, @PathVariable String id,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        ValidationErrors errors = beanValidation.validateValues(MovieInfo.class, sentFields(changes));
+        if (errors.hasErrors()) {
+            return Mono.just(badRequest(errors));
+        }
+        return update(changes, id, ifMatch);
     }
 
     @DeleteMapping("/movie-infos/{id}")
@@ -68,4 +139,60 @@ public class MovieInfoController {
     public Mono<Void> deleteMovieInfo(@PathVariable String id) {
         return movieInfoService.deleteMovieInfo(id);
     }
+
+    private Mono<ResponseEntity<?>> update(MovieInfo movieInfo, String id, String ifMatch) {
+        Mono<MovieInfo> updated;
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            updated = movieInfoService.updateMovieInfo(movieInfo, id);
+        } else {
+            Long expectedVersion = parseVersion(ifMatch);
+            if (expectedVersion == null) {
+                return Mono.error(new MovieInfoVersionConflictException("If-Match " + ifMatch + " is not a MovieInfo version"));
+            }
+            updated = movieInfoService.updateMovieInfo(movieInfo, id, expectedVersion);
+        }
+        return updated
+                .<ResponseEntity<?>>map(movie -> withETag(ResponseEntity.ok(), movie).body(movie))
+                .switchIfEmpty(Mono.fromSupplier(() -> ResponseEntity.notFound().build()));
+    }
+
+    private static Map<String, Object> sentFields(MovieInfo changes) {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (changes.getName() != null) fields.put("name", changes.getName());
+        if (changes.getYear() != null) fields.put("year", changes.getYear());
+        if (changes.getCast() != null) fields.put("cast", changes.getCast());
+        if (changes.getReleaseDate() != null) fields.put("releaseDate", changes.getReleaseDate());
+        return fields;
+    }
+
+    private static ResponseEntity<ValidationErrors> badRequest(ValidationErrors errors) {
+        log.debug("Rejected invalid MovieInfo: {}", errors.getDetail());
+        return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_PROBLEM_JSON).body(errors);
+    }
+
+    private static ResponseEntity.BodyBuilder withETag(ResponseEntity.BodyBuilder builder, MovieInfo movieInfo) {
+        return movieInfo.getVersion() == null ? builder : builder.eTag(String.valueOf(movieInfo.getVersion()));
+    }
+
+    private CacheControl cacheControl() {
+        return maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).mustRevalidate();
+    }
+
+    // Accepts "3", 3 and W/"3"; anything else cannot match a stored version.
+    private static Long parseVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void validateFields(List<String> fields) {
+        if (fields != null && !PROJECTABLE_FIELDS.containsAll(fields)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "fields must be a subset of " + PROJECTABLE_FIELDS);
+        }
+    }
 }
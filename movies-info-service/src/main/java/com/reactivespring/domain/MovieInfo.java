@@ -1,9 +1,12 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.NotBlank;
@@ -21,10 +24,12 @@ public class MovieInfo {
     @Id
     private String movieInfoId;
 
+    @Indexed(unique = true)
     @NotBlank(message = "MovieInfo.name must not be blank")
     @NotNull(message = "MovieInfo.name must not be null")
     private String name;
 
+    @Indexed
     @NotNull
     @Positive(message = "MovieInfo.year must be positive Integer")
     private Integer year;
@@ -32,4 +37,13 @@ public class MovieInfo {
     private List<@NotBlank(message = "MovieInfo.cast must not be blank") String> cast;
 
     private LocalDate releaseDate;
+
+    // Bumped on every write and exposed as the ETag; clients send it back in If-Match rather than in the body.
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate releaseDate) {
+        this(movieInfoId, name, year, cast, releaseDate, null);
+    }
 }
@@ -0,0 +1,29 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoBulkResult {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        // Failed bean validation and was not written
+        INVALID,
+        // Rejected by Mongo, e.g. a duplicate name
+        FAILED
+    }
+
+    // Zero-based position of the item in the uploaded stream.
+    private long index;
+
+    private String movieInfoId;
+
+    private Status status;
+
+    private String error;
+}
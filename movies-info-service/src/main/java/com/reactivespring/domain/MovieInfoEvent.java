@@ -0,0 +1,28 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        // Tells a resuming subscriber that its Last-Event-ID could not be honoured and local copies must be dropped
+        RESET
+    }
+
+    private String eventId;
+
+    private Type type;
+
+    private String movieInfoId;
+
+    // null for DELETED and RESET events
+    private MovieInfo movieInfo;
+}
@@ -1,27 +1,58 @@
 package com.reactivespring.exception;
 
+import com.reactivespring.logging.LogRateLimiter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.support.WebExchangeBindException;
 
+import java.time.Duration;
 import java.util.stream.Collectors;
 
+// MovieInfoController validates request bodies itself; the binding error handler stays for any @Valid argument added later.
 @ControllerAdvice
 @Slf4j
 public class GlobalErrorHandler {
 
+    private final LogRateLimiter errorLog;
+
+    public GlobalErrorHandler(@Value("${app.logging.errors.permits:10}") int permits,
+                              @Value("${app.logging.errors.interval:1s}") Duration interval) {
+        this.errorLog = new LogRateLimiter(permits, interval);
+    }
+
     @ExceptionHandler(WebExchangeBindException.class)
     public ResponseEntity<String> handleRequestBodyError(WebExchangeBindException e) {
-        log.error("Exception caught in handleRequestBodyError: {}", e.getMessage(), e);
         String error = e.getBindingResult().getAllErrors().stream()
                 .map(DefaultMessageSourceResolvable::getDefaultMessage)
                 .sorted()
                 .collect(Collectors.joining(","));
-        log.error("Error is: {}", error);
+        warn("handleRequestBodyError", error);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
+
+    @ExceptionHandler(DuplicateKeyException.class)
+    public ResponseEntity<String> handleDuplicateKey(DuplicateKeyException e) {
+        warn("handleDuplicateKey", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body("MovieInfo id or name already exists");
+    }
+
+    @ExceptionHandler(MovieInfoVersionConflictException.class)
+    public ResponseEntity<String> handleVersionConflict(MovieInfoVersionConflictException e) {
+        warn("handleVersionConflict", e.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(e.getMessage());
+    }
+
+    // These are all client errors, so they are logged without a stack trace and under one shared rate limit
+    private void warn(String handler, String message) {
+        long suppressed = errorLog.tryAcquire();
+        if (suppressed >= 0) {
+            log.warn("Exception caught in {}: {} ({} similar messages suppressed)", handler, message, suppressed);
+        }
+    }
 }
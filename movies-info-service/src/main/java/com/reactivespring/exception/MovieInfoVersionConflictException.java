@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+public class MovieInfoVersionConflictException extends RuntimeException {
+    public MovieInfoVersionConflictException(String message) {
+        // A stale If-Match is a client error, so there is no stack trace worth capturing
+        super(message, null, false, false);
+    }
+}
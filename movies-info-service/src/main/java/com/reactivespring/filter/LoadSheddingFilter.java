@@ -0,0 +1,63 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+
+import java.time.Duration;
+
+/**
+ * Load shedding in front of MovieInfoController, configured under movieInfo.loadShedding.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LoadSheddingFilter extends LoadSheddingWebFilter {
+
+    public LoadSheddingFilter(@Value("${movieInfo.loadShedding.enabled:true}") boolean enabled,
+                              @Value("${movieInfo.loadShedding.initialLimit:100}") int initialLimit,
+                              @Value("${movieInfo.loadShedding.minLimit:10}") int minLimit,
+                              @Value("${movieInfo.loadShedding.maxLimit:1000}") int maxLimit,
+                              @Value("${movieInfo.loadShedding.latencyThreshold:500ms}") Duration latencyThreshold,
+                              @Value("${movieInfo.loadShedding.backoffRatio:0.9}") double backoffRatio,
+                              @Value("${movieInfo.loadShedding.normalShare:0.9}") double normalShare,
+                              @Value("${movieInfo.loadShedding.bulkShare:0.6}") double bulkShare,
+                              @Value("${movieInfo.loadShedding.streamShare:0.5}") double streamShare,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        super(enabled, initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio, normalShare, bulkShare, streamShare,
+                meterRegistry);
+    }
+
+    @Override
+    protected RequestPriority priorityOf(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        switch (path) {
+            case "/v1/movie-infos/stream":
+            case "/flux":
+            case "/stream":
+            case "/otherStream":
+                return RequestPriority.STREAM;
+            case "/v1/movie-infos/bulk":
+                return RequestPriority.BULK;
+            case "/v1/movie-infos":
+                if (request.getMethod() == HttpMethod.GET) {
+                    return acceptsNdjson(request) || readsAll(request) ? RequestPriority.BULK : RequestPriority.NORMAL;
+                }
+                return RequestPriority.CRITICAL;
+            default:
+                return RequestPriority.CRITICAL;
+        }
+    }
+
+    // Without ids, year, after or limit MovieInfoController reads the whole collection, as a JSON array as well
+    private static boolean readsAll(ServerHttpRequest request) {
+        MultiValueMap<String, String> params = request.getQueryParams();
+        return !params.containsKey("ids") && !params.containsKey("year")
+                && !params.containsKey("after") && !params.containsKey("limit");
+    }
+}
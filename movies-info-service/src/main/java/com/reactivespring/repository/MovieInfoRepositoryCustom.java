@@ -0,0 +1,37 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.reactivespring.domain.MovieInfo;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface MovieInfoRepositoryCustom {
+
+    /**
+     * Keyset page ordered by movieInfoId: the next page starts after the last id of the previous one.
+     * Only the given fields (plus the id) are read when fields is not null.
+     */
+    Flux<MovieInfo> findPage(String afterId, int limit, List<String> fields);
+
+    /**
+     * Full scan that pulls documents from the cursor in batches as downstream demand arrives.
+     */
+    Flux<MovieInfo> streamAll(List<String> fields);
+
+    /**
+     * Writes the batch with a single bulkWrite: documents with an id are upserted, the rest are inserted
+     * and get a generated id assigned before the write. Upserts replace the stored fields but keep bumping the
+     * version, so an If-Match held by another client stops matching. New documents start at version 0, whether or
+     * not they came with an id.
+     */
+    Mono<BulkWriteResult> bulkWrite(List<MovieInfo> movieInfos, boolean ordered);
+
+    /**
+     * Atomically $sets the non-null fields of changes and increments the version, returning the updated document.
+     * When expectedVersion is not null the write only applies if the stored version still matches; empty means
+     * the id does not exist or the version has moved on.
+     */
+    Mono<MovieInfo> updateFields(String id, Long expectedVersion, MovieInfo changes);
+}
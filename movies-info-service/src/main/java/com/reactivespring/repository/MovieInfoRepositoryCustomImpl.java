@@ -0,0 +1,89 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.BsonType;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final BulkUpsert<MovieInfo> bulkUpsert;
+
+    @Value("${movieInfo.query.cursorBatchSize:100}")
+    private int cursorBatchSize;
+
+    public MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.bulkUpsert = new BulkUpsert<>(reactiveMongoTemplate, MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> findPage(String afterId, int limit, List<String> fields) {
+        Query query = new Query()
+                .with(Sort.by(Sort.Direction.ASC, "movieInfoId"))
+                .limit(limit)
+                .cursorBatchSize(Math.min(limit, cursorBatchSize));
+        if (afterId != null) {
+            query.addCriteria(after(afterId));
+        }
+        project(query, fields);
+        return reactiveMongoTemplate.find(query, MovieInfo.class);
+    }
+
+    @Override
+    public Flux<MovieInfo> streamAll(List<String> fields) {
+        Query query = new Query().cursorBatchSize(cursorBatchSize);
+        project(query, fields);
+        return reactiveMongoTemplate.find(query, MovieInfo.class);
+    }
+
+    @Override
+    public Mono<BulkWriteResult> bulkWrite(List<MovieInfo> movieInfos, boolean ordered) {
+        return bulkUpsert.bulkWrite(movieInfos, ordered);
+    }
+
+    @Override
+    public Mono<MovieInfo> updateFields(String id, Long expectedVersion, MovieInfo changes) {
+        Criteria criteria = Criteria.where("movieInfoId").is(id);
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        Update update = new Update().inc("version", 1);
+        if (changes.getName() != null) update.set("name", changes.getName());
+        if (changes.getYear() != null) update.set("year", changes.getYear());
+        if (changes.getCast() != null) update.set("cast", changes.getCast());
+        if (changes.getReleaseDate() != null) update.set("releaseDate", changes.getReleaseDate());
+        return reactiveMongoTemplate.findAndModify(new Query(criteria), update,
+                FindAndModifyOptions.options().returnNew(true), MovieInfo.class);
+    }
+
+    // Ids are stored as ObjectIds when they look like one and as strings otherwise. Mongo orders all strings
+    // before all ObjectIds and $gt only compares values of the same type, so a string cursor also has to let
+    // every ObjectId through.
+    private Criteria after(String afterId) {
+        if (ObjectId.isValid(afterId)) {
+            return Criteria.where("movieInfoId").gt(new ObjectId(afterId));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("movieInfoId").gt(afterId),
+                Criteria.where("movieInfoId").type(BsonType.OBJECT_ID.getValue()));
+    }
+
+    private void project(Query query, List<String> fields) {
+        if (fields != null && !fields.isEmpty()) {
+            query.fields().include(fields.toArray(new String[0]));
+        }
+    }
+}
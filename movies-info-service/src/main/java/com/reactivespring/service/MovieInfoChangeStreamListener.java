@@ -0,0 +1,161 @@
+package com.reactivespring.service;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.Set;
+
+/**
+ * Feeds MovieInfoEventPublisher from a MongoDB change stream on the movieInfo collection, so
+ * /v1/movie-infos/stream carries inserts, updates and deletes made through any instance.
+ * <p>
+ * Each instance holds a single cursor and fans it out to its local subscribers. The cursor resumes after the last
+ * token it saw when it has to be reopened. A token the server can no longer resume from (it fell off the oplog, or
+ * it is not a token of this collection) is dropped: the stream is reopened from now and a RESET is published so
+ * subscribers refetch. Change streams need a replica set or sharded cluster.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "movieInfo.stream.source", havingValue = "change-stream")
+public class MovieInfoChangeStreamListener {
+
+    // BadValue, FailedToParse, InvalidResumeToken, ChangeStreamFatalError and ChangeStreamHistoryLost: reopening
+    // with the same token fails the same way every time
+    private static final Set<Integer> NON_RESUMABLE_CODES = Set.of(2, 9, 260, 280, 286);
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MovieInfoEventPublisher movieInfoEventPublisher;
+
+    @Value("${movieInfo.stream.changeStream.minBackoff:1s}")
+    private Duration minBackoff;
+
+    @Value("${movieInfo.stream.changeStream.maxBackoff:30s}")
+    private Duration maxBackoff;
+
+    private volatile String lastResumeToken;
+
+    private Disposable subscription;
+
+    public MovieInfoChangeStreamListener(ReactiveMongoTemplate reactiveMongoTemplate,
+                                         MovieInfoEventPublisher movieInfoEventPublisher) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.movieInfoEventPublisher = movieInfoEventPublisher;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        movieInfoEventPublisher.setResumeSource(this::resume);
+        subscription = Flux.defer(() -> resume(lastResumeToken))
+                .doOnNext(event -> {
+                    // A RESET has no event id, so a token that could not be resumed is not retried
+                    lastResumeToken = event.getEventId();
+                    movieInfoEventPublisher.publish(event);
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, minBackoff)
+                        .maxBackoff(maxBackoff)
+                        .transientErrors(true)
+                        .doBeforeRetry(retrySignal -> log.warn("Movie info change stream failed, reopening: {}",
+                                retrySignal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    /**
+     * Changes after resumeToken, or a RESET followed by the changes from now on when the server cannot resume
+     * after it. Also serves subscribers whose Last-Event-ID is not in the publisher's replay buffer.
+     */
+    Flux<MovieInfoEvent> resume(String resumeToken) {
+        if (resumeToken == null) {
+            return changes(null);
+        }
+        return changes(resumeToken)
+                .onErrorResume(MovieInfoChangeStreamListener::isNonResumable, e -> {
+                    log.warn("Cannot resume the movie info change stream after {}, restarting it from now: {}",
+                            resumeToken, e.getMessage());
+                    return Flux.concat(Mono.just(new MovieInfoEvent(null, MovieInfoEvent.Type.RESET, null, null)),
+                            changes(null));
+                });
+    }
+
+    static boolean isNonResumable(Throwable error) {
+        for (Throwable e = error; e != null; e = e.getCause()) {
+            if (e instanceof MongoServerException) {
+                return NON_RESUMABLE_CODES.contains(((MongoServerException) e).getCode());
+            }
+        }
+        return false;
+    }
+
+    Flux<MovieInfoEvent> changes(String resumeToken) {
+        ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                .filter(Aggregation.newAggregation(Aggregation.match(
+                        Criteria.where("operationType").in("insert", "update", "replace", "delete"))))
+                .returnFullDocumentOnUpdate();
+        if (resumeToken != null) {
+            options.resumeAfter(new BsonDocument("_data", new BsonString(resumeToken)));
+        }
+
+        return reactiveMongoTemplate
+                .changeStream(reactiveMongoTemplate.getCollectionName(MovieInfo.class), options.build(), MovieInfo.class)
+                .concatMap(this::toEvent);
+    }
+
+    private Mono<MovieInfoEvent> toEvent(ChangeStreamEvent<MovieInfo> changeStreamEvent) {
+        ChangeStreamDocument<Document> raw = changeStreamEvent.getRaw();
+        String eventId = raw.getResumeToken().getString("_data").getValue();
+        String movieInfoId = idOf(raw.getDocumentKey().get("_id"));
+
+        switch (raw.getOperationType()) {
+            case INSERT:
+                return Mono.just(new MovieInfoEvent(eventId, MovieInfoEvent.Type.CREATED, movieInfoId, changeStreamEvent.getBody()));
+            case DELETE:
+                return Mono.just(new MovieInfoEvent(eventId, MovieInfoEvent.Type.DELETED, movieInfoId, null));
+            default:
+                if (changeStreamEvent.getBody() != null) {
+                    return Mono.just(new MovieInfoEvent(eventId, MovieInfoEvent.Type.UPDATED, movieInfoId, changeStreamEvent.getBody()));
+                }
+                // The update lookup finds no document once it has been deleted again; look once more before
+                // reporting it as gone, since an UPDATED event must always carry the movie info
+                return reactiveMongoTemplate.findById(movieInfoId, MovieInfo.class)
+                        .map(movieInfo -> new MovieInfoEvent(eventId, MovieInfoEvent.Type.UPDATED, movieInfoId, movieInfo))
+                        .defaultIfEmpty(new MovieInfoEvent(eventId, MovieInfoEvent.Type.DELETED, movieInfoId, null));
+        }
+    }
+
+    // String ids that look like ObjectIds are stored as ObjectIds
+    private String idOf(BsonValue id) {
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+}
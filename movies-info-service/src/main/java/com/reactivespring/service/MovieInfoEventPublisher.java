@@ -0,0 +1,301 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Publishes create, update and delete events for movie infos to /v1/movie-infos/stream subscribers.
+ * <p>
+ * Events come either from this instance's own writes (source=local) or from a MongoDB change stream on the
+ * movieInfo collection (source=change-stream), which also sees writes made through other instances. Local event
+ * ids are "epoch-sequence", where the epoch changes on every restart; change stream event ids are resume tokens.
+ * <p>
+ * Only a bounded history is kept for replay: the last N events, the events of a recent time window, or nothing.
+ * A subscriber that reconnects with a Last-Event-ID still covered by the replay buffer only receives the events
+ * after it. Otherwise, when there is a resume source, it joins the shared fan-out at once and a dedicated change
+ * stream resumed after that token only fills the gap up to the last event the shared cursor had published; the
+ * dedicated cursor is closed as soon as it gets there, or with a RESET when it cannot within catchUpTimeout. Without
+ * a resume source the subscriber gets a RESET event followed by whatever history is retained.
+ * <p>
+ * Every subscriber has its own bounded queue, so one slow consumer cannot hold events for the others. When that
+ * queue is full the subscriber either loses its oldest queued event or is disconnected (its stream completes after
+ * draining, and it can resume with Last-Event-ID).
+ */
+@Component
+@Slf4j
+public class MovieInfoEventPublisher {
+
+    public enum ReplayPolicy {
+        LAST_N,
+        TIME_WINDOW,
+        NONE
+    }
+
+    public enum OverflowStrategy {
+        DROP_OLDEST,
+        DISCONNECT
+    }
+
+    public enum Source {
+        LOCAL,
+        CHANGE_STREAM
+    }
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private long localSequence;
+
+    private String lastPublishedEventId;
+
+    private volatile Function<String, Flux<MovieInfoEvent>> resumeSource;
+
+    private final Deque<BufferedEvent> replayBuffer = new ArrayDeque<>();
+
+    private final Set<EventSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final Source source;
+    private final ReplayPolicy replayPolicy;
+    private final int replaySize;
+    private final long replayWindowNanos;
+    private final int subscriberBufferSize;
+    private final OverflowStrategy overflowStrategy;
+    private final Duration catchUpTimeout;
+
+    private final Counter droppedEvents;
+    private final Counter disconnectedSubscribers;
+
+    public MovieInfoEventPublisher(MeterRegistry meterRegistry,
+                                   @Value("${movieInfo.stream.source:local}") Source source,
+                                   @Value("${movieInfo.stream.replay.policy:last-n}") ReplayPolicy replayPolicy,
+                                   @Value("${movieInfo.stream.replay.size:1000}") int replaySize,
+                                   @Value("${movieInfo.stream.replay.window:10m}") Duration replayWindow,
+                                   @Value("${movieInfo.stream.subscriber.bufferSize:256}") int subscriberBufferSize,
+                                   @Value("${movieInfo.stream.subscriber.overflow:drop-oldest}") OverflowStrategy overflowStrategy,
+                                   @Value("${movieInfo.stream.resume.catchUpTimeout:30s}") Duration catchUpTimeout) {
+        this.source = source;
+        this.replayPolicy = replayPolicy;
+        this.replaySize = replaySize;
+        this.replayWindowNanos = replayWindow.toNanos();
+        this.subscriberBufferSize = subscriberBufferSize;
+        this.overflowStrategy = overflowStrategy;
+        this.catchUpTimeout = catchUpTimeout;
+
+        Gauge.builder("movieinfo.stream.subscribers", subscribers, Set::size).register(meterRegistry);
+        Gauge.builder("movieinfo.stream.buffer.depth", this, MovieInfoEventPublisher::bufferDepth)
+                .description("Events queued for delivery across all subscribers")
+                .register(meterRegistry);
+        Gauge.builder("movieinfo.stream.replay.size", this, MovieInfoEventPublisher::replayBufferSize)
+                .register(meterRegistry);
+        this.droppedEvents = Counter.builder("movieinfo.stream.dropped").register(meterRegistry);
+        this.disconnectedSubscribers = Counter.builder("movieinfo.stream.disconnected").register(meterRegistry);
+    }
+
+    // The publishCreated/Updated/Deleted methods report this instance's own writes and are ignored when the
+    // change stream is the source, since it delivers those writes as well
+    public void publishCreated(MovieInfo movieInfo) {
+        publishLocal(MovieInfoEvent.Type.CREATED, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public void publishUpdated(MovieInfo movieInfo) {
+        publishLocal(MovieInfoEvent.Type.UPDATED, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public void publishDeleted(String movieInfoId) {
+        publishLocal(MovieInfoEvent.Type.DELETED, movieInfoId, null);
+    }
+
+    /**
+     * Used by the change stream listener so subscribers whose Last-Event-ID is no longer buffered here (e.g. it
+     * was issued by another instance) can catch up from a change stream resumed after that token. The source is
+     * expected to answer an id it cannot resume from with a RESET rather than an error, and to issue the same event
+     * ids as the events published here.
+     */
+    public void setResumeSource(Function<String, Flux<MovieInfoEvent>> resumeSource) {
+        this.resumeSource = resumeSource;
+    }
+
+    public Flux<MovieInfoEvent> stream(String lastEventId) {
+        return Flux.defer(() -> {
+            EventSubscriber subscriber = new EventSubscriber(subscriberBufferSize);
+            List<MovieInfoEvent> replay;
+
+            // Snapshot the replay and register for live events atomically, so nothing is missed or duplicated
+            synchronized (this) {
+                replay = replayFor(lastEventId);
+                if (replay == null && resumeSource != null && lastPublishedEventId != null) {
+                    log.debug("Event id {} is not buffered, catching up from the change stream to {}", lastEventId, lastPublishedEventId);
+                    Flux<MovieInfoEvent> catchUp = catchUp(resumeSource, lastEventId, lastPublishedEventId);
+                    subscribers.add(subscriber);
+                    return Flux.concat(catchUp, subscriber.sink.asFlux())
+                            .doFinally(signal -> subscribers.remove(subscriber));
+                }
+                if (replay == null) {
+                    log.debug("Cannot resume from event id {}, sending RESET", lastEventId);
+                    replay = new ArrayList<>(replayBuffer.size() + 1);
+                    replay.add(reset());
+                    replay.addAll(bufferedEvents());
+                }
+                subscribers.add(subscriber);
+            }
+
+            return Flux.concat(Flux.fromIterable(replay), subscriber.sink.asFlux())
+                    .doFinally(signal -> subscribers.remove(subscriber));
+        });
+    }
+
+    // The events after lastEventId up to and including handoffId; the ones after handoffId are already queued for the
+    // subscriber. Ends with a RESET instead when the resumed stream cannot get there.
+    private Flux<MovieInfoEvent> catchUp(Function<String, Flux<MovieInfoEvent>> resumeSource, String lastEventId, String handoffId) {
+        return Flux.defer(() -> {
+            AtomicBoolean handedOff = new AtomicBoolean();
+            return resumeSource.apply(lastEventId)
+                    .takeUntil(event -> {
+                        boolean done = event.getType() == MovieInfoEvent.Type.RESET || handoffId.equals(event.getEventId());
+                        handedOff.compareAndSet(false, done);
+                        return done;
+                    })
+                    .take(catchUpTimeout)
+                    .onErrorResume(e -> {
+                        log.warn("Could not catch up from event id {}: {}", lastEventId, e.getMessage());
+                        return Flux.empty();
+                    })
+                    .concatWith(Flux.defer(() -> handedOff.get() ? Flux.empty() : Flux.just(reset())));
+        });
+    }
+
+    private static MovieInfoEvent reset() {
+        return new MovieInfoEvent(null, MovieInfoEvent.Type.RESET, null, null);
+    }
+
+    private void publishLocal(MovieInfoEvent.Type type, String movieInfoId, MovieInfo movieInfo) {
+        if (source != Source.LOCAL) {
+            return;
+        }
+        synchronized (this) {
+            publish(new MovieInfoEvent(epoch + "-" + (++localSequence), type, movieInfoId, movieInfo));
+        }
+    }
+
+    public synchronized void publish(MovieInfoEvent event) {
+        lastPublishedEventId = event.getEventId();
+
+        if (replayPolicy != ReplayPolicy.NONE) {
+            replayBuffer.addLast(new BufferedEvent(System.nanoTime(), event));
+        }
+        trimReplayBuffer();
+
+        for (EventSubscriber subscriber : subscribers) {
+            deliver(subscriber, event);
+        }
+    }
+
+    private void deliver(EventSubscriber subscriber, MovieInfoEvent event) {
+        Sinks.EmitResult result = subscriber.sink.tryEmitNext(event);
+        // A full queue reports FAIL_ZERO_SUBSCRIBER while the subscriber is still draining its replay
+        if (result != Sinks.EmitResult.FAIL_OVERFLOW && result != Sinks.EmitResult.FAIL_ZERO_SUBSCRIBER) {
+            return;
+        }
+
+        if (overflowStrategy == OverflowStrategy.DROP_OLDEST) {
+            subscriber.queue.poll();
+            droppedEvents.increment();
+            subscriber.sink.tryEmitNext(event);
+        } else {
+            log.warn("Disconnecting slow movie info stream subscriber with {} queued events", subscriber.queue.size());
+            disconnectedSubscribers.increment();
+            subscribers.remove(subscriber);
+            subscriber.sink.tryEmitComplete();
+        }
+    }
+
+    // Returns null when the events after lastEventId are no longer (or were never) buffered on this instance
+    private List<MovieInfoEvent> replayFor(String lastEventId) {
+        trimReplayBuffer();
+
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return bufferedEvents();
+        }
+        if (lastEventId.equals(lastPublishedEventId)) {
+            return new ArrayList<>();
+        }
+
+        List<MovieInfoEvent> replay = new ArrayList<>(replayBuffer.size());
+        boolean found = false;
+        for (BufferedEvent buffered : replayBuffer) {
+            if (found) {
+                replay.add(buffered.event);
+            } else {
+                found = lastEventId.equals(buffered.event.getEventId());
+            }
+        }
+        return found ? replay : null;
+    }
+
+    private List<MovieInfoEvent> bufferedEvents() {
+        List<MovieInfoEvent> events = new ArrayList<>(replayBuffer.size());
+        replayBuffer.forEach(buffered -> events.add(buffered.event));
+        return events;
+    }
+
+    private void trimReplayBuffer() {
+        if (replayPolicy == ReplayPolicy.LAST_N) {
+            while (replayBuffer.size() > replaySize) {
+                replayBuffer.pollFirst();
+            }
+        } else if (replayPolicy == ReplayPolicy.TIME_WINDOW) {
+            long now = System.nanoTime();
+            while (!replayBuffer.isEmpty() && now - replayBuffer.peekFirst().publishedAt > replayWindowNanos) {
+                replayBuffer.pollFirst();
+            }
+        }
+    }
+
+    private int bufferDepth() {
+        return subscribers.stream().mapToInt(subscriber -> subscriber.queue.size()).sum();
+    }
+
+    private synchronized int replayBufferSize() {
+        return replayBuffer.size();
+    }
+
+    private static class BufferedEvent {
+        private final long publishedAt;
+        private final MovieInfoEvent event;
+
+        private BufferedEvent(long publishedAt, MovieInfoEvent event) {
+            this.publishedAt = publishedAt;
+            this.event = event;
+        }
+    }
+
+    private static class EventSubscriber {
+        // Thread safe so the publisher can drop the oldest entry while the subscriber is draining
+        private final BlockingQueue<MovieInfoEvent> queue;
+        private final Sinks.Many<MovieInfoEvent> sink;
+
+        private EventSubscriber(int bufferSize) {
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+            this.sink = Sinks.many().unicast().onBackpressureBuffer(queue);
+        }
+    }
+}
@@ -1,12 +1,28 @@
 package com.reactivespring.service;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteUpsert;
+import com.reactivespring.client.ReviewsCascadeClient;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.MovieInfoVersionConflictException;
 import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.validation.BeanValidation;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -15,39 +31,152 @@ public class MovieInfoService {
 
     private MovieInfoRepository movieInfoRepository;
 
+    private MovieInfoEventPublisher movieInfoEventPublisher;
+
+    private BeanValidation beanValidation;
+
+    private ReviewsCascadeClient reviewsCascadeClient;
+
     public Flux<MovieInfo> getAllMovieInfo() {
-        return movieInfoRepository.findAll();
+        return movieInfoRepository.streamAll(null);
+    }
+
+    public Flux<MovieInfo> getAllMovieInfo(List<String> fields) {
+        return movieInfoRepository.streamAll(fields);
+    }
+
+    public Flux<MovieInfo> getMovieInfoPage(String afterId, int limit, List<String> fields) {
+        return movieInfoRepository.findPage(afterId, limit, fields);
     }
 
     public Flux<MovieInfo> getAllMovieInfosByYear(Integer year) {
         return movieInfoRepository.findByYear(year);
     }
 
+    public Flux<MovieInfo> getMovieInfosByIds(List<String> ids) {
+        return movieInfoRepository.findAllById(ids);
+    }
+
     public Mono<MovieInfo> getMovieInfoById(String id) {
         return movieInfoRepository.findById(id);
     }
 
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        log.info("Saving addMovieInfo request with body {}", movieInfo);
-        return movieInfoRepository.save(movieInfo);
+        log.debug("Saving movie info {}", movieInfo.getName());
+        return movieInfoRepository.save(movieInfo)
+                .doOnNext(movieInfoEventPublisher::publishCreated);
     }
 
-    public Mono<MovieInfo> updateMovieInfo(MovieInfo movieInfo, String id) {
-        return movieInfoRepository.findById(id)
-                .flatMap(movie -> {
-                    if (!(movieInfo.getName() == null || movieInfo.getName().isBlank()))
-                        movie.setName(movieInfo.getName());
-                    if (!(movieInfo.getYear() == null || movieInfo.getYear() < 1900))
-                        movie.setYear(movieInfo.getYear());
-                    if (!(movieInfo.getCast() == null || movieInfo.getCast().isEmpty()))
-                        movie.setCast(movieInfo.getCast());
-                    if (!(movieInfo.getReleaseDate() == null))
-                        movie.setReleaseDate(movieInfo.getReleaseDate());
-                    return movieInfoRepository.save(movie);
+    /**
+     * Validates and writes the uploaded stream batch by batch, emitting one result per item. Only one batch is
+     * held in memory at a time. In ordered mode the stream ends after the first invalid or rejected item, and
+     * the rest of the upload is not written.
+     */
+    public Flux<MovieInfoBulkResult> bulkUpsert(Flux<MovieInfo> movieInfos, int batchSize, boolean ordered) {
+        Flux<MovieInfoBulkResult> results = movieInfos
+                .index()
+                .buffer(batchSize)
+                .concatMap(batch -> writeBatch(batch, ordered), 1);
+        return ordered ? results.takeUntil(MovieInfoService::isFailure) : results;
+    }
+
+    private Flux<MovieInfoBulkResult> writeBatch(List<Tuple2<Long, MovieInfo>> batch, boolean ordered) {
+        List<MovieInfoBulkResult> results = new ArrayList<>(batch.size());
+        List<Tuple2<Long, MovieInfo>> valid = new ArrayList<>(batch.size());
+        for (Tuple2<Long, MovieInfo> item : batch) {
+            String error = validate(item.getT2());
+            if (error == null) {
+                valid.add(item);
+                continue;
+            }
+            results.add(new MovieInfoBulkResult(item.getT1(), item.getT2().getMovieInfoId(), MovieInfoBulkResult.Status.INVALID, error));
+            if (ordered) break;
+        }
+        if (valid.isEmpty()) {
+            return Flux.fromIterable(results);
+        }
+
+        List<Boolean> hadId = valid.stream().map(item -> item.getT2().getMovieInfoId() != null).collect(Collectors.toList());
+        List<MovieInfo> documents = valid.stream().map(Tuple2::getT2).collect(Collectors.toList());
+        return movieInfoRepository.bulkWrite(documents, ordered)
+                .map(result -> written(valid, hadId, result.getUpserts(), List.of(), ordered))
+                .onErrorResume(MongoBulkWriteException.class,
+                        e -> Mono.just(written(valid, hadId, e.getWriteResult().getUpserts(), e.getWriteErrors(), ordered)))
+                .flatMapIterable(written -> {
+                    results.addAll(written);
+                    results.sort(Comparator.comparingLong(MovieInfoBulkResult::getIndex));
+                    return results;
                 });
     }
 
+    private List<MovieInfoBulkResult> written(List<Tuple2<Long, MovieInfo>> valid, List<Boolean> hadId,
+                                              List<BulkWriteUpsert> upserts, List<BulkWriteError> errors, boolean ordered) {
+        Set<Integer> upserted = upserts.stream().map(BulkWriteUpsert::getIndex).collect(Collectors.toSet());
+        Map<Integer, String> failed = errors.stream().collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage));
+        // An ordered write stops at its first error, so nothing after it was attempted.
+        int attempted = ordered && !errors.isEmpty() ? errors.get(0).getIndex() + 1 : valid.size();
+
+        List<MovieInfoBulkResult> results = new ArrayList<>(attempted);
+        for (int i = 0; i < attempted; i++) {
+            long index = valid.get(i).getT1();
+            MovieInfo movieInfo = valid.get(i).getT2();
+            if (failed.containsKey(i)) {
+                results.add(new MovieInfoBulkResult(index, movieInfo.getMovieInfoId(), MovieInfoBulkResult.Status.FAILED, failed.get(i)));
+            } else if (!hadId.get(i) || upserted.contains(i)) {
+                movieInfoEventPublisher.publishCreated(movieInfo);
+                results.add(new MovieInfoBulkResult(index, movieInfo.getMovieInfoId(), MovieInfoBulkResult.Status.CREATED, null));
+            } else {
+                movieInfoEventPublisher.publishUpdated(movieInfo);
+                results.add(new MovieInfoBulkResult(index, movieInfo.getMovieInfoId(), MovieInfoBulkResult.Status.UPDATED, null));
+            }
+        }
+        return results;
+    }
+
+    private String validate(MovieInfo movieInfo) {
+        return beanValidation.validate(movieInfo).getDetail();
+    }
+
+    private static boolean isFailure(MovieInfoBulkResult result) {
+        return result.getStatus() == MovieInfoBulkResult.Status.INVALID || result.getStatus() == MovieInfoBulkResult.Status.FAILED;
+    }
+
+    public Mono<MovieInfo> updateMovieInfo(MovieInfo movieInfo, String id) {
+        return updateMovieInfo(movieInfo, id, null);
+    }
+
+    /**
+     * Writes only the fields that pass the update rules with one findAndModify. With an expectedVersion the write
+     * fails with MovieInfoVersionConflictException when someone else has updated the movie info in the meantime.
+     */
+    public Mono<MovieInfo> updateMovieInfo(MovieInfo movieInfo, String id, Long expectedVersion) {
+        MovieInfo changes = new MovieInfo();
+        if (!(movieInfo.getName() == null || movieInfo.getName().isBlank()))
+            changes.setName(movieInfo.getName());
+        if (!(movieInfo.getYear() == null || movieInfo.getYear() < 1900))
+            changes.setYear(movieInfo.getYear());
+        if (!(movieInfo.getCast() == null || movieInfo.getCast().isEmpty()))
+            changes.setCast(movieInfo.getCast());
+        if (!(movieInfo.getReleaseDate() == null))
+            changes.setReleaseDate(movieInfo.getReleaseDate());
+        return movieInfoRepository.updateFields(id, expectedVersion, changes)
+                .switchIfEmpty(Mono.defer(() -> expectedVersion == null
+                        ? Mono.empty()
+                        : movieInfoRepository.existsById(id)
+                                .flatMap(exists -> exists
+                                        ? Mono.error(new MovieInfoVersionConflictException(
+                                                "MovieInfo " + id + " is no longer at version " + expectedVersion))
+                                        : Mono.empty())))
+                .doOnNext(movieInfoEventPublisher::publishUpdated);
+    }
+
     public Mono<Void> deleteMovieInfo(String id) {
-        return movieInfoRepository.deleteById(id);
+        return movieInfoRepository.deleteById(id)
+                .doOnSuccess(ignored -> movieInfoEventPublisher.publishDeleted(id))
+                .then(reviewsCascadeClient.deleteReviewsInBackground(id));
+    }
+
+    public Flux<MovieInfoEvent> getMovieInfoEvents(String lastEventId) {
+        return movieInfoEventPublisher.stream(lastEventId);
     }
 }
@@ -1,6 +1,7 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
 import com.reactivespring.repository.MovieInfoRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
@@ -9,6 +10,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -65,6 +69,42 @@ class MovieInfoControllerIntegrationTest {
                 .hasSize(3);
     }
 
+    @Test
+    void streamAllMovieInfoAsNdjson() {
+        Flux<MovieInfo> movieInfoFlux = webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "?fields=name")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoFlux)
+                .expectNextMatches(movie -> movie.getName() != null && movie.getYear() == null)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void getMovieInfoPages() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "?limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "?after=abc&limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
     @Test
     void getAllMovieInfoByYear() {
         URI uri = UriComponentsBuilder.fromUriString(MOVIE_INFO_ENDPOINT)
@@ -81,6 +121,21 @@ class MovieInfoControllerIntegrationTest {
 
     }
 
+    @Test
+    void getMovieInfosByIds() {
+        URI uri = UriComponentsBuilder.fromUriString(MOVIE_INFO_ENDPOINT)
+                .queryParam("ids", "abc,null,nope")
+                .buildAndExpand().toUri();
+
+        webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
     @Test
     void getMovieInfoById() {
         String id = "abc";
@@ -127,6 +182,90 @@ class MovieInfoControllerIntegrationTest {
                 });
     }
 
+    @Test
+    void bulkUpsertMovieInfo() {
+        Flux<MovieInfo> upload = Flux.just(
+                new MovieInfo(null, "Memento", 2000, List.of("Guy Pearce"), LocalDate.parse("2000-10-11")),
+                new MovieInfo("abc", "Dark Knight Rises", 2013, List.of("Christian Bale"), LocalDate.parse("2012-07-20")),
+                new MovieInfo(null, "", -1, null, null),
+                new MovieInfo(null, "Batman Begins", 2005, List.of("Christian Bale"), null));
+
+        Flux<MovieInfoBulkResult> results = webTestClient.post()
+                .uri(MOVIE_INFO_ENDPOINT + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(upload, MovieInfo.class)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoBulkResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(results.map(MovieInfoBulkResult::getStatus))
+                .expectNext(MovieInfoBulkResult.Status.CREATED,
+                        MovieInfoBulkResult.Status.UPDATED,
+                        MovieInfoBulkResult.Status.INVALID,
+                        MovieInfoBulkResult.Status.FAILED)
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.findByName("Memento"))
+                .assertNext(movie -> assertNotNull(movie.getMovieInfoId()))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findById("abc"))
+                .assertNext(movie -> assertEquals(2013, movie.getYear()))
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkUpsertStartsNewMovieInfosAtTheVersionSaveStartsAt() {
+        Flux<MovieInfo> upload = Flux.just(
+                new MovieInfo(null, "Memento", 2000, List.of("Guy Pearce"), LocalDate.parse("2000-10-11")),
+                new MovieInfo("def", "Inception", 2010, List.of("Leonardo DiCaprio"), LocalDate.parse("2010-07-16")),
+                new MovieInfo("abc", "Dark Knight Rises", 2013, List.of("Christian Bale"), LocalDate.parse("2012-07-20")));
+
+        webTestClient.post()
+                .uri(MOVIE_INFO_ENDPOINT + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(upload, MovieInfo.class)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoBulkResult.class)
+                .hasSize(3);
+
+        StepVerifier.create(movieInfoRepository.findByName("Memento"))
+                .assertNext(movie -> assertEquals(0L, movie.getVersion()))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findById("def"))
+                .assertNext(movie -> assertEquals(0L, movie.getVersion()))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findById("abc"))
+                .assertNext(movie -> assertEquals(1L, movie.getVersion()))
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkUpsertMovieInfoOrderedStopsAtFirstFailure() {
+        Flux<MovieInfo> upload = Flux.just(
+                new MovieInfo(null, "", -1, null, null),
+                new MovieInfo(null, "Memento", 2000, List.of("Guy Pearce"), LocalDate.parse("2000-10-11")));
+
+        webTestClient.post()
+                .uri(MOVIE_INFO_ENDPOINT + "/bulk?ordered=true")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(upload, MovieInfo.class)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoBulkResult.class)
+                .hasSize(1);
+
+        StepVerifier.create(movieInfoRepository.findByName("Memento"))
+                .verifyComplete();
+    }
+
     @Test
     void updateMovieInfo() {
         String id = "abc";
@@ -162,6 +301,51 @@ class MovieInfoControllerIntegrationTest {
                 .isNotFound();
     }
 
+    @Test
+    void patchMovieInfoWithStaleIfMatchIsRejected() {
+        String id = "abc";
+        String etag = webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "/" + id)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(etag);
+
+        webTestClient.patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/" + id)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(new MovieInfo(null, null, 2013, null, null))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(MovieInfo.class)
+                .consumeWith(res -> {
+                    MovieInfo patched = res.getResponseBody();
+                    assertNotNull(patched);
+                    assertEquals("Dark Knight Rises", patched.getName());
+                    assertEquals(2013, patched.getYear());
+                });
+
+        webTestClient.patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/" + id)
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(new MovieInfo(null, null, 2014, null, null))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        webTestClient.patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/nope")
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(new MovieInfo(null, null, 2014, null, null))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
     @Test
     void deleteMovieInfo() {
         String id = "abc";
@@ -0,0 +1,118 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs explain() for the filter each repository query sends and fails if Mongo plans a collection scan.
+ * streamAll is a full scan by design and is not checked.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+class MovieInfoQueryPlanIntegrationTest {
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // Auto index creation runs asynchronously at startup, so make sure the declared indexes exist first.
+        IndexResolver.create(reactiveMongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(MovieInfo.class)
+                .forEach(index -> reactiveMongoTemplate.indexOps(MovieInfo.class).ensureIndex(index).block());
+
+        movieInfoRepository.saveAll(List.of(
+                new MovieInfo(null, "Batman Begins", 2005,
+                        List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-09-15")),
+                new MovieInfo("abc", "Dark Knight Rises", 2012,
+                        List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"))
+        )).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void findByYearUsesIndex() {
+        assertIndexed(Query.query(Criteria.where("year").is(2005)));
+    }
+
+    @Test
+    void findByNameUsesIndex() {
+        assertIndexed(Query.query(Criteria.where("name").is("Batman Begins")));
+    }
+
+    @Test
+    void findAllByIdUsesIndex() {
+        assertIndexed(Query.query(Criteria.where("movieInfoId").in(List.of("abc", "def"))));
+    }
+
+    @Test
+    void findPageUsesIndex() {
+        assertIndexed(Query.query(Criteria.where("movieInfoId").gt("abc"))
+                .with(Sort.by(Sort.Direction.ASC, "movieInfoId")));
+    }
+
+    private void assertIndexed(Query query) {
+        List<String> stages = winningPlanStages(query);
+        assertFalse(stages.contains("COLLSCAN"), "collection scan for " + query + ": " + stages);
+        assertTrue(stages.contains("IXSCAN") || stages.contains("IDHACK"), "no index used for " + query + ": " + stages);
+    }
+
+    private List<String> winningPlanStages(Query query) {
+        MongoPersistentEntity<?> entity = reactiveMongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(MovieInfo.class);
+        QueryMapper queryMapper = new QueryMapper(reactiveMongoTemplate.getConverter());
+        Document find = new Document("find", reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .append("filter", queryMapper.getMappedObject(query.getQueryObject(), entity))
+                .append("sort", queryMapper.getMappedSort(query.getSortObject(), entity));
+        Document explain = reactiveMongoTemplate
+                .executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .block();
+
+        List<String> stages = new ArrayList<>();
+        collectStages(explain.get("queryPlanner", Document.class).get("winningPlan", Document.class), stages);
+        return stages;
+    }
+
+    private void collectStages(Document plan, List<String> stages) {
+        if (plan.containsKey("stage")) {
+            stages.add(plan.getString("stage"));
+        }
+        for (String child : List.of("inputStage", "queryPlan")) {
+            if (plan.get(child) instanceof Document) {
+                collectStages(plan.get(child, Document.class), stages);
+            }
+        }
+        if (plan.get("inputStages") instanceof List) {
+            for (Object child : plan.getList("inputStages", Object.class)) {
+                collectStages((Document) child, stages);
+            }
+        }
+    }
+}
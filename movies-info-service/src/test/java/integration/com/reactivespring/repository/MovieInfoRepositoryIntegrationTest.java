@@ -13,6 +13,7 @@ import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -81,10 +82,55 @@ class MovieInfoRepositoryIntegrationTest {
                 }).verifyComplete();
     }
 
+    @Test
+    void updateFieldsSetsOnlyGivenFieldsAndChecksVersion() {
+        MovieInfo changes = new MovieInfo(null, null, 2013, null, null);
+        StepVerifier.create(movieInfoRepository.updateFields("abc", 0L, changes))
+                .assertNext(movie -> {
+                    assertEquals(2013, movie.getYear());
+                    assertEquals("Dark Knight Rises", movie.getName());
+                    assertEquals(List.of("Christian Bale", "Tom Hardy"), movie.getCast());
+                    assertEquals(1L, movie.getVersion());
+                }).verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.updateFields("abc", 0L, changes))
+                .verifyComplete();
+    }
+
     @Test
     void deleteMovieInfo() {
         assertNotNull(movieInfoRepository.findById("abc").block());
         movieInfoRepository.deleteById("abc").block();
         assertNull(movieInfoRepository.findById("abc").block());
     }
+
+    @Test
+    void findPageWalksMixedIdTypes() {
+        List<MovieInfo> firstPage = movieInfoRepository.findPage(null, 2, null).collectList().block();
+        assertNotNull(firstPage);
+        assertEquals(List.of("abc", "null"), firstPage.stream().map(MovieInfo::getMovieInfoId).collect(Collectors.toList()));
+
+        StepVerifier.create(movieInfoRepository.findPage("null", 2, null))
+                .assertNext(movie -> assertEquals("Batman Begins", movie.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void findPageProjectsFields() {
+        StepVerifier.create(movieInfoRepository.findPage(null, 1, List.of("name")))
+                .assertNext(movie -> {
+                    assertEquals("abc", movie.getMovieInfoId());
+                    assertEquals("Dark Knight Rises", movie.getName());
+                    assertNull(movie.getYear());
+                    assertNull(movie.getCast());
+                }).verifyComplete();
+    }
+
+    @Test
+    void streamAll() {
+        StepVerifier.create(movieInfoRepository.streamAll(List.of("year")))
+                .expectNextMatches(movie -> movie.getName() == null && movie.getYear() != null)
+                .expectNextCount(2)
+                .verifyComplete();
+    }
 }
@@ -0,0 +1,119 @@
+package com.reactivespring.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReviewsCascadeClientTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<ClientRequest> requests = new ArrayList<>();
+
+    private ReviewsCascadeClient client(HttpStatus... statuses) {
+        AtomicInteger call = new AtomicInteger();
+        WebClient.Builder builder = WebClient.builder().exchangeFunction(request -> {
+            requests.add(request);
+            HttpStatus status = statuses[Math.min(call.getAndIncrement(), statuses.length - 1)];
+            return Mono.just(ClientResponse.create(status)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .body(status.is2xxSuccessful() ? "{\"movieInfoId\":42,\"deletedCount\":1500}" : "\"error\"")
+                    .build());
+        });
+        return client(builder);
+    }
+
+    private ReviewsCascadeClient client(WebClient.Builder builder) {
+        ReviewsCascadeClient client = new ReviewsCascadeClient(builder, meterRegistry, Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(client, "reviewsUrl", "http://reviews/v1/reviews");
+        ReflectionTestUtils.setField(client, "enabled", true);
+        ReflectionTestUtils.setField(client, "maxRetries", 2);
+        return client;
+    }
+
+    @Test
+    void deleteReviews() {
+        StepVerifier.create(client(HttpStatus.OK).deleteReviews("42"))
+                .expectNext(1500L)
+                .verifyComplete();
+
+        assertEquals(1, requests.size());
+        assertEquals(HttpMethod.DELETE, requests.get(0).method());
+        assertEquals("http://reviews/v1/reviews?movieInfoId=42", requests.get(0).url().toString());
+        assertEquals(1, meterRegistry.get("movieinfo.cascade.reviews.delete").timer().count());
+        assertEquals(1500, meterRegistry.get("movieinfo.cascade.reviews.deleted").summary().totalAmount());
+    }
+
+    @Test
+    void deleteReviewsRetriesServerErrors() {
+        StepVerifier.create(client(HttpStatus.SERVICE_UNAVAILABLE, HttpStatus.OK).deleteReviews("42"))
+                .expectNext(1500L)
+                .verifyComplete();
+
+        assertEquals(2, requests.size());
+    }
+
+    @Test
+    void deleteReviewsDoesNotRetryClientErrors() {
+        StepVerifier.create(client(HttpStatus.BAD_REQUEST).deleteReviews("42"))
+                .verifyError();
+
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void deleteReviewsForCompletesWhenTheRetriesAreUsedUp() {
+        StepVerifier.create(client(HttpStatus.SERVICE_UNAVAILABLE).deleteReviewsFor("42"))
+                .verifyComplete();
+
+        assertEquals(3, requests.size());
+    }
+
+    @Test
+    void deleteReviewsInBackgroundDoesNotWaitAndKeepsTheCallersContext() {
+        Sinks.One<ClientResponse> response = Sinks.one();
+        AtomicReference<String> traceId = new AtomicReference<>();
+        ReviewsCascadeClient client = client(WebClient.builder().exchangeFunction(request -> Mono.deferContextual(context -> {
+            traceId.set(context.getOrDefault("traceId", null));
+            return response.asMono();
+        })));
+
+        StepVerifier.create(client.deleteReviewsInBackground("42").contextWrite(Context.of("traceId", "t-1")))
+                .verifyComplete();
+
+        assertEquals("t-1", traceId.get());
+        response.tryEmitValue(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body("{\"movieInfoId\":42,\"deletedCount\":3}")
+                .build());
+        assertEquals(3, meterRegistry.get("movieinfo.cascade.reviews.deleted").summary().totalAmount());
+    }
+
+    @Test
+    void nonNumericMovieIdsHaveNoReviews() {
+        StepVerifier.create(client(HttpStatus.OK).deleteReviewsFor("5f1c0a"))
+                .verifyComplete();
+
+        assertTrue(requests.isEmpty());
+    }
+}
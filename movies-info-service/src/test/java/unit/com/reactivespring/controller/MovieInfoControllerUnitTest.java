@@ -1,25 +1,39 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.exception.MovieInfoVersionConflictException;
 import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.validation.BeanValidation;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MovieInfoController.class)
 @AutoConfigureWebTestClient
+@Import(BeanValidation.class)
 public class MovieInfoControllerUnitTest {
 
     @Autowired
@@ -52,6 +66,82 @@ public class MovieInfoControllerUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void getMovieInfosByIds() {
+        List<MovieInfo> movieInfoData = List.of(
+                new MovieInfo("abc", "Dark Knight Rises", 2012,
+                        List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("def", "The Dark Knight", 2008,
+                        List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"))
+        );
+
+        when(movieInfoServiceMock.getMovieInfosByIds(List.of("abc", "def"))).thenReturn(Flux.fromIterable(movieInfoData));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "?ids=abc,def")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getMovieInfoPage() {
+        MovieInfo movie = new MovieInfo("def", "The Dark Knight", null, null, null);
+        when(movieInfoServiceMock.getMovieInfoPage("abc", 1, List.of("name"))).thenReturn(Flux.just(movie));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "?after=abc&limit=1&fields=name")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getMovieInfoPageRejectsUnknownField() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "?limit=10&fields=name,budget")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void getMovieInfoPageRejectsLimitAboveMax() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "?limit=100000")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void bulkUpsertMovieInfo() {
+        List<MovieInfoBulkResult> results = List.of(
+                new MovieInfoBulkResult(0, "abc", MovieInfoBulkResult.Status.UPDATED, null),
+                new MovieInfoBulkResult(1, null, MovieInfoBulkResult.Status.INVALID, "MovieInfo.name must not be blank"));
+        when(movieInfoServiceMock.bulkUpsert(any(), anyInt(), eq(true))).thenReturn(Flux.fromIterable(results));
+
+        Flux<MovieInfoBulkResult> response = webTestClient.post()
+                .uri(MOVIE_INFO_ENDPOINT + "/bulk?ordered=true")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale"), null),
+                        new MovieInfo(null, "", 2012, null, null)), MovieInfo.class)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfoBulkResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(response)
+                .expectNextSequence(results)
+                .verifyComplete();
+    }
+
     @Test
     void getMovieInfoById() {
         MovieInfo movie = new MovieInfo("abc", "Dark Knight Rises", 2012,
@@ -120,7 +210,15 @@ public class MovieInfoControllerUnitTest {
                 .bodyValue(body)
                 .exchange()
                 .expectStatus()
-                .isBadRequest();
+                .isBadRequest()
+                .expectHeader().contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.detail").isEqualTo("MovieInfo.name must not be blank,MovieInfo.year must be positive Integer")
+                .jsonPath("$.errors.length()").isEqualTo(2)
+                .jsonPath("$.errors[0].field").isEqualTo("name");
+
+        verify(movieInfoServiceMock, never()).addMovieInfo(any());
     }
 
     @Test
@@ -142,6 +240,96 @@ public class MovieInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void getMovieInfoByIdIsNotModifiedForCurrentVersion() {
+        when(movieInfoServiceMock.getMovieInfoById("1")).thenReturn(
+                Mono.just(new MovieInfo("1", "Movie", 2012, List.of("K", "M"), LocalDate.parse("2012-01-12"), 7L)));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_ENDPOINT + "/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"7\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"7\"")
+                .expectBody()
+                .isEmpty();
+    }
+
+    @Test
+    void patchMovieInfoWithIfMatch() {
+        when(movieInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), eq("1"), eq(3L))).thenReturn(
+                Mono.just(new MovieInfo("1", "Movie", 2012, List.of("K", "M"), LocalDate.parse("2012-01-12"), 4L)));
+
+        webTestClient.patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .bodyValue(new MovieInfo(null, "Movie", null, null, null))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"4\"");
+    }
+
+    @Test
+    void patchMovieInfoValidatesTheSentFields() {
+        webTestClient.patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/1")
+                .bodyValue(new MovieInfo(null, " ", -1, null, null))
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectHeader().contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .expectBody()
+                .jsonPath("$.detail").isEqualTo("MovieInfo.name must not be blank,MovieInfo.year must be positive Integer");
+
+        verify(movieInfoServiceMock, never()).updateMovieInfo(any(), any());
+        verify(movieInfoServiceMock, never()).updateMovieInfo(any(), any(), any());
+    }
+
+    @Test
+    void patchMovieInfoOnlyValidatesTheSentFields() {
+        when(movieInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), eq("1"))).thenReturn(
+                Mono.just(new MovieInfo("1", "Movie", 2013, List.of("K", "M"), LocalDate.parse("2012-01-12"), 4L)));
+
+        webTestClient.patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/1")
+                .bodyValue(new MovieInfo(null, null, 2013, null, null))
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        verify(movieInfoServiceMock, never()).getMovieInfoById(any());
+    }
+
+    @Test
+    void patchMovieInfoNotFound() {
+        when(movieInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), eq("1"))).thenReturn(Mono.empty());
+
+        webTestClient.patch()
+                .uri(MOVIE_INFO_ENDPOINT + "/1")
+                .bodyValue(new MovieInfo(null, null, 2013, null, null))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void updateMovieInfoWithStaleIfMatch() {
+        when(movieInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), eq("1"), eq(3L))).thenReturn(
+                Mono.error(new MovieInfoVersionConflictException("MovieInfo 1 is no longer at version 3")));
+
+        webTestClient.put()
+                .uri(MOVIE_INFO_ENDPOINT + "/1")
+                .header(HttpHeaders.IF_MATCH, "W/\"3\"")
+                .bodyValue(new MovieInfo(null, "Movie", 2023, List.of("K", "M"), LocalDate.now()))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+    }
+
     @Test
     void deleteMovieInfo() {
         when(movieInfoServiceMock.deleteMovieInfo("1")).thenReturn(Mono.empty());
@@ -0,0 +1,90 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LoadSheddingFilterTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    LoadSheddingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry));
+        filter = new LoadSheddingFilter(true, 10, 10, 10, Duration.ofMillis(500), 0.9, 0.9, 0.6, 0.5,
+                beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    // Runs the request through the filter with a handler that never answers, so it keeps its slot until disposed
+    Disposable hold(MockServerHttpRequest request) {
+        return filter.filter(MockServerWebExchange.from(request), exchange -> Mono.never()).subscribe();
+    }
+
+    HttpStatus statusOf(MockServerHttpRequest request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, e -> Mono.empty()).block();
+        return exchange.getResponse().getStatusCode();
+    }
+
+    @Test
+    void bulkRequestsAreShedBeforeCriticalOnes() {
+        for (int i = 0; i < 6; i++) {
+            hold(MockServerHttpRequest.post("/v1/movie-infos/bulk").build());
+        }
+
+        MockServerWebExchange rejected = MockServerWebExchange.from(MockServerHttpRequest.post("/v1/movie-infos/bulk").build());
+        filter.filter(rejected, exchange -> Mono.empty()).block();
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getResponse().getStatusCode());
+        assertEquals("1", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, statusOf(MockServerHttpRequest.get("/v1/movie-infos/stream").build()));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, statusOf(MockServerHttpRequest.get("/v1/movie-infos").build()));
+        assertNull(statusOf(MockServerHttpRequest.get("/v1/movie-infos?limit=10").build()));
+        assertNull(statusOf(MockServerHttpRequest.get("/v1/movie-infos/abc").build()));
+        assertEquals(3.0, meterRegistry.get("http.server.requests.shed").tag("priority", "BULK").counter().count()
+                + meterRegistry.get("http.server.requests.shed").tag("priority", "STREAM").counter().count());
+    }
+
+    @Test
+    void cancelledRequestsGiveTheirSlotBack() {
+        Disposable held = hold(MockServerHttpRequest.get("/v1/movie-infos/abc").build());
+        assertEquals(1, filter.getLimiter().getInFlight());
+
+        held.dispose();
+
+        assertEquals(0, filter.getLimiter().getInFlight());
+    }
+
+    @Test
+    void classifiesRoutes() {
+        assertEquals(RequestPriority.STREAM, filter.priorityOf(MockServerHttpRequest.get("/v1/movie-infos/stream").build()));
+        assertEquals(RequestPriority.BULK, filter.priorityOf(MockServerHttpRequest.post("/v1/movie-infos/bulk").build()));
+        assertEquals(RequestPriority.BULK, filter.priorityOf(MockServerHttpRequest.get("/v1/movie-infos")
+                .accept(MediaType.APPLICATION_NDJSON).build()));
+        assertEquals(RequestPriority.BULK, filter.priorityOf(MockServerHttpRequest.get("/v1/movie-infos").build()));
+        assertEquals(RequestPriority.BULK, filter.priorityOf(MockServerHttpRequest.get("/v1/movie-infos?fields=name").build()));
+        assertEquals(RequestPriority.NORMAL, filter.priorityOf(MockServerHttpRequest.get("/v1/movie-infos?after=abc&limit=20").build()));
+        assertEquals(RequestPriority.NORMAL, filter.priorityOf(MockServerHttpRequest.get("/v1/movie-infos?ids=1,2").build()));
+        assertEquals(RequestPriority.NORMAL, filter.priorityOf(MockServerHttpRequest.get("/v1/movie-infos?year=2005").build()));
+        assertEquals(RequestPriority.CRITICAL, filter.priorityOf(MockServerHttpRequest.post("/v1/movie-infos").build()));
+        assertEquals(RequestPriority.CRITICAL, filter.priorityOf(MockServerHttpRequest.put("/v1/movie-infos/abc").build()));
+    }
+}
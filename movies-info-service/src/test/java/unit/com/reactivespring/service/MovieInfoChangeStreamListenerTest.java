@@ -0,0 +1,130 @@
+package com.reactivespring.service;
+
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoSocketReadException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoChangeStreamListenerTest {
+
+    ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+
+    MovieInfoChangeStreamListener listener = new MovieInfoChangeStreamListener(reactiveMongoTemplate, mock(MovieInfoEventPublisher.class));
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012,
+            List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @BeforeEach
+    void setUp() {
+        when(reactiveMongoTemplate.getCollectionName(MovieInfo.class)).thenReturn("movieInfo");
+    }
+
+    @Test
+    void classifiesResumeTokenErrors() {
+        assertTrue(MovieInfoChangeStreamListener.isNonResumable(serverError(286)));
+        assertTrue(MovieInfoChangeStreamListener.isNonResumable(new UncategorizedMongoDbException("wrapped", serverError(260))));
+        assertFalse(MovieInfoChangeStreamListener.isNonResumable(serverError(91)));
+        assertFalse(MovieInfoChangeStreamListener.isNonResumable(new MongoSocketReadException("reset", new ServerAddress())));
+    }
+
+    @Test
+    void resumeSendsResetWhenTheTokenIsLost() {
+        Flux<ChangeStreamEvent<MovieInfo>> live = Flux.just(changeEvent(OperationType.INSERT, movieInfo));
+        when(reactiveMongoTemplate.changeStream(eq("movieInfo"), any(ChangeStreamOptions.class), eq(MovieInfo.class)))
+                .thenReturn(Flux.error(serverError(286)), live);
+
+        StepVerifier.create(listener.resume("garbage"))
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.RESET, event.getType());
+                    assertNull(event.getEventId());
+                })
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.CREATED, event.getType()))
+                .verifyComplete();
+    }
+
+    @Test
+    void resumePassesOtherErrorsOn() {
+        when(reactiveMongoTemplate.changeStream(eq("movieInfo"), any(ChangeStreamOptions.class), eq(MovieInfo.class)))
+                .thenReturn(Flux.error(serverError(91)));
+
+        StepVerifier.create(listener.resume("token"))
+                .verifyError(MongoCommandException.class);
+    }
+
+    @Test
+    void updateWithoutFullDocumentIsLookedUp() {
+        ChangeStreamEvent<MovieInfo> update = changeEvent(OperationType.UPDATE, null);
+        when(reactiveMongoTemplate.changeStream(eq("movieInfo"), any(ChangeStreamOptions.class), eq(MovieInfo.class)))
+                .thenReturn(Flux.just(update));
+        when(reactiveMongoTemplate.findById("abc", MovieInfo.class)).thenReturn(Mono.just(movieInfo));
+
+        StepVerifier.create(listener.changes(null))
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.UPDATED, event.getType());
+                    assertEquals(movieInfo, event.getMovieInfo());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void updateOfADeletedDocumentIsReportedAsDeleted() {
+        ChangeStreamEvent<MovieInfo> update = changeEvent(OperationType.UPDATE, null);
+        when(reactiveMongoTemplate.changeStream(eq("movieInfo"), any(ChangeStreamOptions.class), eq(MovieInfo.class)))
+                .thenReturn(Flux.just(update));
+        when(reactiveMongoTemplate.findById("abc", MovieInfo.class)).thenReturn(Mono.empty());
+
+        StepVerifier.create(listener.changes(null))
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.DELETED, event.getType());
+                    assertEquals("abc", event.getMovieInfoId());
+                    assertNull(event.getMovieInfo());
+                })
+                .verifyComplete();
+    }
+
+    private static MongoCommandException serverError(int code) {
+        BsonDocument response = new BsonDocument("ok", new BsonInt32(0))
+                .append("code", new BsonInt32(code))
+                .append("errmsg", new BsonString("error " + code));
+        return new MongoCommandException(response, new ServerAddress());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamEvent<MovieInfo> changeEvent(OperationType operationType, MovieInfo body) {
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(operationType,
+                new BsonDocument("_data", new BsonString("8263")), null, null, null,
+                new BsonDocument("_id", new BsonString("abc")), null, null, null, null);
+        ChangeStreamEvent<MovieInfo> event = mock(ChangeStreamEvent.class);
+        when(event.getRaw()).thenReturn(raw);
+        when(event.getBody()).thenReturn(body);
+        return event;
+    }
+}
@@ -0,0 +1,230 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoEventPublisherTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    MovieInfoEventPublisher publisher = publisher(MovieInfoEventPublisher.ReplayPolicy.LAST_N, 100,
+            MovieInfoEventPublisher.OverflowStrategy.DROP_OLDEST);
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012,
+            List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    MovieInfoEventPublisher publisher(MovieInfoEventPublisher.ReplayPolicy replayPolicy, int size,
+                                      MovieInfoEventPublisher.OverflowStrategy overflowStrategy) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new MovieInfoEventPublisher(meterRegistry, MovieInfoEventPublisher.Source.LOCAL, replayPolicy, size, Duration.ofMinutes(10), size,
+                overflowStrategy, Duration.ofSeconds(30));
+    }
+
+    @Test
+    void publishesCreateUpdateAndDelete() {
+        publisher.publishCreated(movieInfo);
+        publisher.publishUpdated(movieInfo);
+        publisher.publishDeleted("abc");
+
+        StepVerifier.create(publisher.stream(null))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.CREATED, event.getType()))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.UPDATED, event.getType()))
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.DELETED, event.getType());
+                    assertEquals("abc", event.getMovieInfoId());
+                })
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void resumesAfterLastEventId() {
+        publisher.publishCreated(movieInfo);
+        String firstEventId = publisher.stream(null).blockFirst().getEventId();
+        publisher.publishDeleted("abc");
+
+        StepVerifier.create(publisher.stream(firstEventId))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.DELETED, event.getType()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void unknownLastEventIdSendsReset() {
+        publisher.publishCreated(movieInfo);
+
+        StepVerifier.create(publisher.stream("previous-epoch-42"))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.RESET, event.getType()))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.CREATED, event.getType()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void replayIsBoundedToLastN() {
+        MovieInfoEventPublisher publisher = publisher(MovieInfoEventPublisher.ReplayPolicy.LAST_N, 2,
+                MovieInfoEventPublisher.OverflowStrategy.DROP_OLDEST);
+        publisher.publishCreated(movieInfo);
+        String firstEventId = publisher.stream(null).blockFirst().getEventId();
+        publisher.publishUpdated(movieInfo);
+        publisher.publishUpdated(movieInfo);
+        publisher.publishUpdated(movieInfo);
+
+        StepVerifier.create(publisher.stream(null))
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+
+        // the first two events have been trimmed, so resuming from it would leave a gap
+        StepVerifier.create(publisher.stream(firstEventId))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.RESET, event.getType()))
+                .expectNextCount(2)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void noReplay() {
+        MovieInfoEventPublisher publisher = publisher(MovieInfoEventPublisher.ReplayPolicy.NONE, 10,
+                MovieInfoEventPublisher.OverflowStrategy.DROP_OLDEST);
+        publisher.publishCreated(movieInfo);
+
+        StepVerifier.create(publisher.stream(null))
+                .then(() -> publisher.publishDeleted("abc"))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.DELETED, event.getType()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void slowSubscriberDropsOldest() {
+        MovieInfoEventPublisher publisher = publisher(MovieInfoEventPublisher.ReplayPolicy.NONE, 2,
+                MovieInfoEventPublisher.OverflowStrategy.DROP_OLDEST);
+
+        StepVerifier.create(publisher.stream(null), 0)
+                .then(() -> {
+                    publisher.publishCreated(movieInfo);
+                    publisher.publishUpdated(movieInfo);
+                    publisher.publishDeleted("abc");
+                    assertEquals(2.0, meterRegistry.get("movieinfo.stream.buffer.depth").gauge().value());
+                })
+                .thenRequest(2)
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.UPDATED, event.getType()))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.DELETED, event.getType()))
+                .thenCancel()
+                .verify();
+
+        assertEquals(1.0, meterRegistry.get("movieinfo.stream.dropped").counter().count());
+    }
+
+    @Test
+    void slowSubscriberIsDisconnected() {
+        MovieInfoEventPublisher publisher = publisher(MovieInfoEventPublisher.ReplayPolicy.NONE, 2,
+                MovieInfoEventPublisher.OverflowStrategy.DISCONNECT);
+
+        StepVerifier.create(publisher.stream(null), 0)
+                .then(() -> {
+                    assertEquals(1.0, meterRegistry.get("movieinfo.stream.subscribers").gauge().value());
+                    publisher.publishCreated(movieInfo);
+                    publisher.publishUpdated(movieInfo);
+                    publisher.publishDeleted("abc");
+                })
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(2)
+                .verifyComplete();
+
+        assertEquals(0.0, meterRegistry.get("movieinfo.stream.subscribers").gauge().value());
+        assertEquals(1.0, meterRegistry.get("movieinfo.stream.disconnected").counter().count());
+    }
+
+    @Test
+    void changeStreamSourceIgnoresLocalWritesAndCatchesUpFromResumeSource() {
+        MovieInfoEventPublisher publisher = changeStreamPublisher(Duration.ofSeconds(30));
+        publisher.setResumeSource(token -> Flux.concat(Flux.just(
+                        new MovieInfoEvent("token-from-other-instance", MovieInfoEvent.Type.DELETED, "abc", null),
+                        new MovieInfoEvent("token-1", MovieInfoEvent.Type.UPDATED, "abc", movieInfo),
+                        new MovieInfoEvent("token-past-the-handoff", MovieInfoEvent.Type.UPDATED, "abc", movieInfo)),
+                Flux.never()));
+
+        publisher.publishCreated(movieInfo);
+        publisher.publish(new MovieInfoEvent("token-1", MovieInfoEvent.Type.UPDATED, "abc", movieInfo));
+
+        StepVerifier.create(publisher.stream(null))
+                .assertNext(event -> assertEquals("token-1", event.getEventId()))
+                .thenCancel()
+                .verify();
+
+        // The dedicated cursor is left at the shared cursor's position; later events come through the fan-out
+        StepVerifier.create(publisher.stream("token-0"))
+                .assertNext(event -> assertEquals("token-from-other-instance", event.getEventId()))
+                .assertNext(event -> assertEquals("token-1", event.getEventId()))
+                .then(() -> assertEquals(1.0, meterRegistry.get("movieinfo.stream.subscribers").gauge().value()))
+                .then(() -> publisher.publish(new MovieInfoEvent("token-2", MovieInfoEvent.Type.DELETED, "abc", null)))
+                .assertNext(event -> assertEquals("token-2", event.getEventId()))
+                .thenCancel()
+                .verify();
+        assertEquals(0.0, meterRegistry.get("movieinfo.stream.subscribers").gauge().value());
+    }
+
+    @Test
+    void catchUpThatCannotReachTheSharedCursorSendsReset() {
+        MovieInfoEventPublisher publisher = changeStreamPublisher(Duration.ofSeconds(30));
+        publisher.setResumeSource(token -> Flux.just(
+                new MovieInfoEvent("token-from-other-instance", MovieInfoEvent.Type.DELETED, "abc", null)));
+        publisher.publish(new MovieInfoEvent("token-1", MovieInfoEvent.Type.UPDATED, "abc", movieInfo));
+
+        StepVerifier.create(publisher.stream("token-0"))
+                .assertNext(event -> assertEquals("token-from-other-instance", event.getEventId()))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.RESET, event.getType()))
+                .then(() -> publisher.publish(new MovieInfoEvent("token-2", MovieInfoEvent.Type.DELETED, "abc", null)))
+                .assertNext(event -> assertEquals("token-2", event.getEventId()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void resetFromTheResumeSourceHandsOffToTheFanOut() {
+        MovieInfoEventPublisher publisher = changeStreamPublisher(Duration.ofSeconds(30));
+        publisher.setResumeSource(token -> Flux.concat(
+                Flux.just(new MovieInfoEvent(null, MovieInfoEvent.Type.RESET, null, null)),
+                Flux.just(new MovieInfoEvent("token-1", MovieInfoEvent.Type.UPDATED, "abc", movieInfo)),
+                Flux.never()));
+        publisher.publish(new MovieInfoEvent("token-1", MovieInfoEvent.Type.UPDATED, "abc", movieInfo));
+
+        StepVerifier.create(publisher.stream("garbage"))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.RESET, event.getType()))
+                .then(() -> publisher.publish(new MovieInfoEvent("token-2", MovieInfoEvent.Type.DELETED, "abc", null)))
+                .assertNext(event -> assertEquals("token-2", event.getEventId()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void catchUpGivesUpAfterTheTimeout() {
+        MovieInfoEventPublisher publisher = changeStreamPublisher(Duration.ofMillis(100));
+        publisher.setResumeSource(token -> Flux.never());
+        publisher.publish(new MovieInfoEvent("token-1", MovieInfoEvent.Type.UPDATED, "abc", movieInfo));
+
+        StepVerifier.create(publisher.stream("token-0"))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.RESET, event.getType()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(5));
+    }
+
+    MovieInfoEventPublisher changeStreamPublisher(Duration catchUpTimeout) {
+        meterRegistry = new SimpleMeterRegistry();
+        return new MovieInfoEventPublisher(meterRegistry, MovieInfoEventPublisher.Source.CHANGE_STREAM,
+                MovieInfoEventPublisher.ReplayPolicy.LAST_N, 10, Duration.ofMinutes(10), 10,
+                MovieInfoEventPublisher.OverflowStrategy.DROP_OLDEST, catchUpTimeout);
+    }
+}
@@ -1,10 +1,14 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.*;
@@ -14,6 +18,11 @@ import javax.validation.constraints.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Document
+// Both serve plain movieInfoId lookups through their prefix, and back the id and rating keyset pages.
+@CompoundIndexes({
+        @CompoundIndex(name = "movieInfoId_id", def = "{'movieInfoId': 1, '_id': 1}"),
+        @CompoundIndex(name = "movieInfoId_rating_id", def = "{'movieInfoId': 1, 'rating': -1, '_id': -1}")
+})
 public class Review {
 
     @Id
@@ -30,4 +39,13 @@ public class Review {
     @DecimalMin(value = "0.0", message = "Review.rating must be between 0 - 5")
     @DecimalMax(value = "5.0", message = "Review.rating must be between 0 - 5")
     private Double rating;
+
+    // Exposed as the ETag of update responses; conditional updates send it back in If-Match.
+    @Version
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long version;
+
+    public Review(String reviewId, Long movieInfoId, String comment, Double rating) {
+        this(reviewId, movieInfoId, comment, rating, null);
+    }
 }
@@ -0,0 +1,107 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Running rating totals for one movie, kept current with $inc on every review write so a summary is a single
+ * document read. ReviewAggregateReconciler rebuilds them from the raw reviews to repair drift.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document
+public class ReviewAggregate {
+
+    @Id
+    private Long movieInfoId;
+
+    private long count;
+
+    // Reviews that carry a rating; sum and sumSq only cover these
+    private long ratedCount;
+
+    private double sum;
+
+    private double sumSq;
+
+    // Rated reviews per whole star, keyed by bucket(rating)
+    private Map<String, Long> histogram = new HashMap<>();
+
+    private Instant lastModified;
+
+    // Id of the last ReviewAggregateReconciler run that found reviews for the movie
+    private String reconcileRun;
+
+    public static String bucket(double rating) {
+        return String.valueOf((int) Math.floor(rating));
+    }
+
+    public static Map<String, Long> emptyHistogram() {
+        Map<String, Long> stars = new LinkedHashMap<>();
+        for (int star = 0; star <= 5; star++) {
+            stars.put(String.valueOf(star), 0L);
+        }
+        return stars;
+    }
+
+    public void include(Review review) {
+        movieInfoId = review.getMovieInfoId();
+        count++;
+        Double rating = review.getRating();
+        if (rating != null) {
+            ratedCount++;
+            sum += rating;
+            sumSq += rating * rating;
+            histogram.merge(bucket(rating), 1L, Long::sum);
+        }
+    }
+
+    // The running sums are built in a different order than a rebuild adds them up, so they may differ in the last bits
+    public boolean hasTotalsOf(ReviewAggregate other) {
+        return count == other.count
+                && ratedCount == other.ratedCount
+                && closeTo(sum, other.sum)
+                && closeTo(sumSq, other.sumSq)
+                && nonZero(histogram).equals(nonZero(other.histogram));
+    }
+
+    public ReviewSummary toSummary() {
+        Map<String, Long> stars = emptyHistogram();
+        if (histogram != null) {
+            histogram.forEach((star, reviews) -> stars.computeIfPresent(star, (key, zero) -> reviews));
+        }
+        if (ratedCount == 0) {
+            return new ReviewSummary(movieInfoId, count, null, null, stars);
+        }
+        double average = sum / ratedCount;
+        // Clamped because float rounding in the running sums can push the variance slightly below zero
+        double variance = Math.max(0, sumSq / ratedCount - average * average);
+        return new ReviewSummary(movieInfoId, count, average, Math.sqrt(variance), stars);
+    }
+
+    private static boolean closeTo(double left, double right) {
+        return Math.abs(left - right) <= 1e-9 * Math.max(1, Math.max(Math.abs(left), Math.abs(right)));
+    }
+
+    // $inc leaves a bucket at 0 once its last review is removed, a rebuild never creates it
+    private static Map<String, Long> nonZero(Map<String, Long> histogram) {
+        Map<String, Long> nonZero = new HashMap<>();
+        if (histogram != null) {
+            histogram.forEach((star, reviews) -> {
+                if (reviews != 0) {
+                    nonZero.put(star, reviews);
+                }
+            });
+        }
+        return nonZero;
+    }
+}
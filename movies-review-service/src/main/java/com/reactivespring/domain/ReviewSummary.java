@@ -0,0 +1,28 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSummary {
+
+    private Long movieInfoId;
+
+    private long count;
+
+    // null when none of the reviews has a rating
+    private Double average;
+
+    // Population standard deviation of the ratings, null together with average
+    private Double standardDeviation;
+
+    // Number of rated reviews per whole star, "0" to "5"
+    private Map<String, Long> histogram;
+}
@@ -1,9 +0,0 @@
-package com.reactivespring.exception;
-
-public class ReviewDataException extends RuntimeException {
-    private String message;
-    public ReviewDataException(String s) {
-        super(s);
-        this.message=s;
-    }
-}
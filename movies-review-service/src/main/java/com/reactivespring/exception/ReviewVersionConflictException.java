@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+// Client error; created without a stack trace like ReviewNotFoundException
+public class ReviewVersionConflictException extends RuntimeException {
+    public ReviewVersionConflictException(String s) {
+        super(s, null, false, false);
+    }
+}
@@ -1,8 +1,10 @@
 package com.reactivespring.exceptionHandler;
 
-import com.reactivespring.exception.ReviewDataException;
 import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.exception.ReviewVersionConflictException;
+import com.reactivespring.logging.LogRateLimiter;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.reactive.error.ErrorWebExceptionHandler;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferFactory;
@@ -11,27 +13,48 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+// Invalid requests never get here: ReviewHandler answers them with a problem+json body itself.
 @Component
 @Slf4j
 public class GlobalErrorHandler implements ErrorWebExceptionHandler {
 
-    @Override
-    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
-        log.error("Exception message: {}", ex.getMessage(), ex);
-        DataBufferFactory dataBufferFactory = exchange.getResponse().bufferFactory();
-        DataBuffer errorMessage = dataBufferFactory.wrap(ex.getMessage().getBytes());
+    private final LogRateLimiter errorLog;
 
-        if (ex instanceof ReviewDataException) {
-            exchange.getResponse().setStatusCode(HttpStatus.BAD_REQUEST);
-            return exchange.getResponse().writeWith(Mono.just(errorMessage));
-        }
+    public GlobalErrorHandler(@Value("${app.logging.errors.permits:10}") int permits,
+                              @Value("${app.logging.errors.interval:1s}") Duration interval) {
+        this.errorLog = new LogRateLimiter(permits, interval);
+    }
 
+    @Override
+    public Mono<Void> handle(ServerWebExchange exchange, Throwable ex) {
+        HttpStatus status = HttpStatus.INTERNAL_SERVER_ERROR;
         if (ex instanceof ReviewNotFoundException) {
-            exchange.getResponse().setStatusCode(HttpStatus.NOT_FOUND);
-            return exchange.getResponse().writeWith(Mono.just(errorMessage));
+            status = HttpStatus.NOT_FOUND;
+        } else if (ex instanceof ReviewVersionConflictException) {
+            status = HttpStatus.PRECONDITION_FAILED;
         }
+        log(exchange, status, ex);
 
-        exchange.getResponse().setStatusCode(HttpStatus.INTERNAL_SERVER_ERROR);
+        DataBufferFactory dataBufferFactory = exchange.getResponse().bufferFactory();
+        DataBuffer errorMessage = dataBufferFactory.wrap(String.valueOf(ex.getMessage()).getBytes(StandardCharsets.UTF_8));
+        exchange.getResponse().setStatusCode(status);
         return exchange.getResponse().writeWith(Mono.just(errorMessage));
     }
+
+    // Client errors are expected and logged without a stack trace; both kinds share one rate limit
+    private void log(ServerWebExchange exchange, HttpStatus status, Throwable ex) {
+        long suppressed = errorLog.tryAcquire();
+        if (suppressed < 0) {
+            return;
+        }
+        String request = exchange.getRequest().getMethodValue() + " " + exchange.getRequest().getPath().value();
+        if (status.is4xxClientError()) {
+            log.warn("{} answered {}: {} ({} similar messages suppressed)", request, status.value(), ex.getMessage(), suppressed);
+        } else {
+            log.error("{} failed: {} ({} similar messages suppressed)", request, ex.getMessage(), suppressed, ex);
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Load shedding in front of the ReviewRouter routes, configured under reviews.loadShedding.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LoadSheddingFilter extends LoadSheddingWebFilter {
+
+    public LoadSheddingFilter(@Value("${reviews.loadShedding.enabled:true}") boolean enabled,
+                              @Value("${reviews.loadShedding.initialLimit:100}") int initialLimit,
+                              @Value("${reviews.loadShedding.minLimit:10}") int minLimit,
+                              @Value("${reviews.loadShedding.maxLimit:1000}") int maxLimit,
+                              @Value("${reviews.loadShedding.latencyThreshold:500ms}") Duration latencyThreshold,
+                              @Value("${reviews.loadShedding.backoffRatio:0.9}") double backoffRatio,
+                              @Value("${reviews.loadShedding.normalShare:0.9}") double normalShare,
+                              @Value("${reviews.loadShedding.bulkShare:0.6}") double bulkShare,
+                              @Value("${reviews.loadShedding.streamShare:0.5}") double streamShare,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        super(enabled, initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio, normalShare, bulkShare, streamShare,
+                meterRegistry);
+    }
+
+    @Override
+    protected RequestPriority priorityOf(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        switch (path) {
+            case "/v1/reviews/bulk":
+                return RequestPriority.BULK;
+            case "/v1/reviews":
+                if (request.getMethod() == HttpMethod.DELETE) {
+                    return RequestPriority.BULK;
+                }
+                if (request.getMethod() == HttpMethod.GET) {
+                    // Without movieInfoId the handler reads every review, and it has no paging
+                    boolean readsAll = !request.getQueryParams().containsKey("movieInfoId");
+                    return acceptsNdjson(request) || readsAll ? RequestPriority.BULK : RequestPriority.NORMAL;
+                }
+                return RequestPriority.CRITICAL;
+            default:
+                return RequestPriority.CRITICAL;
+        }
+    }
+}
@@ -1,20 +1,42 @@
 package com.reactivespring.handler;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteUpsert;
 import com.reactivespring.domain.Review;
-import com.reactivespring.exception.ReviewDataException;
+import com.reactivespring.domain.ReviewAggregate;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewSummary;
 import com.reactivespring.exception.ReviewNotFoundException;
+import com.reactivespring.exception.ReviewVersionConflictException;
+import com.reactivespring.repository.ReviewAggregateRepository;
 import com.reactivespring.repository.ReviewReactorRepository;
+import com.reactivespring.validation.BeanValidation;
+import com.reactivespring.validation.ValidationErrors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
 
-import javax.validation.ConstraintViolation;
-import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -23,67 +45,392 @@ import java.util.stream.Collectors;
 public class ReviewHandler {
 
     @Autowired
-    private Validator validator;
+    private BeanValidation beanValidation;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${reviews.bulk.batchSize:1000}")
+    private int bulkBatchSize;
+
+    @Value("${reviews.page.defaultLimit:50}")
+    private int defaultPageLimit;
+
+    @Value("${reviews.page.maxLimit:500}")
+    private int maxPageLimit;
+
+    // 0 lets clients keep the reviews but makes them revalidate them with If-None-Match on every read
+    @Value("${reviews.http.maxAge:0s}")
+    private Duration maxAge;
 
     private final ReviewReactorRepository reviewReactorRepository;
 
-    public ReviewHandler(ReviewReactorRepository reviewReactorRepository) {
+    private final ReviewAggregateRepository reviewAggregateRepository;
+
+    public ReviewHandler(ReviewReactorRepository reviewReactorRepository, ReviewAggregateRepository reviewAggregateRepository) {
         this.reviewReactorRepository = reviewReactorRepository;
+        this.reviewAggregateRepository = reviewAggregateRepository;
     }
 
     public Mono<ServerResponse> findAll(ServerRequest request) {
+        Optional<String> movieInfoIds = request.queryParam("movieInfoId");
+        if (movieInfoIds.isPresent()) {
+            return findReviewsByMovieInfoIds(movieInfoIds.get());
+        }
         Flux<Review> reviews = reviewReactorRepository.findAll();
         return ServerResponse.ok().body(reviews, Review.class);
     }
 
+    // Bulk lookup used by movies-service to fetch the reviews for a whole page of movies in one call
+    private Mono<ServerResponse> findReviewsByMovieInfoIds(String movieInfoIds) {
+        List<Long> ids;
+        try {
+            ids = Arrays.stream(movieInfoIds.split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .map(Long::valueOf)
+                    .distinct()
+                    .collect(Collectors.toList());
+        } catch (NumberFormatException e) {
+            return badRequest("movieInfoId must be a comma separated list of numbers");
+        }
+        Flux<Review> reviews = reviewReactorRepository.findByMovieInfoIdIn(ids);
+        return ServerResponse.ok().body(reviews, Review.class);
+    }
+
     public Mono<ServerResponse> findReviewsByMovieInfoId(ServerRequest request) {
+        if (request.queryParam("limit").isPresent() || request.queryParam("sort").isPresent()
+                || request.queryParam("afterId").isPresent()) {
+            return findReviewPage(request);
+        }
+        Long movieInfoId = Long.valueOf(request.pathVariable("id"));
         Flux<Review> reviews =
-                reviewReactorRepository.findByMovieInfoId(Long.valueOf(request.pathVariable("id")))
+                reviewReactorRepository.findByMovieInfoId(movieInfoId)
                         .switchIfEmpty(Mono.error(new ReviewNotFoundException(
                 "Review not found for id " + request.pathVariable("id"))));
-        return ServerResponse.ok().body(reviews, Review.class);
+        return conditionalStream(request, movieInfoId, reviews);
+    }
+
+    // All of a movie's reviews are streamed, so the ETag cannot hash the body. It is a weak one built from the
+    // movie's ReviewAggregate instead, which every review write touches. The aggregate is read before the reviews,
+    // so a concurrent write can only make the body newer than its ETag, never older. Movies without an aggregate
+    // (e.g. reviews imported before aggregates existed) get no ETag.
+    private Mono<ServerResponse> conditionalStream(ServerRequest request, Long movieInfoId, Flux<Review> reviews) {
+        if (request.headers().accept().contains(MediaType.APPLICATION_NDJSON)) {
+            return ServerResponse.ok().body(reviews, Review.class);
+        }
+        return reviewAggregateRepository.findById(movieInfoId)
+                .map(aggregate -> Optional.of(weakETag(aggregate)))
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(eTag -> {
+                    if (eTag.isPresent() && ifNoneMatch(request, eTag.get())) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag.get()).cacheControl(cacheControl()).build();
+                    }
+                    ServerResponse.BodyBuilder ok = ServerResponse.ok().contentType(MediaType.APPLICATION_JSON);
+                    eTag.ifPresent(tag -> ok.eTag(tag).cacheControl(cacheControl()));
+                    return ok.body(reviews, Review.class);
+                });
+    }
+
+    private static String weakETag(ReviewAggregate aggregate) {
+        long modified = aggregate.getLastModified() == null ? 0 : aggregate.getLastModified().toEpochMilli();
+        return "W/\"" + aggregate.getCount() + "-" + modified + "\"";
+    }
+
+    // One keyset page of a movie's reviews; an empty page is a 200, not a 404. Send Accept: application/x-ndjson
+    // to have the page streamed as it is read.
+    private Mono<ServerResponse> findReviewPage(ServerRequest request) {
+        Long movieInfoId;
+        int limit;
+        Double afterRating;
+        try {
+            movieInfoId = Long.valueOf(request.pathVariable("id"));
+            limit = request.queryParam("limit").map(Integer::valueOf).orElse(defaultPageLimit);
+            afterRating = request.queryParam("afterRating").map(Double::valueOf).orElse(null);
+        } catch (NumberFormatException e) {
+            return badRequest("movieInfoId, limit and afterRating must be numbers");
+        }
+        if (limit < 1 || limit > maxPageLimit) {
+            return badRequest("limit must be between 1 and " + maxPageLimit);
+        }
+
+        String sort = request.queryParam("sort").orElse("id");
+        ReviewReactorRepository.SortBy sortBy;
+        if (sort.equals("id")) {
+            sortBy = ReviewReactorRepository.SortBy.ID;
+        } else if (sort.equals("rating")) {
+            sortBy = ReviewReactorRepository.SortBy.RATING;
+        } else {
+            return badRequest("sort must be id or rating");
+        }
+
+        String afterId = request.queryParam("afterId").orElse(null);
+        boolean ratingCursor = sortBy == ReviewReactorRepository.SortBy.RATING && afterId != null;
+        if (ratingCursor != (afterRating != null)) {
+            return badRequest("afterRating must be given together with afterId when sort is rating, and only then");
+        }
+
+        Flux<Review> reviews = reviewReactorRepository.findPage(movieInfoId, sortBy, afterId, afterRating, limit);
+        return conditionalPage(request, reviews);
+    }
+
+    // Serializes one page (at most maxPageLimit reviews) and hashes the bytes into a strong ETag, answering 304
+    // without a body when the client's If-None-Match already holds it. NDJSON requests are streamed as they are
+    // read, without an ETag.
+    private Mono<ServerResponse> conditionalPage(ServerRequest request, Flux<Review> reviews) {
+        if (request.headers().accept().contains(MediaType.APPLICATION_NDJSON)) {
+            return ServerResponse.ok().body(reviews, Review.class);
+        }
+        CacheControl cacheControl = cacheControl();
+        return reviews.collectList()
+                .flatMap(list -> Mono.fromCallable(() -> objectMapper.writeValueAsBytes(list)))
+                .flatMap(body -> {
+                    String eTag = "\"" + DigestUtils.md5DigestAsHex(body) + "\"";
+                    if (ifNoneMatch(request, eTag)) {
+                        return ServerResponse.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+                    }
+                    return ServerResponse.ok()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .eTag(eTag)
+                            .cacheControl(cacheControl)
+                            .bodyValue(body);
+                });
+    }
+
+    private CacheControl cacheControl() {
+        return maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).mustRevalidate();
+    }
+
+    // If-None-Match uses the weak comparison, so W/"tag" matches "tag" as well
+    private static boolean ifNoneMatch(ServerRequest request, String eTag) {
+        return request.headers().header(HttpHeaders.IF_NONE_MATCH).stream()
+                .flatMap(value -> Arrays.stream(value.split(",")))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals("*") || tag.equals(eTag) || tag.equals("W/" + eTag));
+    }
+
+    // movieInfoId path variable; answers with count 0 rather than 404 when the movie has no reviews
+    public Mono<ServerResponse> getReviewSummary(ServerRequest request) {
+        Long movieInfoId;
+        try {
+            movieInfoId = Long.valueOf(request.pathVariable("id"));
+        } catch (NumberFormatException e) {
+            return badRequest("movieInfoId must be a number");
+        }
+        return reviewAggregateRepository.findById(movieInfoId)
+                .map(ReviewAggregate::toSummary)
+                .defaultIfEmpty(new ReviewSummary(movieInfoId, 0, null, null, ReviewAggregate.emptyHistogram()))
+                .flatMap(summary -> ServerResponse.ok().bodyValue(summary));
     }
 
     public Mono<ServerResponse> addReview(ServerRequest request) {
         return request.bodyToMono(Review.class)
-                .doOnNext(review -> validate(review))
-                .flatMap(reviewReactorRepository::save)
+                .flatMap(review -> {
+                    ValidationErrors errors = beanValidation.validate(review);
+                    return errors.hasErrors() ? badRequest(errors) : saveReview(review);
+                });
+    }
+
+    private Mono<ServerResponse> saveReview(Review review) {
+        return reviewReactorRepository.save(review)
+                .flatMap(savedReview -> reviewAggregateRepository.applyChanges(List.of(), List.of(savedReview)).thenReturn(savedReview))
                 .flatMap(savedReview -> ServerResponse.status(HttpStatus.CREATED).bodyValue(savedReview));
     }
 
+    // NDJSON in, one ReviewBulkResult per line out. Only one batch is held in memory at a time; with
+    // ordered=true the response ends after the first invalid or rejected review.
+    public Mono<ServerResponse> bulkAddReviews(ServerRequest request) {
+        boolean ordered = request.queryParam("ordered").map(Boolean::parseBoolean).orElse(false);
+        Flux<ReviewBulkResult> results = request.bodyToFlux(Review.class)
+                .index()
+                .buffer(bulkBatchSize)
+                .concatMap(batch -> writeBatch(batch, ordered), 1);
+        if (ordered) {
+            results = results.takeUntil(ReviewHandler::isFailure);
+        }
+        return ServerResponse.ok().contentType(MediaType.APPLICATION_NDJSON).body(results, ReviewBulkResult.class);
+    }
+
+    // PUT and PATCH both write only the fields that are sent, with one findAndModify. If-Match with the ETag of a
+    // previous response makes the write conditional; a review that changed since answers 412.
     public Mono<ServerResponse> updateReview(ServerRequest request) {
-        Mono<Review> exReview = reviewReactorRepository.findById(request.pathVariable("id"))
-                .switchIfEmpty(Mono.error(new ReviewNotFoundException(
-                        "Review not found for id " + request.pathVariable("id"))));
-
-        return exReview.flatMap(exRev -> request.bodyToMono(Review.class)
-                        .map(newRev -> {
-                            if (newRev.getMovieInfoId() != null && newRev.getMovieInfoId() > 0)
-                                exRev.setMovieInfoId(newRev.getMovieInfoId());
-                            if (!(newRev.getComment() == null || newRev.getComment().isBlank()))
-                                exRev.setComment(newRev.getComment());
-                            if (newRev.getRating() != null && newRev.getRating() > 0)
-                                exRev.setRating(newRev.getRating());
-                            return exRev;
+        String id = request.pathVariable("id");
+        Long expectedVersion;
+        try {
+            expectedVersion = ifMatchVersion(request);
+        } catch (ReviewVersionConflictException e) {
+            return Mono.error(e);
+        }
+
+        return request.bodyToMono(Review.class)
+                .map(ReviewHandler::changes)
+                .flatMap(changes -> reviewReactorRepository.findAndUpdateFields(id, expectedVersion, changes)
+                        .switchIfEmpty(Mono.defer(() -> notUpdated(id, expectedVersion)))
+                        .flatMap(before -> {
+                            Review updatedReview = applied(before, changes);
+                            return reviewAggregateRepository
+                                    .applyChanges(List.of(before), List.of(updatedReview))
+                                    .thenReturn(updatedReview);
                         }))
-                .flatMap(reviewReactorRepository::save)
-                .flatMap(updatedReview -> ServerResponse.status(HttpStatus.OK).bodyValue(updatedReview));
+                .flatMap(updatedReview -> ServerResponse.status(HttpStatus.OK)
+                        .eTag(String.valueOf(updatedReview.getVersion()))
+                        .bodyValue(updatedReview));
+    }
+
+    // Same rules as before: ids below 1, blank comments and ratings of 0 or less leave the stored value alone.
+    private static Review changes(Review newRev) {
+        Review changes = new Review();
+        if (newRev.getMovieInfoId() != null && newRev.getMovieInfoId() > 0)
+            changes.setMovieInfoId(newRev.getMovieInfoId());
+        if (!(newRev.getComment() == null || newRev.getComment().isBlank()))
+            changes.setComment(newRev.getComment());
+        if (newRev.getRating() != null && newRev.getRating() > 0)
+            changes.setRating(newRev.getRating());
+        return changes;
+    }
+
+    private static Review applied(Review before, Review changes) {
+        return new Review(before.getReviewId(),
+                changes.getMovieInfoId() != null ? changes.getMovieInfoId() : before.getMovieInfoId(),
+                changes.getComment() != null ? changes.getComment() : before.getComment(),
+                changes.getRating() != null ? changes.getRating() : before.getRating(),
+                before.getVersion() == null ? 1L : before.getVersion() + 1);
+    }
+
+    private Mono<Review> notUpdated(String id, Long expectedVersion) {
+        ReviewNotFoundException notFound = new ReviewNotFoundException("Review not found for id " + id);
+        if (expectedVersion == null) {
+            return Mono.error(notFound);
+        }
+        return reviewReactorRepository.existsById(id)
+                .flatMap(exists -> Mono.error(exists
+                        ? new ReviewVersionConflictException("Review " + id + " is no longer at version " + expectedVersion)
+                        : notFound));
+    }
+
+    // Accepts "3", 3 and W/"3"; no header or * means an unconditional write.
+    private static Long ifMatchVersion(ServerRequest request) {
+        String ifMatch = request.headers().firstHeader(HttpHeaders.IF_MATCH);
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) tag = tag.substring(1, tag.length() - 1);
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            throw new ReviewVersionConflictException("If-Match " + ifMatch + " is not a Review version");
+        }
     }
 
     public Mono<ServerResponse> deleteById(ServerRequest request) {
-        reviewReactorRepository.deleteById(request.pathVariable("id"));
-        return ServerResponse.noContent().build();
+        return reviewReactorRepository.findAndDeleteById(request.pathVariable("id"))
+                .flatMap(deleted -> reviewAggregateRepository.applyChanges(List.of(deleted), List.of()))
+                .then(ServerResponse.noContent().build());
     }
 
-    private void validate(Review review) {
-        Set<ConstraintViolation<Review>> violations = validator.validate(review);
+    // Removes every review of one movie, e.g. when the movie itself is deleted, and drops its aggregate with them
+    public Mono<ServerResponse> deleteByMovieInfoId(ServerRequest request) {
+        Optional<String> movieInfoIdParam = request.queryParam("movieInfoId");
+        if (movieInfoIdParam.isEmpty()) {
+            return badRequest("movieInfoId is required");
+        }
+        Long movieInfoId;
+        try {
+            movieInfoId = Long.valueOf(movieInfoIdParam.get());
+        } catch (NumberFormatException e) {
+            return badRequest("movieInfoId must be a number");
+        }
+        return reviewReactorRepository.deleteByMovieInfoId(movieInfoId)
+                .flatMap(deleted -> reviewAggregateRepository.deleteById(movieInfoId).thenReturn(deleted))
+                .flatMap(deleted -> ServerResponse.ok().bodyValue(Map.of("movieInfoId", movieInfoId, "deletedCount", deleted)));
+    }
+
+    private Flux<ReviewBulkResult> writeBatch(List<Tuple2<Long, Review>> batch, boolean ordered) {
+        List<ReviewBulkResult> results = new ArrayList<>(batch.size());
+        List<Tuple2<Long, Review>> valid = new ArrayList<>(batch.size());
+        for (Tuple2<Long, Review> item : batch) {
+            ValidationErrors errors = beanValidation.validate(item.getT2());
+            if (!errors.hasErrors()) {
+                valid.add(item);
+                continue;
+            }
+            results.add(new ReviewBulkResult(item.getT1(), item.getT2().getReviewId(), ReviewBulkResult.Status.INVALID, errors.getDetail()));
+            if (ordered) break;
+        }
+        if (valid.isEmpty()) {
+            return Flux.fromIterable(results);
+        }
+
+        List<Boolean> hadId = valid.stream().map(item -> item.getT2().getReviewId() != null).collect(Collectors.toList());
+        List<Review> reviews = valid.stream().map(Tuple2::getT2).collect(Collectors.toList());
+        List<String> ids = reviews.stream().map(Review::getReviewId).filter(Objects::nonNull).collect(Collectors.toList());
+        // Upserts replace whole reviews, so the aggregates need the versions they overwrite.
+        Mono<Map<String, Review>> previous = ids.isEmpty()
+                ? Mono.just(Map.of())
+                : reviewReactorRepository.findAllById(ids).collectMap(Review::getReviewId);
+        return previous.flatMap(overwritten -> reviewReactorRepository.bulkWrite(reviews, ordered)
+                        .map(result -> written(valid, hadId, result.getUpserts(), List.of(), ordered))
+                        .onErrorResume(MongoBulkWriteException.class,
+                                e -> Mono.just(written(valid, hadId, e.getWriteResult().getUpserts(), e.getWriteErrors(), ordered)))
+                        .flatMap(written -> applyAggregateChanges(written, reviews, hadId, overwritten).thenReturn(written)))
+                .flatMapIterable(written -> {
+                    results.addAll(written);
+                    results.sort(Comparator.comparingLong(ReviewBulkResult::getIndex));
+                    return results;
+                });
+    }
+
+    private List<ReviewBulkResult> written(List<Tuple2<Long, Review>> valid, List<Boolean> hadId,
+                                           List<BulkWriteUpsert> upserts, List<BulkWriteError> errors, boolean ordered) {
+        Set<Integer> upserted = upserts.stream().map(BulkWriteUpsert::getIndex).collect(Collectors.toSet());
+        Map<Integer, String> failed = errors.stream().collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage));
+        // An ordered write stops at its first error, so nothing after it was attempted.
+        int attempted = ordered && !errors.isEmpty() ? errors.get(0).getIndex() + 1 : valid.size();
 
-        if (!violations.isEmpty()) {
-            String errorMessage = violations.stream()
-                    .map(ConstraintViolation::getMessage)
-                    .sorted()
-                    .collect(Collectors.joining(","));
-            throw new ReviewDataException(errorMessage);
+        List<ReviewBulkResult> results = new ArrayList<>(attempted);
+        for (int i = 0; i < attempted; i++) {
+            long index = valid.get(i).getT1();
+            String reviewId = valid.get(i).getT2().getReviewId();
+            if (failed.containsKey(i)) {
+                results.add(new ReviewBulkResult(index, reviewId, ReviewBulkResult.Status.FAILED, failed.get(i)));
+            } else if (!hadId.get(i) || upserted.contains(i)) {
+                results.add(new ReviewBulkResult(index, reviewId, ReviewBulkResult.Status.CREATED, null));
+            } else {
+                results.add(new ReviewBulkResult(index, reviewId, ReviewBulkResult.Status.UPDATED, null));
+            }
         }
+        return results;
+    }
+
+    // written lines up with reviews by position, see written()
+    private Mono<Void> applyAggregateChanges(List<ReviewBulkResult> written, List<Review> reviews, List<Boolean> hadId,
+                                             Map<String, Review> overwritten) {
+        List<Review> removed = new ArrayList<>();
+        List<Review> added = new ArrayList<>();
+        for (int i = 0; i < written.size(); i++) {
+            if (written.get(i).getStatus() == ReviewBulkResult.Status.FAILED) continue;
+            Review review = reviews.get(i);
+            added.add(review);
+            if (hadId.get(i) && overwritten.containsKey(review.getReviewId())) {
+                removed.add(overwritten.get(review.getReviewId()));
+            }
+        }
+        return reviewAggregateRepository.applyChanges(removed, added);
+    }
+
+    private static boolean isFailure(ReviewBulkResult result) {
+        return result.getStatus() == ReviewBulkResult.Status.INVALID || result.getStatus() == ReviewBulkResult.Status.FAILED;
+    }
+
+    private static Mono<ServerResponse> badRequest(String detail) {
+        return badRequest(ValidationErrors.of(detail));
+    }
+
+    // Answered here rather than thrown to GlobalErrorHandler: no exception, stack trace or ERROR log per bad request
+    private static Mono<ServerResponse> badRequest(ValidationErrors errors) {
+        log.debug("Rejected request: {}", errors.getDetail());
+        return ServerResponse.badRequest().contentType(MediaType.APPLICATION_PROBLEM_JSON).bodyValue(errors);
     }
 }
@@ -0,0 +1,7 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.ReviewAggregate;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+
+public interface ReviewAggregateRepository extends ReactiveMongoRepository<ReviewAggregate, Long>, ReviewAggregateRepositoryCustom {
+}
@@ -0,0 +1,29 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewAggregate;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+
+public interface ReviewAggregateRepositoryCustom {
+
+    /**
+     * Takes the removed reviews out of and adds the added reviews into their movies' aggregates, with one
+     * atomic $inc upsert per affected movie. An update passes the old and the new state of the review.
+     */
+    Mono<Void> applyChanges(Collection<Review> removed, Collection<Review> added);
+
+    /**
+     * Replaces the stored aggregate unless it was modified at or after the given instant, in which case a
+     * concurrent write has already moved it on. Emits whether the aggregate was written.
+     */
+    Mono<Boolean> replaceIfUnmodifiedSince(ReviewAggregate aggregate, Instant since);
+
+    /**
+     * Records the reconcile run on an aggregate whose totals it found correct, leaving lastModified, and with it
+     * the reviews ETag, as it was.
+     */
+    Mono<Void> markReconciled(Long movieInfoId, String reconcileRun);
+}
@@ -0,0 +1,90 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewAggregate;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class ReviewAggregateRepositoryCustomImpl implements ReviewAggregateRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public ReviewAggregateRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Mono<Void> applyChanges(Collection<Review> removed, Collection<Review> added) {
+        Map<Long, Map<String, Number>> increments = new HashMap<>();
+        removed.forEach(review -> accumulate(increments, review, -1));
+        added.forEach(review -> accumulate(increments, review, 1));
+
+        Instant now = Instant.now();
+        // A change that leaves the totals as they were (e.g. a new comment) still moves lastModified, since the
+        // reviews ETag is derived from it; it only touches an aggregate that already exists
+        return Flux.fromIterable(increments.entrySet())
+                .flatMap(entry -> {
+                    Query query = Query.query(Criteria.where("movieInfoId").is(entry.getKey()));
+                    Update update = new Update().set("lastModified", now);
+                    if (entry.getValue().values().stream().allMatch(value -> value.doubleValue() == 0)) {
+                        return reactiveMongoTemplate.updateFirst(query, update, ReviewAggregate.class);
+                    }
+                    entry.getValue().forEach(update::inc);
+                    return reactiveMongoTemplate.upsert(query, update, ReviewAggregate.class);
+                })
+                .then();
+    }
+
+    @Override
+    public Mono<Boolean> replaceIfUnmodifiedSince(ReviewAggregate aggregate, Instant since) {
+        Query query = Query.query(Criteria.where("movieInfoId").is(aggregate.getMovieInfoId())
+                .orOperator(Criteria.where("lastModified").lt(since), Criteria.where("lastModified").exists(false)));
+        Update update = new Update()
+                .set("count", aggregate.getCount())
+                .set("ratedCount", aggregate.getRatedCount())
+                .set("sum", aggregate.getSum())
+                .set("sumSq", aggregate.getSumSq())
+                .set("histogram", aggregate.getHistogram())
+                .set("lastModified", aggregate.getLastModified())
+                .set("reconcileRun", aggregate.getReconcileRun());
+        return reactiveMongoTemplate.upsert(query, update, ReviewAggregate.class)
+                .map(result -> true)
+                // The document exists but did not match: it was modified after since.
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    @Override
+    public Mono<Void> markReconciled(Long movieInfoId, String reconcileRun) {
+        return reactiveMongoTemplate.updateFirst(Query.query(Criteria.where("movieInfoId").is(movieInfoId)),
+                new Update().set("reconcileRun", reconcileRun), ReviewAggregate.class).then();
+    }
+
+    private void accumulate(Map<Long, Map<String, Number>> increments, Review review, int sign) {
+        Map<String, Number> movie = increments.computeIfAbsent(review.getMovieInfoId(), id -> new HashMap<>());
+        movie.merge("count", (long) sign, ReviewAggregateRepositoryCustomImpl::add);
+        Double rating = review.getRating();
+        if (rating != null) {
+            movie.merge("ratedCount", (long) sign, ReviewAggregateRepositoryCustomImpl::add);
+            movie.merge("sum", sign * rating, ReviewAggregateRepositoryCustomImpl::add);
+            movie.merge("sumSq", sign * rating * rating, ReviewAggregateRepositoryCustomImpl::add);
+            movie.merge("histogram." + ReviewAggregate.bucket(rating), (long) sign, ReviewAggregateRepositoryCustomImpl::add);
+        }
+    }
+
+    private static Number add(Number left, Number right) {
+        if (left instanceof Long && right instanceof Long) {
+            return left.longValue() + right.longValue();
+        }
+        return left.doubleValue() + right.doubleValue();
+    }
+}
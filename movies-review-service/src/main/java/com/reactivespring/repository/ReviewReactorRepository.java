@@ -3,8 +3,16 @@ package com.reactivespring.repository;
 import com.reactivespring.domain.Review;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-public interface ReviewReactorRepository extends ReactiveMongoRepository<Review, String> {
+import java.util.Collection;
+
+public interface ReviewReactorRepository extends ReactiveMongoRepository<Review, String>, ReviewReactorRepositoryCustom {
 
     Flux<Review> findByMovieInfoId(Long id);
+
+    Flux<Review> findByMovieInfoIdIn(Collection<Long> ids);
+
+    // A single deleteMany; emits the number of reviews removed
+    Mono<Long> deleteByMovieInfoId(Long movieInfoId);
 }
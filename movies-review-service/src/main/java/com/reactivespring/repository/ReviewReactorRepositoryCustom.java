@@ -0,0 +1,43 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.reactivespring.domain.Review;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface ReviewReactorRepositoryCustom {
+
+    enum SortBy {
+        // Ascending review id
+        ID,
+        // Highest rating first, ties by descending review id; unrated reviews are left out
+        RATING
+    }
+
+    /**
+     * Keyset page of one movie's reviews. The next page starts after the last review of the previous one:
+     * pass its reviewId, plus its rating when sorting by rating.
+     */
+    Flux<Review> findPage(Long movieInfoId, SortBy sortBy, String afterId, Double afterRating, int limit);
+
+    /**
+     * Deletes the review and emits the deleted document, so callers can undo its contribution to aggregates.
+     */
+    Mono<Review> findAndDeleteById(String id);
+
+    /**
+     * Writes the batch with a single bulkWrite: reviews with an id are upserted, the rest are inserted
+     * and get a generated id assigned before the write. Upserts replace the stored fields and bump the version;
+     * new reviews start at version 0, whether or not they came with an id.
+     */
+    Mono<BulkWriteResult> bulkWrite(List<Review> reviews, boolean ordered);
+
+    /**
+     * Atomically $sets the non-null fields of changes and increments the version, emitting the review as it was
+     * before the write so callers can move its contribution in the aggregates. When expectedVersion is not null
+     * the write only applies if the stored version still matches; empty means no such review at that version.
+     */
+    Mono<Review> findAndUpdateFields(String id, Long expectedVersion, Review changes);
+}
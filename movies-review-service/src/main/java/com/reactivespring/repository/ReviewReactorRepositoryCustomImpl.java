@@ -0,0 +1,97 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.reactivespring.domain.Review;
+import org.bson.BsonType;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReviewReactorRepositoryCustomImpl implements ReviewReactorRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final BulkUpsert<Review> bulkUpsert;
+
+    public ReviewReactorRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.bulkUpsert = new BulkUpsert<>(reactiveMongoTemplate, Review.class);
+    }
+
+    @Override
+    public Flux<Review> findPage(Long movieInfoId, SortBy sortBy, String afterId, Double afterRating, int limit) {
+        List<Criteria> criteria = new ArrayList<>();
+        criteria.add(Criteria.where("movieInfoId").is(movieInfoId));
+        Sort sort;
+        if (sortBy == SortBy.RATING) {
+            sort = Sort.by(Sort.Direction.DESC, "rating", "reviewId");
+            if (afterId == null) {
+                criteria.add(Criteria.where("rating").ne(null));
+            } else {
+                criteria.add(new Criteria().orOperator(
+                        Criteria.where("rating").lt(afterRating),
+                        new Criteria().andOperator(Criteria.where("rating").is(afterRating), idAfter(afterId, true))));
+            }
+        } else {
+            sort = Sort.by(Sort.Direction.ASC, "reviewId");
+            if (afterId != null) {
+                criteria.add(idAfter(afterId, false));
+            }
+        }
+
+        Query query = Query.query(new Criteria().andOperator(criteria.toArray(new Criteria[0])))
+                .with(sort)
+                .limit(limit)
+                .cursorBatchSize(limit);
+        return reactiveMongoTemplate.find(query, Review.class);
+    }
+
+    // Ids are stored as ObjectIds when they look like one and as strings otherwise. Mongo orders all strings
+    // before all ObjectIds and $gt/$lt only compare values of the same type, so a cursor of one type has to
+    // let every id of the other type through when those come later in the sort order.
+    private Criteria idAfter(String afterId, boolean descending) {
+        boolean objectId = ObjectId.isValid(afterId);
+        Object cursor = objectId ? new ObjectId(afterId) : afterId;
+        Criteria id = Criteria.where("reviewId");
+        if (!descending) {
+            return objectId ? id.gt(cursor)
+                    : new Criteria().orOperator(id.gt(cursor), Criteria.where("reviewId").type(BsonType.OBJECT_ID.getValue()));
+        }
+        return objectId
+                ? new Criteria().orOperator(id.lt(cursor), Criteria.where("reviewId").type(BsonType.STRING.getValue()))
+                : id.lt(cursor);
+    }
+
+    @Override
+    public Mono<Review> findAndDeleteById(String id) {
+        return reactiveMongoTemplate.findAndRemove(Query.query(Criteria.where("reviewId").is(id)), Review.class);
+    }
+
+    @Override
+    public Mono<BulkWriteResult> bulkWrite(List<Review> reviews, boolean ordered) {
+        return bulkUpsert.bulkWrite(reviews, ordered);
+    }
+
+    @Override
+    public Mono<Review> findAndUpdateFields(String id, Long expectedVersion, Review changes) {
+        Criteria criteria = Criteria.where("reviewId").is(id);
+        if (expectedVersion != null) {
+            criteria.and("version").is(expectedVersion);
+        }
+        Update update = new Update().inc("version", 1);
+        if (changes.getMovieInfoId() != null) update.set("movieInfoId", changes.getMovieInfoId());
+        if (changes.getComment() != null) update.set("comment", changes.getComment());
+        if (changes.getRating() != null) update.set("rating", changes.getRating());
+        return reactiveMongoTemplate.findAndModify(new Query(criteria), update,
+                FindAndModifyOptions.options().returnNew(false), Review.class);
+    }
+
+}
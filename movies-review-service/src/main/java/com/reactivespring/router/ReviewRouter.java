@@ -25,8 +25,12 @@ public class ReviewRouter {
                     builder
                             .GET("", request -> reviewHandler.findAll(request))
                             .GET("/{id}", request -> reviewHandler.findReviewsByMovieInfoId(request))
+                            .GET("/{id}/summary", request -> reviewHandler.getReviewSummary(request))
                             .POST("", request -> reviewHandler.addReview(request))
+                            .POST("/bulk", request -> reviewHandler.bulkAddReviews(request))
                             .PUT("/{id}", request -> reviewHandler.updateReview(request))
+                            .PATCH("/{id}", request -> reviewHandler.updateReview(request))
+                            .DELETE("", request -> reviewHandler.deleteByMovieInfoId(request))
                             .DELETE("/{id}", request -> reviewHandler.deleteById(request));
                 }).build();
     }
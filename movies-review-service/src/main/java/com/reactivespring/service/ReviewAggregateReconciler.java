@@ -0,0 +1,96 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewAggregate;
+import com.reactivespring.repository.ReviewAggregateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.stream.Collectors;
+
+/**
+ * Rebuilds every ReviewAggregate from the raw reviews. The incremental $inc updates can drift, e.g. when a
+ * review write succeeds and the aggregate update after it fails, and this job puts them back in line.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(name = "reviews.aggregate.reconcile.enabled", havingValue = "true", matchIfMissing = true)
+public class ReviewAggregateReconciler {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    private final ReviewAggregateRepository reviewAggregateRepository;
+
+    @Value("${reviews.aggregate.reconcile.cursorBatchSize:500}")
+    private int cursorBatchSize;
+
+    public ReviewAggregateReconciler(ReactiveMongoTemplate reactiveMongoTemplate, ReviewAggregateRepository reviewAggregateRepository) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.reviewAggregateRepository = reviewAggregateRepository;
+    }
+
+    @Scheduled(initialDelayString = "${reviews.aggregate.reconcile.interval:PT6H}",
+            fixedDelayString = "${reviews.aggregate.reconcile.interval:PT6H}")
+    public void scheduledReconcile() {
+        long rebuilt = reconcile().block();
+        log.info("Reconciled {} review aggregates", rebuilt);
+    }
+
+    /**
+     * Streams reviews ordered by movieInfoId, which the movieInfoId index serves without a sort, and folds each
+     * run of one movie's reviews into a fresh aggregate, so only one movie is held in memory at a time. The
+     * rebuilt aggregates are checked against the stored ones a cursor batch at a time: only those whose totals
+     * drifted are written and get a new lastModified, so the reviews ETag of an untouched movie stays valid.
+     * Aggregates written to concurrently during the run are left alone. Every aggregate found to have reviews is
+     * marked with the run's id, and the ones left unmarked and unmodified since the run started, whose movie no
+     * longer has any reviews, are removed. Emits the number of aggregates rebuilt.
+     */
+    public Mono<Long> reconcile() {
+        Instant startedAt = Instant.now();
+        String reconcileRun = new ObjectId().toHexString();
+        Query scan = new Query()
+                .with(Sort.by(Sort.Direction.ASC, "movieInfoId"))
+                .cursorBatchSize(cursorBatchSize);
+        scan.fields().include("movieInfoId").include("rating");
+
+        return reactiveMongoTemplate.find(scan, Review.class)
+                .windowUntilChanged(Review::getMovieInfoId)
+                .concatMap(reviews -> reviews.reduceWith(ReviewAggregate::new, (aggregate, review) -> {
+                    aggregate.include(review);
+                    return aggregate;
+                }))
+                .buffer(cursorBatchSize)
+                .concatMap(rebuilt -> reviewAggregateRepository
+                        .findAllById(rebuilt.stream().map(ReviewAggregate::getMovieInfoId).collect(Collectors.toList()))
+                        .collectMap(ReviewAggregate::getMovieInfoId)
+                        .flatMapMany(stored -> Flux.fromIterable(rebuilt)
+                                .concatMap(aggregate -> write(aggregate, stored.get(aggregate.getMovieInfoId()), startedAt, reconcileRun))))
+                .filter(written -> written)
+                .count()
+                .flatMap(rebuilt -> reactiveMongoTemplate
+                        .remove(Query.query(Criteria.where("reconcileRun").ne(reconcileRun).orOperator(
+                                Criteria.where("lastModified").lt(startedAt),
+                                Criteria.where("lastModified").exists(false))), ReviewAggregate.class)
+                        .thenReturn(rebuilt));
+    }
+
+    private Mono<Boolean> write(ReviewAggregate aggregate, ReviewAggregate stored, Instant startedAt, String reconcileRun) {
+        if (stored != null && stored.hasTotalsOf(aggregate)) {
+            return reviewAggregateRepository.markReconciled(aggregate.getMovieInfoId(), reconcileRun).thenReturn(false);
+        }
+        aggregate.setLastModified(Instant.now());
+        aggregate.setReconcileRun(reconcileRun);
+        return reviewAggregateRepository.replaceIfUnmodifiedSince(aggregate, startedAt);
+    }
+}
@@ -0,0 +1,126 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewAggregate;
+import com.reactivespring.repository.ReviewAggregateRepository;
+import com.reactivespring.repository.ReviewReactorRepository;
+import com.reactivespring.service.ReviewAggregateReconciler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(ReviewAggregateReconciler.class)
+public class ReviewAggregateIntgTest {
+
+    @Autowired
+    ReviewReactorRepository reviewReactorRepository;
+
+    @Autowired
+    ReviewAggregateRepository reviewAggregateRepository;
+
+    @Autowired
+    ReviewAggregateReconciler reviewAggregateReconciler;
+
+    @BeforeEach
+    void setUp() {
+        reviewReactorRepository.saveAll(List.of(
+                Review.builder().movieInfoId(1L).comment("Great Movie").rating(4.2).build(),
+                Review.builder().movieInfoId(1L).comment("Fine").rating(3.0).build(),
+                Review.builder().movieInfoId(1L).comment("No rating").build(),
+                Review.builder().movieInfoId(21L).comment("Bad Movie").rating(2.7).build())).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactorRepository.deleteAll().block();
+        reviewAggregateRepository.deleteAll().block();
+    }
+
+    @Test
+    void applyChanges() {
+        Review before = Review.builder().reviewId("x").movieInfoId(1L).comment("Fine").rating(3.0).build();
+        Review after = Review.builder().reviewId("x").movieInfoId(1L).comment("Better").rating(5.0).build();
+
+        reviewAggregateRepository.applyChanges(List.of(), List.of(before)).block();
+        reviewAggregateRepository.applyChanges(List.of(before), List.of(after)).block();
+
+        StepVerifier.create(reviewAggregateRepository.findById(1L))
+                .assertNext(aggregate -> {
+                    Assertions.assertEquals(1, aggregate.getCount());
+                    Assertions.assertEquals(5.0, aggregate.getSum(), 0.0001);
+                    Assertions.assertEquals(25.0, aggregate.getSumSq(), 0.0001);
+                    Assertions.assertEquals(0L, aggregate.getHistogram().get("3"));
+                    Assertions.assertEquals(1L, aggregate.getHistogram().get("5"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void reconcileRebuildsDriftedAndRemovesStaleAggregates() {
+        Instant longAgo = Instant.parse("2020-01-01T00:00:00Z");
+        reviewAggregateRepository.saveAll(List.of(
+                new ReviewAggregate(1L, 99, 99, 1.0, 1.0, Map.of("1", 99L), longAgo, null),
+                new ReviewAggregate(404L, 1, 1, 4.0, 16.0, Map.of("4", 1L), longAgo, null))).blockLast();
+
+        StepVerifier.create(reviewAggregateReconciler.reconcile())
+                .expectNext(2L)
+                .verifyComplete();
+
+        StepVerifier.create(reviewAggregateRepository.findById(1L))
+                .assertNext(aggregate -> {
+                    Assertions.assertEquals(3, aggregate.getCount());
+                    Assertions.assertEquals(2, aggregate.getRatedCount());
+                    Assertions.assertEquals(3.6, aggregate.toSummary().getAverage(), 0.0001);
+                    Assertions.assertEquals(Map.of("3", 1L, "4", 1L), aggregate.getHistogram());
+                })
+                .verifyComplete();
+        StepVerifier.create(reviewAggregateRepository.findById(21L))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(reviewAggregateRepository.findById(404L))
+                .verifyComplete();
+    }
+
+    @Test
+    void reconcileSkipsConcurrentlyModifiedAggregates() {
+        Instant future = Instant.now().plusSeconds(60);
+        reviewAggregateRepository.save(new ReviewAggregate(21L, 7, 7, 7.0, 7.0, Map.of(), future, null)).block();
+
+        StepVerifier.create(reviewAggregateReconciler.reconcile())
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier.create(reviewAggregateRepository.findById(21L))
+                .assertNext(aggregate -> Assertions.assertEquals(7, aggregate.getCount()))
+                .verifyComplete();
+    }
+
+    @Test
+    void reconcileLeavesCorrectAggregatesUnmodified() {
+        reviewAggregateReconciler.reconcile().block();
+        Instant lastModified = reviewAggregateRepository.findById(1L).block().getLastModified();
+
+        StepVerifier.create(reviewAggregateReconciler.reconcile())
+                .expectNext(0L)
+                .verifyComplete();
+
+        StepVerifier.create(reviewAggregateRepository.findAll().map(ReviewAggregate::getMovieInfoId).sort())
+                .expectNext(1L, 21L)
+                .verifyComplete();
+        StepVerifier.create(reviewAggregateRepository.findById(1L))
+                .assertNext(aggregate -> Assertions.assertEquals(lastModified, aggregate.getLastModified()))
+                .verifyComplete();
+    }
+}
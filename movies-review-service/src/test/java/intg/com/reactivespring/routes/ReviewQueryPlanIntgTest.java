@@ -0,0 +1,124 @@
+package com.reactivespring.routes;
+
+import com.reactivespring.domain.Review;
+import com.reactivespring.repository.ReviewReactorRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs explain() for the filter each repository query sends and fails if Mongo plans a collection scan.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+public class ReviewQueryPlanIntgTest {
+
+    @Autowired
+    ReviewReactorRepository reviewReactorRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // Auto index creation runs asynchronously at startup, so make sure the declared indexes exist first.
+        IndexResolver.create(reactiveMongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(Review.class)
+                .forEach(index -> reactiveMongoTemplate.indexOps(Review.class).ensureIndex(index).block());
+
+        reviewReactorRepository.saveAll(List.of(
+                Review.builder().movieInfoId(1L).comment("Great Movie").rating(4.2).build(),
+                Review.builder().movieInfoId(21L).comment("Bad Movie").rating(2.7).build()
+        )).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactorRepository.deleteAll().block();
+    }
+
+    @Test
+    void findByMovieInfoIdUsesIndex() {
+        assertIndexed(Query.query(Criteria.where("movieInfoId").is(21L)));
+    }
+
+    @Test
+    void findByMovieInfoIdInUsesIndex() {
+        assertIndexed(Query.query(Criteria.where("movieInfoId").in(List.of(1L, 21L))));
+    }
+
+    @Test
+    void findPageByIdUsesIndexOrder() {
+        assertIndexedWithoutSort(Query.query(new Criteria().andOperator(
+                        Criteria.where("movieInfoId").is(21L), Criteria.where("reviewId").gt("abc")))
+                .with(Sort.by(Sort.Direction.ASC, "reviewId")));
+    }
+
+    @Test
+    void findPageByRatingUsesIndexOrder() {
+        assertIndexedWithoutSort(Query.query(new Criteria().andOperator(
+                        Criteria.where("movieInfoId").is(21L), Criteria.where("rating").ne(null)))
+                .with(Sort.by(Sort.Direction.DESC, "rating", "reviewId")));
+    }
+
+    private void assertIndexedWithoutSort(Query query) {
+        assertIndexed(query);
+        List<String> stages = winningPlanStages(query);
+        assertFalse(stages.contains("SORT"), "in-memory sort for " + query + ": " + stages);
+    }
+
+    private void assertIndexed(Query query) {
+        List<String> stages = winningPlanStages(query);
+        assertFalse(stages.contains("COLLSCAN"), "collection scan for " + query + ": " + stages);
+        assertTrue(stages.contains("IXSCAN") || stages.contains("IDHACK"), "no index used for " + query + ": " + stages);
+    }
+
+    private List<String> winningPlanStages(Query query) {
+        MongoPersistentEntity<?> entity = reactiveMongoTemplate.getConverter().getMappingContext()
+                .getRequiredPersistentEntity(Review.class);
+        QueryMapper queryMapper = new QueryMapper(reactiveMongoTemplate.getConverter());
+        Document find = new Document("find", reactiveMongoTemplate.getCollectionName(Review.class))
+                .append("filter", queryMapper.getMappedObject(query.getQueryObject(), entity))
+                .append("sort", queryMapper.getMappedSort(query.getSortObject(), entity));
+        Document explain = reactiveMongoTemplate
+                .executeCommand(new Document("explain", find).append("verbosity", "queryPlanner"))
+                .block();
+
+        List<String> stages = new ArrayList<>();
+        collectStages(explain.get("queryPlanner", Document.class).get("winningPlan", Document.class), stages);
+        return stages;
+    }
+
+    private void collectStages(Document plan, List<String> stages) {
+        if (plan.containsKey("stage")) {
+            stages.add(plan.getString("stage"));
+        }
+        for (String child : List.of("inputStage", "queryPlan")) {
+            if (plan.get(child) instanceof Document) {
+                collectStages(plan.get(child, Document.class), stages);
+            }
+        }
+        if (plan.get("inputStages") instanceof List) {
+            for (Object child : plan.getList("inputStages", Object.class)) {
+                collectStages((Document) child, stages);
+            }
+        }
+    }
+}
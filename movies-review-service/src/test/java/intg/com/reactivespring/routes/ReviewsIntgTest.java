@@ -1,18 +1,30 @@
 package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.repository.ReviewAggregateRepository;
 import com.reactivespring.repository.ReviewReactorRepository;
+import com.reactivespring.service.ReviewAggregateReconciler;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -25,6 +37,12 @@ public class ReviewsIntgTest {
     @Autowired
     ReviewReactorRepository reviewReactorRepository;
 
+    @Autowired
+    ReviewAggregateRepository reviewAggregateRepository;
+
+    @Autowired
+    ReviewAggregateReconciler reviewAggregateReconciler;
+
     static final String REVIEWS_URI = "/v1/reviews";
 
     @BeforeEach
@@ -35,11 +53,14 @@ public class ReviewsIntgTest {
                 Review.builder().reviewId("abc").movieInfoId(13L).comment("Superb Movie").rating(4.6).build());
 
         reviewReactorRepository.saveAll(reviews).blockLast();
+        // The fixtures bypass the handler, so build their aggregates the way the scheduled job would.
+        reviewAggregateReconciler.reconcile().block();
     }
 
     @AfterEach
     void tearDown() {
         reviewReactorRepository.deleteAll().block();
+        reviewAggregateRepository.deleteAll().block();
     }
 
     @Test
@@ -64,6 +85,66 @@ public class ReviewsIntgTest {
                 .hasSize(1);
     }
 
+    @Test
+    void findReviewsByMovieInfoIds() {
+        webTestClient.get()
+                .uri(REVIEWS_URI + "?movieInfoId=1,21,99")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void findReviewPages() {
+        reviewReactorRepository.saveAll(List.of(
+                Review.builder().reviewId("a").movieInfoId(7L).comment("One").rating(3.0).build(),
+                Review.builder().reviewId("b").movieInfoId(7L).comment("Two").rating(5.0).build(),
+                Review.builder().movieInfoId(7L).comment("Three").rating(3.0).build(),
+                Review.builder().reviewId("c").movieInfoId(7L).comment("Unrated").build())).blockLast();
+
+        List<Review> byId = webTestClient.get()
+                .uri(REVIEWS_URI + "/7?limit=3")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .returnResult()
+                .getResponseBody();
+        Assertions.assertNotNull(byId);
+        Assertions.assertEquals(List.of("a", "b", "c"), byId.stream().map(Review::getReviewId).collect(Collectors.toList()));
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/7?limit=3&afterId=c")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(1);
+
+        List<Review> byRating = webTestClient.get()
+                .uri(REVIEWS_URI + "/7?sort=rating&limit=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .returnResult()
+                .getResponseBody();
+        Assertions.assertNotNull(byRating);
+        Assertions.assertEquals("b", byRating.get(0).getReviewId());
+        Review last = byRating.get(1);
+        Assertions.assertEquals(3.0, last.getRating());
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/7?sort=rating&limit=2&afterId=" + last.getReviewId() + "&afterRating=3.0")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(1);
+    }
+
     @Test
     void findNonExistentReviewByMovieInfoId() {
         webTestClient.get()
@@ -109,6 +190,47 @@ public class ReviewsIntgTest {
                 });
     }
 
+    @Test
+    void patchReviewWithIfMatch() {
+        String etag = webTestClient.patch()
+                .uri(REVIEWS_URI + "/abc")
+                .bodyValue(new Review(null, null, "Still superb", null))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Review.class)
+                .getResponseHeaders()
+                .getETag();
+        Assertions.assertNotNull(etag);
+
+        webTestClient.patch()
+                .uri(REVIEWS_URI + "/abc")
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(new Review(null, null, null, 3.0))
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Review.class)
+                .consumeWith(res -> {
+                    Review reviewRes = res.getResponseBody();
+                    Assertions.assertNotNull(reviewRes);
+                    Assertions.assertEquals("Still superb", reviewRes.getComment());
+                    Assertions.assertEquals(3.0, reviewRes.getRating());
+                });
+
+        webTestClient.patch()
+                .uri(REVIEWS_URI + "/abc")
+                .header(HttpHeaders.IF_MATCH, etag)
+                .bodyValue(new Review(null, null, null, 1.0))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        StepVerifier.create(reviewAggregateRepository.findById(13L))
+                .expectNextMatches(aggregate -> aggregate.toSummary().getAverage() == 3.0)
+                .verifyComplete();
+    }
+
     @Test
     void updateNonExistentReview() {
         Review review = new Review("99", 2L, "test", 2.2);
@@ -128,4 +250,167 @@ public class ReviewsIntgTest {
                 .expectStatus()
                 .isNoContent();
     }
+
+    @Test
+    void deleteByMovieInfoId() {
+        webTestClient.delete()
+                .uri(REVIEWS_URI + "?movieInfoId=13")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.deletedCount").isEqualTo(1);
+
+        StepVerifier.create(reviewReactorRepository.findByMovieInfoId(13L))
+                .verifyComplete();
+        StepVerifier.create(reviewAggregateRepository.findById(13L))
+                .verifyComplete();
+        StepVerifier.create(reviewReactorRepository.findAll())
+                .expectNextCount(2)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("DELETE ?movieInfoId= removes the reviews of a blockbuster with one deleteMany")
+    void deleteByMovieInfoIdOfABlockbuster() {
+        int reviewCount = 20_000;
+        List<Review> reviews = IntStream.range(0, reviewCount)
+                .mapToObj(i -> Review.builder().movieInfoId(42L).comment("Review " + i).rating((double) (i % 6)).build())
+                .collect(Collectors.toList());
+        reviewReactorRepository.bulkWrite(reviews, false).block();
+
+        webTestClient.delete()
+                .uri(REVIEWS_URI + "?movieInfoId=42")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.deletedCount").isEqualTo(reviewCount);
+
+        StepVerifier.create(reviewReactorRepository.findByMovieInfoId(42L))
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewSummary() {
+        for (Review review : List.of(
+                Review.builder().movieInfoId(13L).comment("Fine").rating(3.1).build(),
+                Review.builder().movieInfoId(13L).comment("No rating").build())) {
+            webTestClient.post()
+                    .uri(REVIEWS_URI)
+                    .bodyValue(review)
+                    .exchange()
+                    .expectStatus()
+                    .isCreated();
+        }
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/13/summary")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewSummary.class)
+                .consumeWith(res -> {
+                    ReviewSummary summary = res.getResponseBody();
+                    Assertions.assertNotNull(summary);
+                    Assertions.assertEquals(3, summary.getCount());
+                    Assertions.assertEquals(3.85, summary.getAverage(), 0.0001);
+                    Assertions.assertEquals(1L, summary.getHistogram().get("3"));
+                    Assertions.assertEquals(1L, summary.getHistogram().get("4"));
+                    Assertions.assertEquals(0L, summary.getHistogram().get("5"));
+                });
+    }
+
+    @Test
+    void deleteReviewUpdatesSummary() {
+        webTestClient.delete()
+                .uri(REVIEWS_URI + "/abc")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        StepVerifier.create(reviewReactorRepository.findById("abc"))
+                .verifyComplete();
+        StepVerifier.create(reviewAggregateRepository.findById(13L))
+                .assertNext(aggregate -> {
+                    Assertions.assertEquals(0, aggregate.getCount());
+                    Assertions.assertEquals(0L, aggregate.getHistogram().get("4"));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void getReviewSummaryWithoutReviews() {
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/999/summary")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewSummary.class)
+                .consumeWith(res -> {
+                    ReviewSummary summary = res.getResponseBody();
+                    Assertions.assertNotNull(summary);
+                    Assertions.assertEquals(0, summary.getCount());
+                    Assertions.assertNull(summary.getAverage());
+                });
+    }
+
+    @Test
+    void bulkAddReviews() {
+        Flux<Review> upload = Flux.just(
+                Review.builder().movieInfoId(5L).comment("Loved it").rating(5.0).build(),
+                Review.builder().reviewId("17").movieInfoId(21L).comment("Better on rewatch").rating(3.5).build(),
+                Review.builder().movieInfoId(0L).comment("").build());
+
+        Flux<ReviewBulkResult> results = webTestClient.post()
+                .uri(REVIEWS_URI + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(upload, Review.class)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(ReviewBulkResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(results.map(ReviewBulkResult::getStatus))
+                .expectNext(ReviewBulkResult.Status.CREATED, ReviewBulkResult.Status.UPDATED, ReviewBulkResult.Status.INVALID)
+                .verifyComplete();
+
+        StepVerifier.create(reviewReactorRepository.findByMovieInfoId(5L))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(reviewReactorRepository.findById("17"))
+                .assertNext(review -> Assertions.assertEquals("Better on rewatch", review.getComment()))
+                .verifyComplete();
+    }
+
+    @Test
+    void bulkUpsertStartsNewReviewsAtTheVersionSaveStartsAt() {
+        Flux<Review> upload = Flux.just(
+                Review.builder().movieInfoId(5L).comment("Loved it").rating(5.0).build(),
+                Review.builder().reviewId("new").movieInfoId(6L).comment("Not bad").rating(3.0).build(),
+                Review.builder().reviewId("abc").movieInfoId(13L).comment("Still superb").rating(4.8).build());
+
+        webTestClient.post()
+                .uri(REVIEWS_URI + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(upload, Review.class)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(ReviewBulkResult.class)
+                .hasSize(3);
+
+        StepVerifier.create(reviewReactorRepository.findByMovieInfoId(5L))
+                .assertNext(review -> Assertions.assertEquals(0L, review.getVersion()))
+                .verifyComplete();
+        StepVerifier.create(reviewReactorRepository.findById("new"))
+                .assertNext(review -> Assertions.assertEquals(0L, review.getVersion()))
+                .verifyComplete();
+        StepVerifier.create(reviewReactorRepository.findById("abc"))
+                .assertNext(review -> Assertions.assertEquals(1L, review.getVersion()))
+                .verifyComplete();
+    }
 }
@@ -0,0 +1,78 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LoadSheddingFilterTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    LoadSheddingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry));
+        filter = new LoadSheddingFilter(true, 10, 10, 10, Duration.ofMillis(500), 0.9, 0.9, 0.6, 0.5,
+                beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    // Runs the request through the filter with a handler that never answers, so it keeps its slot until disposed
+    Disposable hold(MockServerHttpRequest request) {
+        return filter.filter(MockServerWebExchange.from(request), exchange -> Mono.never()).subscribe();
+    }
+
+    HttpStatus statusOf(MockServerHttpRequest request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, e -> Mono.empty()).block();
+        return exchange.getResponse().getStatusCode();
+    }
+
+    @Test
+    void bulkRequestsAreShedBeforeCriticalOnes() {
+        for (int i = 0; i < 6; i++) {
+            hold(MockServerHttpRequest.post("/v1/reviews/bulk").build());
+        }
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, statusOf(MockServerHttpRequest.delete("/v1/reviews?movieInfoId=1").build()));
+        assertNull(statusOf(MockServerHttpRequest.get("/v1/reviews?movieInfoId=1").build()));
+        assertNull(statusOf(MockServerHttpRequest.get("/v1/reviews/1").build()));
+        assertEquals(1.0, meterRegistry.get("http.server.requests.shed").tag("priority", "BULK").counter().count());
+    }
+
+    @Test
+    void actuatorIsNeverShed() {
+        for (int i = 0; i < 10; i++) {
+            hold(MockServerHttpRequest.get("/v1/reviews/1").build());
+        }
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, statusOf(MockServerHttpRequest.get("/v1/reviews/2").build()));
+        assertNull(statusOf(MockServerHttpRequest.get("/actuator/health").build()));
+    }
+
+    @Test
+    void classifiesRoutes() {
+        assertEquals(RequestPriority.BULK, filter.priorityOf(MockServerHttpRequest.post("/v1/reviews/bulk").build()));
+        assertEquals(RequestPriority.BULK, filter.priorityOf(MockServerHttpRequest.get("/v1/reviews")
+                .accept(MediaType.APPLICATION_NDJSON).build()));
+        assertEquals(RequestPriority.BULK, filter.priorityOf(MockServerHttpRequest.get("/v1/reviews").build()));
+        assertEquals(RequestPriority.NORMAL, filter.priorityOf(MockServerHttpRequest.get("/v1/reviews?movieInfoId=1,2").build()));
+        assertEquals(RequestPriority.CRITICAL, filter.priorityOf(MockServerHttpRequest.post("/v1/reviews").build()));
+        assertEquals(RequestPriority.CRITICAL, filter.priorityOf(MockServerHttpRequest.patch("/v1/reviews/1").build()));
+    }
+}
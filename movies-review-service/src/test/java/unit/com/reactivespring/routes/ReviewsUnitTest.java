@@ -1,28 +1,43 @@
 package com.reactivespring.routes;
 
+import com.mongodb.bulk.BulkWriteResult;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewAggregate;
+import com.reactivespring.domain.ReviewBulkResult;
+import com.reactivespring.domain.ReviewSummary;
 import com.reactivespring.exceptionHandler.GlobalErrorHandler;
 import com.reactivespring.handler.ReviewHandler;
+import com.reactivespring.repository.ReviewAggregateRepository;
 import com.reactivespring.repository.ReviewReactorRepository;
 import com.reactivespring.router.ReviewRouter;
+import com.reactivespring.validation.BeanValidation;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest
-@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, GlobalErrorHandler.class})
+@ContextConfiguration(classes = {ReviewRouter.class, ReviewHandler.class, BeanValidation.class, GlobalErrorHandler.class})
 @AutoConfigureWebTestClient
 public class ReviewsUnitTest {
 
@@ -32,6 +47,9 @@ public class ReviewsUnitTest {
     @MockBean
     private ReviewReactorRepository reviewReactorRepositoryMock;
 
+    @MockBean
+    private ReviewAggregateRepository reviewAggregateRepositoryMock;
+
     final static String REVIEWS_URI = "/v1/reviews";
 
     @Test
@@ -61,19 +79,120 @@ public class ReviewsUnitTest {
                 new Review("107", 19L, "Bad movie", 2.1)));
 
         when(reviewReactorRepositoryMock.findByMovieInfoId(anyLong())).thenReturn(reviews);
+        when(reviewAggregateRepositoryMock.findById(anyLong())).thenReturn(Mono.empty());
 
         webTestClient.get()
                 .uri(REVIEWS_URI + "/19")
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader()
+                .doesNotExist(HttpHeaders.ETAG)
                 .expectBodyList(Review.class)
                 .hasSize(3);
     }
 
+    @Test
+    void findReviewsByMovieInfoIdIsNotModifiedForSameETag() {
+        when(reviewReactorRepositoryMock.findByMovieInfoId(19L))
+                .thenAnswer(invocation -> Flux.just(new Review("22", 19L, "Good movie", 4.3)));
+        ReviewAggregate aggregate = new ReviewAggregate(19L, 1, 1, 4.3, 18.49, Map.of("4", 1L), Instant.ofEpochMilli(1700000000000L), null);
+        when(reviewAggregateRepositoryMock.findById(19L)).thenReturn(Mono.just(aggregate));
+
+        String eTag = webTestClient.get()
+                .uri(REVIEWS_URI + "/19")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .cacheControl(CacheControl.noCache())
+                .returnResult(Review.class)
+                .getResponseHeaders()
+                .getETag();
+        Assertions.assertEquals("W/\"1-1700000000000\"", eTag);
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/19")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectBody()
+                .isEmpty();
+    }
+
+    @Test
+    void findReviewsByMovieInfoIds() {
+        Flux<Review> reviews = Flux.fromIterable(List.of(
+                new Review("22", 19L, "Good movie", 4.3),
+                new Review("81", 20L, "Great movie", 4.9)));
+
+        when(reviewReactorRepositoryMock.findByMovieInfoIdIn(List.of(19L, 20L))).thenReturn(reviews);
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "?movieInfoId=19,20")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void findReviewsByInvalidMovieInfoIds() {
+        webTestClient.get()
+                .uri(REVIEWS_URI + "?movieInfoId=19,abc")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody()
+                .jsonPath("$.detail").isEqualTo("movieInfoId must be a comma separated list of numbers")
+                .jsonPath("$.errors").doesNotExist();
+    }
+
+    @Test
+    void findReviewPage() {
+        when(reviewReactorRepositoryMock.findPage(19L, ReviewReactorRepository.SortBy.RATING, "81", 4.9, 2))
+                .thenReturn(Flux.just(new Review("22", 19L, "Good movie", 4.3), new Review("107", 19L, "Bad movie", 2.1)));
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/19?sort=rating&limit=2&afterId=81&afterRating=4.9")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void findEmptyReviewPage() {
+        when(reviewReactorRepositoryMock.findPage(19L, ReviewReactorRepository.SortBy.ID, null, null, 50))
+                .thenReturn(Flux.empty());
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/19?sort=id")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(Review.class)
+                .hasSize(0);
+    }
+
+    @Test
+    void findReviewPageValidation() {
+        for (String query : List.of("?limit=0", "?limit=100000", "?sort=comment", "?sort=rating&afterId=81", "?afterId=81&afterRating=4.0")) {
+            webTestClient.get()
+                    .uri(REVIEWS_URI + "/19" + query)
+                    .exchange()
+                    .expectStatus()
+                    .isBadRequest();
+        }
+    }
+
     @Test
     void findNonExistentReviewByMovieInfoId() {
         when(reviewReactorRepositoryMock.findByMovieInfoId(anyLong())).thenReturn(Flux.empty());
+        when(reviewAggregateRepositoryMock.findById(anyLong())).thenReturn(Mono.empty());
 
         webTestClient.get()
                 .uri(REVIEWS_URI + "/1")
@@ -87,6 +206,7 @@ public class ReviewsUnitTest {
         Review review = new Review("22", 19L, "Good movie", 4.3);
 
         when(reviewReactorRepositoryMock.save(isA(Review.class))).thenReturn(Mono.just(review));
+        when(reviewAggregateRepositoryMock.applyChanges(List.of(), List.of(review))).thenReturn(Mono.empty());
 
         webTestClient.post()
                 .uri(REVIEWS_URI)
@@ -111,15 +231,24 @@ public class ReviewsUnitTest {
                 .bodyValue(invalidReview)
                 .exchange()
                 .expectStatus()
-                .isBadRequest();
+                .isBadRequest()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_PROBLEM_JSON)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.detail").isEqualTo("Review.comment must be present,Review.movieInfoId must be 1 or greater,Review.rating must be between 0 - 5")
+                .jsonPath("$.errors.length()").isEqualTo(3)
+                .jsonPath("$.errors[0].field").isEqualTo("comment");
+
+        verify(reviewReactorRepositoryMock, never()).save(isA(Review.class));
     }
 
     @Test
     void updateReview() {
-        Mono<Review> review = Mono.just(new Review("1", 4L, "good", 2.2));
+        Mono<Review> review = Mono.just(new Review("1", 4L, "good", 2.2, 0L));
 
-        when(reviewReactorRepositoryMock.findById(anyString())).thenReturn(review);
-        when(reviewReactorRepositoryMock.save(isA(Review.class))).thenReturn(review);
+        when(reviewReactorRepositoryMock.findAndUpdateFields(anyString(), isNull(), isA(Review.class))).thenReturn(review);
+        when(reviewAggregateRepositoryMock.applyChanges(anyCollection(), anyCollection())).thenReturn(Mono.empty());
 
         webTestClient.put()
                 .uri(REVIEWS_URI + "/2")
@@ -127,6 +256,8 @@ public class ReviewsUnitTest {
                 .exchange()
                 .expectStatus()
                 .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"")
                 .expectBody(Review.class)
                 .consumeWith(res -> {
                     Review reviewResponse = res.getResponseBody();
@@ -135,6 +266,22 @@ public class ReviewsUnitTest {
                 });
     }
 
+    @Test
+    void patchReviewWithStaleIfMatch() {
+        when(reviewReactorRepositoryMock.findAndUpdateFields(eq("1"), eq(3L), isA(Review.class))).thenReturn(Mono.empty());
+        when(reviewReactorRepositoryMock.existsById("1")).thenReturn(Mono.just(true));
+
+        webTestClient.patch()
+                .uri(REVIEWS_URI + "/1")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .bodyValue(new Review(null, null, "changed my mind", null))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        verify(reviewAggregateRepositoryMock, never()).applyChanges(anyCollection(), anyCollection());
+    }
+
     @Test
     void updateNonExistentReview() {
         when(reviewReactorRepositoryMock.findById(anyString())).thenReturn(Mono.empty());
@@ -149,12 +296,123 @@ public class ReviewsUnitTest {
 
     @Test
     void deleteById() {
-        when(reviewReactorRepositoryMock.deleteById(anyString())).thenReturn(Mono.empty());
+        Review review = new Review("123", 4L, "good", 2.2);
+        when(reviewReactorRepositoryMock.findAndDeleteById("123")).thenReturn(Mono.just(review));
+        when(reviewAggregateRepositoryMock.applyChanges(List.of(review), List.of())).thenReturn(Mono.empty());
 
         webTestClient.delete()
                 .uri(REVIEWS_URI + "/123")
                 .exchange()
                 .expectStatus()
                 .isNoContent();
+
+        verify(reviewAggregateRepositoryMock).applyChanges(List.of(review), List.of());
+    }
+
+    @Test
+    void deleteNonExistentReview() {
+        when(reviewReactorRepositoryMock.findAndDeleteById("404")).thenReturn(Mono.empty());
+
+        webTestClient.delete()
+                .uri(REVIEWS_URI + "/404")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+
+        verify(reviewAggregateRepositoryMock, never()).applyChanges(anyCollection(), anyCollection());
+    }
+
+    @Test
+    void deleteByMovieInfoId() {
+        when(reviewReactorRepositoryMock.deleteByMovieInfoId(19L)).thenReturn(Mono.just(3L));
+        when(reviewAggregateRepositoryMock.deleteById(19L)).thenReturn(Mono.empty());
+
+        webTestClient.delete()
+                .uri(REVIEWS_URI + "?movieInfoId=19")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.deletedCount").isEqualTo(3);
+
+        verify(reviewAggregateRepositoryMock).deleteById(19L);
+    }
+
+    @Test
+    void deleteByMovieInfoIdValidation() {
+        for (String query : List.of("", "?movieInfoId=abc")) {
+            webTestClient.delete()
+                    .uri(REVIEWS_URI + query)
+                    .exchange()
+                    .expectStatus()
+                    .isBadRequest();
+        }
+    }
+
+    @Test
+    void getReviewSummary() {
+        ReviewAggregate aggregate = new ReviewAggregate(19L, 3, 2, 7.0, 25.0, Map.of("3", 1L, "4", 1L), null, null);
+        when(reviewAggregateRepositoryMock.findById(19L)).thenReturn(Mono.just(aggregate));
+        ReviewSummary summary = new ReviewSummary(19L, 3, 3.5, 0.5,
+                Map.of("0", 0L, "1", 0L, "2", 0L, "3", 1L, "4", 1L, "5", 0L));
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/19/summary")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewSummary.class)
+                .isEqualTo(summary);
+    }
+
+    @Test
+    void getReviewSummaryWithoutReviews() {
+        when(reviewAggregateRepositoryMock.findById(20L)).thenReturn(Mono.empty());
+
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/20/summary")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(ReviewSummary.class)
+                .consumeWith(res -> {
+                    ReviewSummary summary = res.getResponseBody();
+                    Assertions.assertNotNull(summary);
+                    Assertions.assertEquals(0, summary.getCount());
+                    Assertions.assertNull(summary.getAverage());
+                });
+    }
+
+    @Test
+    void getReviewSummaryRejectsNonNumericId() {
+        webTestClient.get()
+                .uri(REVIEWS_URI + "/abc/summary")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    @Test
+    void bulkAddReviews() {
+        when(reviewReactorRepositoryMock.bulkWrite(anyList(), eq(false)))
+                .thenReturn(Mono.just(BulkWriteResult.acknowledged(2, 0, 0, 0, List.of())));
+        when(reviewAggregateRepositoryMock.applyChanges(anyCollection(), anyCollection())).thenReturn(Mono.empty());
+
+        Flux<ReviewBulkResult> results = webTestClient.post()
+                .uri(REVIEWS_URI + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(new Review(null, 19L, "Good movie", 4.3),
+                        new Review(null, null, "", 9.0),
+                        new Review(null, 20L, "Great movie", 4.9)), Review.class)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(ReviewBulkResult.class)
+                .getResponseBody();
+
+        StepVerifier.create(results.map(ReviewBulkResult::getStatus))
+                .expectNext(ReviewBulkResult.Status.CREATED, ReviewBulkResult.Status.INVALID, ReviewBulkResult.Status.CREATED)
+                .verifyComplete();
     }
 }
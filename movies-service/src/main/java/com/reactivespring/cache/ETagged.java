@@ -0,0 +1,15 @@
+package com.reactivespring.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A cached response body together with the ETag it was served with, so it can be revalidated with If-None-Match.
+ */
+@Data
+@AllArgsConstructor
+public class ETagged<V> {
+
+    private String eTag;
+    private V value;
+}
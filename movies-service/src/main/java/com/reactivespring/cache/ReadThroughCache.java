@@ -0,0 +1,216 @@
+package com.reactivespring.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Size bounded, read-through cache for downstream lookups.
+ * <p>
+ * Entries expire after a TTL and the least recently used entry is evicted once maxSize is reached.
+ * Errors matching the negative-cache predicate (e.g. a 404) are remembered for a shorter TTL.
+ * Concurrent misses for the same key share a single in-flight load. Expired values stay around until they are
+ * reloaded or evicted, so a loader can revalidate them with a conditional request instead of fetching them again.
+ * Loaded values failing the admission predicate are returned but not stored, which keeps oversized values out.
+ * put, replaceIfPresent, evict and clear detach the loads in flight for their keys: a detached load still answers
+ * its callers but does not store what it read, which may predate the change, and the next miss starts a new load.
+ */
+public class ReadThroughCache<V> {
+
+    private final String name;
+    private final boolean enabled;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final Predicate<Throwable> negativeCacheable;
+    private final Predicate<V> admissible;
+
+    private final Map<String, Entry<V>> entries;
+    private final Map<String, InFlight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public ReadThroughCache(String name, boolean enabled, int maxSize, Duration ttl, Duration negativeTtl,
+                            Predicate<Throwable> negativeCacheable, MeterRegistry meterRegistry) {
+        this(name, enabled, maxSize, ttl, negativeTtl, negativeCacheable, value -> true, meterRegistry);
+    }
+
+    public ReadThroughCache(String name, boolean enabled, int maxSize, Duration ttl, Duration negativeTtl,
+                            Predicate<Throwable> negativeCacheable, Predicate<V> admissible, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.enabled = enabled;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.negativeCacheable = negativeCacheable;
+        this.admissible = admissible;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+                if (size() > ReadThroughCache.this.maxSize) {
+                    ReadThroughCache.this.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.hits = Counter.builder("cache.gets").tag("cache", name).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("cache.gets").tag("cache", name).tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("cache.evictions").tag("cache", name).register(meterRegistry);
+        meterRegistry.gauge("cache.size", Tags.of("cache", name), this, ReadThroughCache::size);
+    }
+
+    public Mono<V> get(String key, Function<String, Mono<V>> loader) {
+        return getOrRevalidate(key, (k, stale) -> loader.apply(k));
+    }
+
+    /**
+     * Like get, but on a miss the loader also receives the expired value still held for the key, or null, and
+     * may return that value again when the source reports it unchanged.
+     */
+    public Mono<V> getOrRevalidate(String key, BiFunction<String, V, Mono<V>> loader) {
+        if (!enabled) {
+            return loader.apply(key, null);
+        }
+        return Mono.defer(() -> {
+            Entry<V> entry = lookup(key);
+            if (entry != null && !entry.isExpired()) {
+                hits.increment();
+                return entry.error != null ? Mono.error(entry.error) : Mono.just(entry.value);
+            }
+            misses.increment();
+            V stale = entry == null ? null : entry.value;
+            return load(key, k -> loader.apply(k, stale));
+        });
+    }
+
+    public void put(String key, V value) {
+        Objects.requireNonNull(value, "value");
+        if (enabled) {
+            synchronized (entries) {
+                inFlight.remove(key);
+                entries.put(key, new Entry<>(value, null, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    /**
+     * Refreshes an entry that is already cached (including a negative entry) without admitting new keys,
+     * so a stream of updates for the whole catalog does not push hot entries out of the cache. A null value is
+     * rejected, since a hit would otherwise emit it; use evict when the new value is unknown.
+     */
+    public void replaceIfPresent(String key, V value) {
+        Objects.requireNonNull(value, "value");
+        synchronized (entries) {
+            // a load in flight may have read the value this one replaces, so it must not store it
+            inFlight.remove(key);
+            if (entries.containsKey(key)) {
+                entries.put(key, new Entry<>(value, null, System.nanoTime() + ttlNanos));
+            }
+        }
+    }
+
+    public void evict(String key) {
+        synchronized (entries) {
+            inFlight.remove(key);
+            entries.remove(key);
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            inFlight.clear();
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    private Mono<V> load(String key, Function<String, Mono<V>> loader) {
+        InFlight<V> pending = inFlight.get(key);
+        if (pending != null) {
+            return pending.result;
+        }
+
+        InFlight<V> load = new InFlight<>();
+        load.result = loader.apply(key)
+                // Inadmissible values drop the stale value as well, it is no use for revalidation any more
+                .doOnNext(value -> storeIfAttached(key, load,
+                        admissible.test(value) ? new Entry<>(value, null, System.nanoTime() + ttlNanos) : null))
+                .doOnError(negativeCacheable, e -> storeIfAttached(key, load, new Entry<>(null, e, System.nanoTime() + negativeTtlNanos)))
+                .cache();
+
+        InFlight<V> existing = inFlight.putIfAbsent(key, load);
+        if (existing != null) {
+            return existing.result;
+        }
+        return load.result.doFinally(signal -> inFlight.remove(key, load));
+    }
+
+    // Expired negative entries are dropped; expired values are kept for revalidation
+    private Entry<V> lookup(String key) {
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.error != null && entry.isExpired()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    // A null entry removes the key
+    private void storeIfAttached(String key, InFlight<V> load, Entry<V> entry) {
+        synchronized (entries) {
+            if (inFlight.get(key) != load) {
+                return;
+            }
+            if (entry == null) {
+                entries.remove(key);
+            } else {
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    private static class InFlight<V> {
+        private Mono<V> result;
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final Throwable error;
+        private final long expiresAt;
+
+        private Entry(V value, Throwable error, long expiresAt) {
+            this.value = value;
+            this.error = error;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired() {
+            return expiresAt - System.nanoTime() <= 0;
+        }
+    }
+}
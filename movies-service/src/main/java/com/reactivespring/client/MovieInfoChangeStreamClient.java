@@ -0,0 +1,115 @@
+package com.reactivespring.client;
+
+import com.reactivespring.cache.ReadThroughCache;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+
+/**
+ * Keeps the local MovieInfo cache in step with movies-info-service by following its change feed over one
+ * long-lived NDJSON connection. On reconnect the last seen event id is sent as Last-Event-ID so the feed resumes
+ * where it left off; if the server cannot resume it sends a RESET and the cache is cleared.
+ */
+@Component
+@Slf4j
+public class MovieInfoChangeStreamClient {
+
+    private final WebClient webClient;
+    private final ReadThroughCache<MovieInfo> movieInfoCache;
+
+    @Value("${restClient.moviesInfoUrl}")
+    private String moviesInfoUrl;
+
+    @Value("${restClient.cache.movieInfo.enabled:false}")
+    private boolean cacheEnabled;
+
+    @Value("${restClient.cache.movieInfo.changeStream.enabled:false}")
+    private boolean changeStreamEnabled;
+
+    @Value("${restClient.cache.movieInfo.changeStream.minBackoff:1s}")
+    private Duration minBackoff;
+
+    @Value("${restClient.cache.movieInfo.changeStream.maxBackoff:30s}")
+    private Duration maxBackoff;
+
+    private volatile String lastEventId;
+
+    private Disposable subscription;
+
+    public MovieInfoChangeStreamClient(@Qualifier("moviesInfoStreamWebClient") WebClient webClient, ReadThroughCache<MovieInfo> movieInfoCache) {
+        this.webClient = webClient;
+        this.movieInfoCache = movieInfoCache;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (!cacheEnabled || !changeStreamEnabled) {
+            return;
+        }
+        subscription = movieInfoEvents()
+                .doOnNext(this::apply)
+                .repeatWhen(completed -> completed.delayElements(minBackoff))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, minBackoff)
+                        .maxBackoff(maxBackoff)
+                        .transientErrors(true)
+                        .doBeforeRetry(retrySignal -> log.warn("Movie info change stream disconnected, reconnecting: {}",
+                                retrySignal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    Flux<MovieInfoEvent> movieInfoEvents() {
+        return Flux.defer(() -> webClient
+                .get()
+                .uri(moviesInfoUrl.concat("/stream"))
+                .accept(MediaType.APPLICATION_NDJSON)
+                .headers(headers -> {
+                    if (lastEventId != null) headers.set("Last-Event-ID", lastEventId);
+                })
+                .retrieve()
+                .bodyToFlux(MovieInfoEvent.class));
+    }
+
+    void apply(MovieInfoEvent event) {
+        switch (event.getType()) {
+            case CREATED:
+            case UPDATED:
+                // An event without a body says the entry changed but not what into, so it can only be dropped
+                if (event.getMovieInfo() == null) {
+                    movieInfoCache.evict(event.getMovieInfoId());
+                } else {
+                    movieInfoCache.replaceIfPresent(event.getMovieInfoId(), event.getMovieInfo());
+                }
+                break;
+            case DELETED:
+                movieInfoCache.evict(event.getMovieInfoId());
+                break;
+            case RESET:
+                log.info("Movie info change stream could not resume, clearing {} cache", movieInfoCache.getName());
+                movieInfoCache.clear();
+                break;
+        }
+        if (event.getEventId() != null) {
+            lastEventId = event.getEventId();
+        }
+    }
+}
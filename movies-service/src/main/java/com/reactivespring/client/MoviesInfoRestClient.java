@@ -1,45 +1,61 @@
 package com.reactivespring.client;
 
+import com.reactivespring.cache.ReadThroughCache;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.DownstreamUnavailableException;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
-import com.reactivespring.util.RetryUtil;
+import com.reactivespring.resilience.ResilientDownstream;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.Exceptions;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.util.retry.Retry;
-import reactor.util.retry.RetryBackoffSpec;
 
-import java.time.Duration;
+import java.util.List;
+
+import static com.reactivespring.logging.ReactiveLogging.debugSignals;
+import static com.reactivespring.util.MetricsUtil.timed;
+import static com.reactivespring.util.MetricsUtil.uriTemplate;
 
 @Component
 public class MoviesInfoRestClient {
 
     private final WebClient webClient;
+    private final ReadThroughCache<MovieInfo> movieInfoCache;
+    private final ResilientDownstream resilience;
 
     @Value("${restClient.moviesInfoUrl}")
     private String moviesInfoUrl;
 
-    public MoviesInfoRestClient(WebClient webClient) {
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient, ReadThroughCache<MovieInfo> movieInfoCache,
+                                @Qualifier("moviesInfoResilience") ResilientDownstream resilience) {
         this.webClient = webClient;
+        this.movieInfoCache = movieInfoCache;
+        this.resilience = resilience;
     }
 
     public Mono<MovieInfo> getMovieInfo(String movieId) {
+        return timed(movieInfoCache.getOrRevalidate(movieId, this::fetchMovieInfo), "moviesInfo", "getMovieInfo");
+    }
 
-        String url = moviesInfoUrl.concat("/{id}");
+    // An expired cached copy is revalidated with If-None-Match and kept when movies-info-service answers 304,
+    // or served as is while the circuit breaker is open
+    private Mono<MovieInfo> fetchMovieInfo(String movieId, MovieInfo cached) {
 
-        // Put retry into variable to propagate original error message to the caller,
-        // put into util class but kept here for ease of understanding
-        RetryBackoffSpec retrySpec = Retry.backoff(3, Duration.ofMillis(300))
-                .filter(e -> e instanceof MoviesInfoServerException)
-                .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> Exceptions.propagate(retrySignal.failure()));
+        String url = moviesInfoUrl.concat("/{id}");
 
         return webClient
                 .get()
                 .uri(url, movieId)
+                .headers(headers -> {
+                    if (cached != null && cached.getVersion() != null) {
+                        headers.setIfNoneMatch("\"" + cached.getVersion() + "\"");
+                    }
+                })
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
                     if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
@@ -58,9 +74,37 @@ public class MoviesInfoRestClient {
                         .flatMap(responseMessage -> Mono.error(
                                 new MoviesInfoServerException("Error connecting to MoviesInfoService: " + responseMessage)
                         )))
-                .bodyToMono(MovieInfo.class)
+                .toEntity(MovieInfo.class)
+                .map(entity -> entity.getStatusCode() == HttpStatus.NOT_MODIFIED ? cached : entity.getBody())
 //                .retry(3)
-                .retryWhen(RetryUtil.retryBackoffSpec())
-                .log();
+                .transform(resilience::callHedged)
+                .onErrorResume(DownstreamUnavailableException.class, e -> cached != null ? Mono.just(cached) : Mono.error(e))
+                .transform(movieInfo -> debugSignals(movieInfo, "MoviesInfoRestClient.fetchMovieInfo"));
+    }
+
+    public Flux<MovieInfo> getMovieInfos(List<String> movieIds) {
+
+        String url = UriComponentsBuilder.fromHttpUrl(moviesInfoUrl)
+                .queryParam("ids", String.join(",", movieIds))
+                .toUriString();
+
+        Flux<MovieInfo> movieInfos = webClient
+                .get()
+                .uri(url)
+                .attributes(uriTemplate(moviesInfoUrl + "?ids={ids}"))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .defaultIfEmpty(clientResponse.statusCode().getReasonPhrase())
+                        .flatMap(responseMessage -> Mono.error(
+                                new MoviesInfoClientException(responseMessage, clientResponse.rawStatusCode())
+                        )))
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(
+                                new MoviesInfoServerException("Error connecting to MoviesInfoService: " + responseMessage)
+                        )))
+                .bodyToFlux(MovieInfo.class)
+                .transform(resilience::call)
+                .doOnNext(movieInfo -> movieInfoCache.put(movieInfo.getMovieInfoId(), movieInfo));
+        return timed(movieInfos, "moviesInfo", "getMovieInfos");
     }
 }
@@ -1,52 +1,147 @@
 package com.reactivespring.client;
 
+import com.reactivespring.cache.ETagged;
+import com.reactivespring.cache.ReadThroughCache;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.DownstreamUnavailableException;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
-import com.reactivespring.util.RetryUtil;
+import com.reactivespring.resilience.ResilientDownstream;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
+import static com.reactivespring.util.MetricsUtil.timed;
+import static com.reactivespring.util.MetricsUtil.uriTemplate;
+
 @Component
 @Slf4j
 public class ReviewsRestClient {
 
     private final WebClient webClient;
+    private final ReadThroughCache<ETagged<List<Review>>> reviewsCache;
+    private final ResilientDownstream resilience;
 
     @Value("${restClient.reviewsUrl}")
     private String REVIEWS_URI;
 
-    public ReviewsRestClient(WebClient webClient) {
+    public ReviewsRestClient(@Qualifier("reviewsWebClient") WebClient webClient, ReadThroughCache<ETagged<List<Review>>> reviewsCache,
+                             @Qualifier("reviewsResilience") ResilientDownstream resilience) {
         this.webClient = webClient;
+        this.reviewsCache = reviewsCache;
+        this.resilience = resilience;
     }
 
     public Flux<Review> getReviews(String movieId) {
-        String uri = REVIEWS_URI.concat("/{id}");
+        String uri = UriComponentsBuilder.fromHttpUrl(REVIEWS_URI)
+                .path("/{id}")
+                .buildAndExpand(movieId)
+                .toUriString();
+
+        Flux<Review> reviews = reviewsCache.getOrRevalidate(uri, (key, cached) -> fetchReviews(key, REVIEWS_URI + "/{id}", cached))
+                .flatMapIterable(ETagged::getValue);
+        return timed(reviews, "reviews", "getReviews");
+    }
+
+    // Highest rated reviews first, at most limit of them; a movie without reviews yields an empty Flux
+    public Flux<Review> getTopReviews(String movieId, int limit) {
+        String uri = UriComponentsBuilder.fromHttpUrl(REVIEWS_URI)
+                .path("/{id}")
+                .queryParam("sort", "rating")
+                .queryParam("limit", limit)
+                .buildAndExpand(movieId)
+                .toUriString();
 
+        Flux<Review> reviews = reviewsCache.getOrRevalidate(uri,
+                        (key, cached) -> fetchReviews(key, REVIEWS_URI + "/{id}?sort=rating&limit={limit}", cached))
+                .flatMapIterable(ETagged::getValue);
+        return timed(reviews, "reviews", "getTopReviews");
+    }
+
+    // Sends If-None-Match with the ETag of the cached copy and keeps that copy when the reviews service answers 304,
+    // or while its circuit breaker is open. A 404 means the movie has no reviews.
+    private Mono<ETagged<List<Review>>> fetchReviews(String uri, String template, ETagged<List<Review>> cached) {
         return webClient
                 .get()
-                .uri(uri, movieId)
+                .uri(uri)
+                .attributes(uriTemplate(template))
+                .headers(headers -> {
+                    if (cached != null && cached.getETag() != null) {
+                        headers.setIfNoneMatch(cached.getETag());
+                    }
+                })
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, clientResponse -> {
-                    log.info("Status code is: {}", clientResponse.statusCode().value());
+                    log.debug("Status code is: {}", clientResponse.statusCode().value());
                     if (clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
-                        return Mono.empty();
+                        // Surface as NotFound rather than Mono.empty(), which would try to decode the 404 body
+                        return clientResponse.createException().flatMap(Mono::error);
                     }
                     return clientResponse.bodyToMono(String.class)
+                            .defaultIfEmpty(clientResponse.statusCode().getReasonPhrase())
                             .flatMap(responseMessage -> Mono.error(new ReviewsClientException(responseMessage)));
                 })
                 .onStatus(HttpStatus::is5xxServerError, clientResponse -> {
-                    log.info("Status code is: {}", clientResponse.statusCode().value());
+                    log.debug("Status code is: {}", clientResponse.statusCode().value());
                     return clientResponse.bodyToMono(String.class)
                             .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
                                     "Server exception in reviews service: " + responseMessage)));
                 })
+                .toEntityList(Review.class)
+                .map(entity -> entity.getStatusCode() == HttpStatus.NOT_MODIFIED
+                        ? cached
+                        : new ETagged<>(entity.getHeaders().getETag(), entity.getBody()))
+                .onErrorResume(WebClientResponseException.NotFound.class, e -> Mono.just(new ETagged<>(null, List.of())))
+                .transform(resilience::callHedged)
+                .onErrorResume(DownstreamUnavailableException.class, e -> cached != null ? Mono.just(cached) : Mono.error(e));
+    }
+
+    public Mono<ReviewSummary> getReviewSummary(String movieId) {
+        String uri = REVIEWS_URI.concat("/{id}/summary");
+
+        Mono<ReviewSummary> summary = webClient
+                .get()
+                .uri(uri, movieId)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .defaultIfEmpty(clientResponse.statusCode().getReasonPhrase())
+                        .flatMap(responseMessage -> Mono.error(new ReviewsClientException(responseMessage))))
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
+                                "Server exception in reviews service: " + responseMessage))))
+                .bodyToMono(ReviewSummary.class)
+                .transform(resilience::call);
+        return timed(summary, "reviews", "getReviewSummary");
+    }
+
+    public Flux<Review> getReviews(List<String> movieIds) {
+        String uri = UriComponentsBuilder.fromHttpUrl(REVIEWS_URI)
+                .queryParam("movieInfoId", String.join(",", movieIds))
+                .toUriString();
+
+        Flux<Review> reviews = webClient
+                .get()
+                .uri(uri)
+                .attributes(uriTemplate(REVIEWS_URI + "?movieInfoId={movieInfoId}"))
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .defaultIfEmpty(clientResponse.statusCode().getReasonPhrase())
+                        .flatMap(responseMessage -> Mono.error(new ReviewsClientException(responseMessage))))
+                .onStatus(HttpStatus::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
+                                "Server exception in reviews service: " + responseMessage))))
                 .bodyToFlux(Review.class)
-                .retryWhen(RetryUtil.retryBackoffSpec());
+                .transform(resilience::call);
+        return timed(reviews, "reviews", "getReviewsByMovieIds");
     }
 }
@@ -0,0 +1,46 @@
+package com.reactivespring.config;
+
+import com.reactivespring.cache.ETagged;
+import com.reactivespring.cache.ReadThroughCache;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.MoviesInfoClientException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.List;
+
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public ReadThroughCache<MovieInfo> movieInfoCache(
+            @Value("${restClient.cache.movieInfo.enabled:false}") boolean enabled,
+            @Value("${restClient.cache.movieInfo.maxSize:10000}") int maxSize,
+            @Value("${restClient.cache.movieInfo.ttl:5m}") Duration ttl,
+            @Value("${restClient.cache.movieInfo.negativeTtl:10s}") Duration negativeTtl,
+            MeterRegistry meterRegistry) {
+        return new ReadThroughCache<>("movieInfo", enabled, maxSize, ttl, negativeTtl,
+                e -> e instanceof MoviesInfoClientException
+                        && ((MoviesInfoClientException) e).getStatusCode() == HttpStatus.NOT_FOUND.value(),
+                meterRegistry);
+    }
+
+    // Reviews change often, so the default TTL of zero revalidates every read; the cached copy only saves the
+    // body transfer when the reviews service answers 304. Lists longer than maxReviewsPerEntry are not cached, so
+    // the cache never holds more than maxSize * maxReviewsPerEntry reviews.
+    @Bean
+    public ReadThroughCache<ETagged<List<Review>>> reviewsCache(
+            @Value("${restClient.cache.reviews.enabled:false}") boolean enabled,
+            @Value("${restClient.cache.reviews.maxSize:1000}") int maxSize,
+            @Value("${restClient.cache.reviews.maxReviewsPerEntry:100}") int maxReviewsPerEntry,
+            @Value("${restClient.cache.reviews.ttl:0s}") Duration ttl,
+            MeterRegistry meterRegistry) {
+        return new ReadThroughCache<>("reviews", enabled, maxSize, ttl, Duration.ZERO, e -> false,
+                reviews -> reviews.getValue().size() <= maxReviewsPerEntry, meterRegistry);
+    }
+}
@@ -0,0 +1,49 @@
+package com.reactivespring.config;
+
+import com.reactivespring.exception.DownstreamUnavailableException;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
+import com.reactivespring.resilience.Bulkhead;
+import com.reactivespring.resilience.CircuitBreaker;
+import com.reactivespring.resilience.Hedger;
+import com.reactivespring.resilience.ResilientDownstream;
+import com.reactivespring.resilience.RetryBudget;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ResilienceProperties.class)
+public class ResilienceConfig {
+
+    @Bean
+    public ResilientDownstream moviesInfoResilience(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        return build("moviesInfo", properties.getMoviesInfo(), meterRegistry);
+    }
+
+    @Bean
+    public ResilientDownstream reviewsResilience(ResilienceProperties properties, MeterRegistry meterRegistry) {
+        return build("reviews", properties.getReviews(), meterRegistry);
+    }
+
+    private ResilientDownstream build(String name, ResilienceProperties.Downstream downstream, MeterRegistry meterRegistry) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(name, downstream.getFailureRateThreshold(),
+                downstream.getSlidingWindowSize(), downstream.getMinimumCalls(), downstream.getOpenDuration(),
+                downstream.getHalfOpenCalls(), ResilienceConfig::isDownstreamFailure, meterRegistry);
+        Bulkhead bulkhead = new Bulkhead(name, downstream.getMaxConcurrentCalls(), meterRegistry);
+        RetryBudget retryBudget = new RetryBudget(name, downstream.getRetryBudgetRatio(),
+                downstream.getRetryBudgetMaxTokens(), meterRegistry);
+        ResilienceProperties.Hedge hedge = downstream.getHedge();
+        Hedger hedger = new Hedger(name, hedge.isEnabled(), hedge.getPercentile(), hedge.getInitialDelay(),
+                hedge.getMinDelay(), hedge.getMaxRatio(), hedge.getMaxTokens(), hedge.getWindowSize(), meterRegistry);
+        return new ResilientDownstream(circuitBreaker, bulkhead, retryBudget, hedger, downstream.getMaxRetries(), downstream.getMinBackoff());
+    }
+
+    // 4xx answers mean the downstream is healthy, and a rejected call never reached it
+    private static boolean isDownstreamFailure(Throwable e) {
+        return !(e instanceof MoviesInfoClientException
+                || e instanceof ReviewsClientException
+                || e instanceof DownstreamUnavailableException);
+    }
+}
@@ -0,0 +1,71 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Circuit breaker, bulkhead and retry settings per downstream, bound from restClient.resilience.*.
+ */
+@Data
+@ConfigurationProperties(prefix = "rest-client.resilience")
+public class ResilienceProperties {
+
+    private Downstream moviesInfo = new Downstream();
+
+    private Downstream reviews = new Downstream();
+
+    @Data
+    public static class Downstream {
+
+        // Percentage of failed calls in the sliding window that opens the breaker
+        private int failureRateThreshold = 50;
+
+        private int slidingWindowSize = 20;
+
+        // Calls to record before the failure rate is evaluated at all
+        private int minimumCalls = 10;
+
+        private Duration openDuration = Duration.ofSeconds(10);
+
+        private int halfOpenCalls = 3;
+
+        private int maxConcurrentCalls = 100;
+
+        // Upper bound per request; the budget decides whether a retry actually happens
+        private int maxRetries = 3;
+
+        private Duration minBackoff = Duration.ofMillis(300);
+
+        // Retries allowed as a share of requests, e.g. 0.1 retries at most about 10% of them
+        private double retryBudgetRatio = 0.1;
+
+        // Retries that can be spent in a burst, and the balance the budget starts with
+        private int retryBudgetMaxTokens = 10;
+
+        private Hedge hedge = new Hedge();
+    }
+
+    @Data
+    public static class Hedge {
+
+        private boolean enabled = false;
+
+        // A second request goes out once the first has been pending longer than this share of recent calls took
+        private double percentile = 0.95;
+
+        // Used until enough latencies have been recorded to compute the percentile
+        private Duration initialDelay = Duration.ofMillis(100);
+
+        private Duration minDelay = Duration.ofMillis(10);
+
+        // Hedges allowed as a share of requests
+        private double maxRatio = 0.05;
+
+        private int maxTokens = 10;
+
+        // Number of recent latencies the percentile is computed from
+        private int windowSize = 500;
+    }
+}
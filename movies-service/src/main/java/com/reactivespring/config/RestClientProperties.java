@@ -0,0 +1,59 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Connection settings for the downstream services, bound from restClient.connection.*. Each downstream gets its
+ * own connection pool so a slow service cannot hold the connections the others need.
+ */
+@Data
+@ConfigurationProperties(prefix = "rest-client.connection")
+public class RestClientProperties {
+
+    private Downstream moviesInfo = new Downstream();
+
+    private Downstream reviews = new Downstream();
+
+    // The long-lived change feed; it idles between events, so it has no response timeout by default
+    private Downstream moviesInfoStream = Downstream.stream();
+
+    @Data
+    public static class Downstream {
+
+        private int maxConnections = 100;
+
+        // Requests allowed to wait for a connection once the pool is exhausted; beyond that they fail fast
+        private int pendingAcquireMaxCount = 200;
+
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(2);
+
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+
+        private Duration maxLifeTime = Duration.ofMinutes(5);
+
+        private Duration evictInBackground = Duration.ofSeconds(30);
+
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        // Longest gap allowed between reads of a response; zero disables it
+        private Duration responseTimeout = Duration.ofSeconds(5);
+
+        // Prefer HTTP/2 cleartext (h2c), falling back to HTTP/1.1 when the server does not upgrade
+        private boolean http2 = false;
+
+        // Send Accept-Encoding: gzip and decompress responses
+        private boolean compress = true;
+
+        private static Downstream stream() {
+            Downstream stream = new Downstream();
+            stream.setMaxConnections(2);
+            stream.setMaxIdleTime(Duration.ZERO);
+            stream.setMaxLifeTime(Duration.ZERO);
+            stream.setResponseTimeout(Duration.ZERO);
+            return stream;
+        }
+    }
+}
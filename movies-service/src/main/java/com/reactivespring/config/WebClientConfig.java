@@ -1,14 +1,72 @@
 package com.reactivespring.config;
 
+import io.netty.channel.ChannelOption;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * One WebClient per downstream, each on its own Reactor Netty connection pool. Pool metrics are published as
+ * reactor.netty.connection.provider.* tagged with the pool name.
+ */
 @Configuration
+@EnableConfigurationProperties(RestClientProperties.class)
 public class WebClientConfig {
 
+    private final List<ConnectionProvider> connectionProviders = new CopyOnWriteArrayList<>();
+
+    @Bean
+    public WebClient moviesInfoWebClient(WebClient.Builder builder, RestClientProperties properties) {
+        return build(builder, "moviesInfo", properties.getMoviesInfo());
+    }
+
+    @Bean
+    public WebClient reviewsWebClient(WebClient.Builder builder, RestClientProperties properties) {
+        return build(builder, "reviews", properties.getReviews());
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder.build();
+    public WebClient moviesInfoStreamWebClient(WebClient.Builder builder, RestClientProperties properties) {
+        return build(builder, "moviesInfoStream", properties.getMoviesInfoStream());
+    }
+
+    @PreDestroy
+    public void disposeConnectionProviders() {
+        connectionProviders.forEach(ConnectionProvider::dispose);
+    }
+
+    private WebClient build(WebClient.Builder builder, String name, RestClientProperties.Downstream downstream) {
+        ConnectionProvider.Builder pool = ConnectionProvider.builder(name)
+                .maxConnections(downstream.getMaxConnections())
+                .pendingAcquireMaxCount(downstream.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(downstream.getPendingAcquireTimeout())
+                .metrics(true);
+        if (!downstream.getMaxIdleTime().isZero()) pool.maxIdleTime(downstream.getMaxIdleTime());
+        if (!downstream.getMaxLifeTime().isZero()) pool.maxLifeTime(downstream.getMaxLifeTime());
+        if (!downstream.getEvictInBackground().isZero()) pool.evictInBackground(downstream.getEvictInBackground());
+        ConnectionProvider connectionProvider = pool.build();
+        connectionProviders.add(connectionProvider);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) downstream.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .compress(downstream.isCompress());
+        if (!downstream.getResponseTimeout().isZero()) {
+            httpClient = httpClient.responseTimeout(downstream.getResponseTimeout());
+        }
+        if (downstream.isHttp2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        return builder.clientConnector(new ReactorClientHttpConnector(httpClient)).build();
     }
 }
@@ -1,16 +1,36 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.reactivespring.client.MoviesInfoRestClient;
 import com.reactivespring.client.ReviewsRestClient;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
 import com.reactivespring.domain.Review;
+import com.reactivespring.domain.ReviewSummary;
+import com.reactivespring.exception.DownstreamUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/v1/movies")
@@ -18,19 +38,118 @@ public class MoviesController {
 
     private final MoviesInfoRestClient moviesInfoRestClient;
     private final ReviewsRestClient reviewsRestClient;
+    private final ObjectMapper objectMapper;
 
-    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient) {
+    // When enabled the info and reviews calls are started together, so latency is max(info, reviews)
+    // rather than info + reviews. Mono.zip cancels the reviews call as soon as the info call fails (e.g. 404)
+    @Value("${movies.aggregation.parallel:true}")
+    private boolean parallelAggregation;
+
+    @Value("${movies.batch.maxIds:100}")
+    private int maxBatchIds;
+
+    // 0 embeds every review; N > 0 embeds only the N highest rated reviews plus the rating summary, which keeps
+    // the response size bounded for movies with many reviews. ?topReviews=N overrides it per request.
+    @Value("${movies.reviews.topN:0}")
+    private int defaultTopReviews;
+
+    @Value("${movies.reviews.maxTopN:100}")
+    private int maxTopReviews;
+
+    // 0 lets clients keep the movie but makes them revalidate it with If-None-Match on every read
+    @Value("${movies.http.maxAge:0s}")
+    private Duration maxAge;
+
+    public MoviesController(MoviesInfoRestClient moviesInfoRestClient, ReviewsRestClient reviewsRestClient, ObjectMapper objectMapper) {
         this.moviesInfoRestClient = moviesInfoRestClient;
         this.reviewsRestClient = reviewsRestClient;
+        this.objectMapper = objectMapper;
     }
 
+    // The body is hashed into a strong ETag, so a client holding the same Movie gets a 304 without the body.
     @GetMapping("/{id}")
-    public Mono<Movie> getMovieById(@PathVariable("id") String id) {
+    public Mono<ResponseEntity<byte[]>> getMovieById(@PathVariable("id") String id,
+                                                     @RequestParam(value = "topReviews", required = false) Integer topReviews) {
+        int top = topReviews == null ? defaultTopReviews : topReviews;
+        if (top < 0 || top > maxTopReviews) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST, "topReviews must be between 0 and " + maxTopReviews));
+        }
+
+        Mono<Movie> movie;
+        if (parallelAggregation) {
+            movie = Mono.zip(moviesInfoRestClient.getMovieInfo(id), reviewsOf(id, top), Movie::withMovieInfo);
+        } else {
+            movie = moviesInfoRestClient.getMovieInfo(id)
+                    .flatMap(movieInfo -> reviewsOf(id, top).map(reviews -> Movie.withMovieInfo(movieInfo, reviews)));
+        }
+        return movie.map(this::withETag);
+    }
+
+    // Serialized here rather than by the encoder so the bytes are written once and hashed for the ETag; the
+    // result handler then answers 304 itself when If-None-Match carries the same tag.
+    private ResponseEntity<byte[]> withETag(Movie movie) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(movie);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to serialize movie " + movie.getMovieInfo().getMovieInfoId(), e);
+        }
+        CacheControl cacheControl = maxAge.isZero() ? CacheControl.noCache() : CacheControl.maxAge(maxAge).mustRevalidate();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(DigestUtils.md5DigestAsHex(body))
+                .cacheControl(cacheControl)
+                .body(body);
+    }
+
+    // A Movie holding only the reviews part, to be completed with the movie info. While the reviews circuit breaker
+    // is open (and nothing is cached) the movie is served without reviews rather than failing as a whole.
+    private Mono<Movie> reviewsOf(String id, int top) {
+        if (top == 0) {
+            Mono<List<Review>> reviewsListMono = reviewsRestClient.getReviews(id).collectList()
+                    .onErrorResume(DownstreamUnavailableException.class, e -> Mono.just(List.of()));
+            return reviewsListMono.map(reviewList -> new Movie(null, reviewList));
+        }
+        Mono<List<Review>> topReviews = reviewsRestClient.getTopReviews(id, top).collectList()
+                .onErrorResume(DownstreamUnavailableException.class, e -> Mono.just(List.of()));
+        Mono<Optional<ReviewSummary>> summary = reviewsRestClient.getReviewSummary(id)
+                .map(Optional::of)
+                .onErrorResume(DownstreamUnavailableException.class, e -> Mono.just(Optional.empty()));
+        return Mono.zip(topReviews, summary,
+                (reviewList, reviewSummary) -> new Movie(null, reviewList, reviewSummary.orElse(null)));
+    }
+
+    /**
+     * Aggregates a page of movies with one bulk call to each downstream service instead of two calls per movie.
+     * Duplicate ids are coalesced. Both calls start at once; the reviews of the page are grouped by movie, and each
+     * movie info is written out as NDJSON with its reviews as soon as it arrives and that grouping is complete, in
+     * movie-info order.
+     */
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<Movie>> getMoviesByIds(@RequestParam("ids") List<String> ids) {
+        List<String> movieIds = ids.stream()
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .distinct()
+                .collect(Collectors.toList());
+
+        if (movieIds.isEmpty() || movieIds.size() > maxBatchIds) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        Mono<Map<String, Collection<Review>>> reviewsByMovieId = reviewsRestClient.getReviews(movieIds)
+                .collectMultimap(review -> String.valueOf(review.getMovieInfoId()))
+                .onErrorResume(DownstreamUnavailableException.class, e -> Mono.just(Map.of()))
+                .cache();
+
+        // The first source only starts the reviews call alongside the movie infos; the second joins each movie
+        // info against the shared result
+        Flux<Movie> movies = Flux.merge(
+                reviewsByMovieId.then(Mono.empty()),
+                moviesInfoRestClient.getMovieInfos(movieIds)
+                        .concatMap(movieInfo -> reviewsByMovieId.map(reviews -> new Movie(movieInfo,
+                                new ArrayList<>(reviews.getOrDefault(movieInfo.getMovieInfoId(), List.of()))))));
 
-        return moviesInfoRestClient.getMovieInfo(id)
-                .flatMap(movieInfo -> {
-                    Mono<List<Review>> reviewsListMono = reviewsRestClient.getReviews(id).collectList();
-                    return reviewsListMono.map(reviewList -> new Movie(movieInfo, reviewList));
-                });
+        return ResponseEntity.ok(movies);
     }
 }
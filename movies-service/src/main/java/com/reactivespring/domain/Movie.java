@@ -14,4 +14,14 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    // Only set when reviewList holds the top rated reviews rather than all of them
+    private ReviewSummary reviewSummary;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, null);
+    }
+
+    public static Movie withMovieInfo(MovieInfo movieInfo, Movie reviews) {
+        return new Movie(movieInfo, reviews.getReviewList(), reviews.getReviewSummary());
+    }
 }
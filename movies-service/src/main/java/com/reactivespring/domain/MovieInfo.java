@@ -27,4 +27,10 @@ public class MovieInfo {
     @NotNull
     private List<@NotBlank(message = "movieInfo.cast must be present") String> cast;
     private LocalDate releaseDate;
+    // Version assigned by movies-info-service; its ETag for the movie info is this value in quotes
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate releaseDate) {
+        this(movieInfoId, name, year, cast, releaseDate, null);
+    }
 }
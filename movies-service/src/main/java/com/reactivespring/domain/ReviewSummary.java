@@ -0,0 +1,20 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReviewSummary {
+
+    private Long movieInfoId;
+    private long count;
+    private Double average;
+    private Double standardDeviation;
+    // Rated reviews per whole star, "0" to "5"
+    private Map<String, Long> histogram;
+}
@@ -0,0 +1,11 @@
+package com.reactivespring.exception;
+
+/**
+ * A downstream call was not attempted because its circuit breaker is open or its bulkhead is full.
+ */
+public class DownstreamUnavailableException extends RuntimeException {
+
+    public DownstreamUnavailableException(String message) {
+        super(message);
+    }
+}
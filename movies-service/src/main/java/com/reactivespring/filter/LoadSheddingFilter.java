@@ -0,0 +1,44 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Load shedding in front of MoviesController, configured under movies.loadShedding.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LoadSheddingFilter extends LoadSheddingWebFilter {
+
+    public LoadSheddingFilter(@Value("${movies.loadShedding.enabled:true}") boolean enabled,
+                              @Value("${movies.loadShedding.initialLimit:100}") int initialLimit,
+                              @Value("${movies.loadShedding.minLimit:10}") int minLimit,
+                              @Value("${movies.loadShedding.maxLimit:1000}") int maxLimit,
+                              @Value("${movies.loadShedding.latencyThreshold:1s}") Duration latencyThreshold,
+                              @Value("${movies.loadShedding.backoffRatio:0.9}") double backoffRatio,
+                              @Value("${movies.loadShedding.normalShare:0.9}") double normalShare,
+                              @Value("${movies.loadShedding.bulkShare:0.6}") double bulkShare,
+                              @Value("${movies.loadShedding.streamShare:0.5}") double streamShare,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        super(enabled, initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio, normalShare, bulkShare, streamShare,
+                meterRegistry);
+    }
+
+    @Override
+    protected RequestPriority priorityOf(ServerHttpRequest request) {
+        String path = request.getPath().pathWithinApplication().value();
+        // GET /v1/movies?ids= aggregates a whole batch of movies
+        if (path.equals("/v1/movies") && request.getMethod() == HttpMethod.GET) {
+            return RequestPriority.BULK;
+        }
+        return RequestPriority.CRITICAL;
+    }
+}
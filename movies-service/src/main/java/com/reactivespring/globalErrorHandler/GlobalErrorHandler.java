@@ -1,5 +1,6 @@
 package com.reactivespring.globalErrorHandler;
 
+import com.reactivespring.exception.DownstreamUnavailableException;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
 import lombok.extern.slf4j.Slf4j;
@@ -7,6 +8,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.server.ResponseStatusException;
 
 @ControllerAdvice
 @Slf4j
@@ -18,12 +20,24 @@ public class GlobalErrorHandler {
         return ResponseEntity.status(e.getStatusCode()).body(e.getMessage());
     }
 
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<String> handleResponseStatusException(ResponseStatusException e) {
+        log.error("Exception caught in handleResponseStatusException: {}", e.getMessage());
+        return ResponseEntity.status(e.getStatus()).body(e.getReason());
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<String> handleRuntimeException(RuntimeException e) {
         log.error("Exception caught in handleRuntimeException: {}", e.getMessage());
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(e.getMessage());
     }
 
+    @ExceptionHandler(DownstreamUnavailableException.class)
+    public ResponseEntity<String> handleDownstreamUnavailable(DownstreamUnavailableException e) {
+        log.error("Downstream call rejected: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(e.getMessage());
+    }
+
     @ExceptionHandler(MoviesInfoServerException.class)
     public ResponseEntity<String> handleMoviesInfoServerException(MoviesInfoServerException e) {
         log.error("Exception connecting to movies info server: {}", e.getMessage());
@@ -0,0 +1,55 @@
+package com.reactivespring.resilience;
+
+import com.reactivespring.exception.DownstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps the calls in flight to one downstream. A call over the limit fails at once with
+ * DownstreamUnavailableException instead of queueing behind a slow service.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final Semaphore permits;
+    private final Counter rejected;
+
+    public Bulkhead(String name, int maxConcurrentCalls, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.permits = new Semaphore(maxConcurrentCalls);
+        this.rejected = Counter.builder("bulkhead.rejected").tag("name", name).register(meterRegistry);
+        meterRegistry.gauge("bulkhead.available", Tags.of("name", name), permits, Semaphore::availablePermits);
+    }
+
+    public <T> Mono<T> execute(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Mono.error(rejection());
+            }
+            return call.doFinally(signal -> permits.release());
+        });
+    }
+
+    public <T> Flux<T> execute(Flux<T> call) {
+        return Flux.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Flux.error(rejection());
+            }
+            return call.doFinally(signal -> permits.release());
+        });
+    }
+
+    public int availablePermits() {
+        return permits.availablePermits();
+    }
+
+    private DownstreamUnavailableException rejection() {
+        rejected.increment();
+        return new DownstreamUnavailableException("Bulkhead " + name + " is full");
+    }
+}
@@ -0,0 +1,181 @@
+package com.reactivespring.resilience;
+
+import com.reactivespring.exception.DownstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Count based circuit breaker.
+ * <p>
+ * While CLOSED the outcomes of the last slidingWindowSize calls are kept; once at least minimumCalls are recorded
+ * and the failure rate reaches failureRateThreshold percent the breaker OPENs and rejects calls with
+ * DownstreamUnavailableException for openDuration. It then lets halfOpenCalls trial calls through: one failure
+ * opens it again, all of them succeeding closes it.
+ */
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long openNanos;
+    private final int halfOpenCalls;
+    private final Predicate<Throwable> recordAsFailure;
+    private final LongSupplier nanoClock;
+
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openUntil;
+    private int halfOpenPermitted;
+    private int halfOpenSucceeded;
+
+    private final Counter successful;
+    private final Counter failed;
+    private final Counter rejected;
+
+    public CircuitBreaker(String name, int failureRateThreshold, int slidingWindowSize, int minimumCalls,
+                          Duration openDuration, int halfOpenCalls, Predicate<Throwable> recordAsFailure,
+                          MeterRegistry meterRegistry) {
+        this(name, failureRateThreshold, slidingWindowSize, minimumCalls, openDuration, halfOpenCalls, recordAsFailure,
+                meterRegistry, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureRateThreshold, int slidingWindowSize, int minimumCalls,
+                   Duration openDuration, int halfOpenCalls, Predicate<Throwable> recordAsFailure,
+                   MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.name = name;
+        this.failureRateThreshold = failureRateThreshold;
+        this.window = new boolean[slidingWindowSize];
+        this.minimumCalls = Math.min(minimumCalls, slidingWindowSize);
+        this.openNanos = openDuration.toNanos();
+        this.halfOpenCalls = halfOpenCalls;
+        this.recordAsFailure = recordAsFailure;
+        this.nanoClock = nanoClock;
+
+        this.successful = Counter.builder("circuitbreaker.calls").tag("name", name).tag("result", "successful").register(meterRegistry);
+        this.failed = Counter.builder("circuitbreaker.calls").tag("name", name).tag("result", "failed").register(meterRegistry);
+        this.rejected = Counter.builder("circuitbreaker.calls").tag("name", name).tag("result", "rejected").register(meterRegistry);
+        meterRegistry.gauge("circuitbreaker.state", Tags.of("name", name), this, breaker -> breaker.getState().ordinal());
+    }
+
+    public <T> Mono<T> execute(Mono<T> call) {
+        return Mono.defer(() -> {
+            if (!tryAcquire()) {
+                return Mono.error(rejection());
+            }
+            return call
+                    .doOnSuccess(value -> onResult(false))
+                    .doOnError(e -> onResult(recordAsFailure.test(e)))
+                    .doOnCancel(this::onCancel);
+        });
+    }
+
+    public <T> Flux<T> execute(Flux<T> call) {
+        return Flux.defer(() -> {
+            if (!tryAcquire()) {
+                return Flux.error(rejection());
+            }
+            return call
+                    .doOnComplete(() -> onResult(false))
+                    .doOnError(e -> onResult(recordAsFailure.test(e)))
+                    .doOnCancel(this::onCancel);
+        });
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openUntil < 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            halfOpenPermitted = 0;
+            halfOpenSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (halfOpenPermitted >= halfOpenCalls) {
+                return false;
+            }
+            halfOpenPermitted++;
+        }
+        return true;
+    }
+
+    synchronized void onResult(boolean failure) {
+        (failure ? failed : successful).increment();
+        switch (state) {
+            case HALF_OPEN:
+                if (failure) {
+                    open();
+                } else if (++halfOpenSucceeded >= halfOpenCalls) {
+                    close();
+                }
+                break;
+            case CLOSED:
+                record(failure);
+                if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+                    open();
+                }
+                break;
+            case OPEN:
+                // A call that started before the breaker opened; it says nothing about the trial calls to come
+                break;
+        }
+    }
+
+    // A cancelled trial call gives its permit back rather than leaving the breaker half open forever
+    synchronized void onCancel() {
+        if (state == State.HALF_OPEN && halfOpenPermitted > halfOpenSucceeded) {
+            halfOpenPermitted--;
+        }
+    }
+
+    private DownstreamUnavailableException rejection() {
+        rejected.increment();
+        return new DownstreamUnavailableException("Circuit breaker " + name + " is open");
+    }
+
+    private void record(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowNext]) windowFailures--;
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failure;
+        if (failure) windowFailures++;
+        windowNext = (windowNext + 1) % window.length;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openUntil = nanoClock.getAsLong() + openNanos;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowNext = 0;
+        windowCount = 0;
+        windowFailures = 0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.reactivespring.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Hedges slow calls: when an attempt has not answered within the recent latency percentile, the same request is
+ * sent again and whichever answers first wins, the other one is cancelled.
+ * <p>
+ * The delay is the configured percentile of the last windowSize successful attempts, recomputed every few
+ * samples, and never below minDelay; until enough samples are in, initialDelay is used. Hedges are capped at
+ * maxRatio of the requests with the same token bucket scheme as {@link RetryBudget}.
+ */
+public class Hedger {
+
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 20;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final double maxRatio;
+    private final double maxTokens;
+
+    private final long[] samples;
+    private int sampleNext;
+    private int sampleCount;
+    private int sinceRecompute;
+    private long delayNanos;
+    private double tokens;
+
+    private final Counter fired;
+    private final Counter won;
+
+    public Hedger(String name, boolean enabled, double percentile, Duration initialDelay, Duration minDelay,
+                  double maxRatio, int maxTokens, int windowSize, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.delayNanos = Math.max(initialDelay.toNanos(), minDelayNanos);
+        this.maxRatio = maxRatio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        this.samples = new long[Math.max(windowSize, MIN_SAMPLES)];
+
+        this.fired = Counter.builder("hedge.requests").tag("name", name).tag("result", "fired").register(meterRegistry);
+        this.won = Counter.builder("hedge.requests").tag("name", name).tag("result", "won").register(meterRegistry);
+        meterRegistry.gauge("hedge.delay", Tags.of("name", name), this, hedger -> hedger.currentDelay().toMillis());
+    }
+
+    /**
+     * Subscribes to request once and, if it is still pending after the hedge delay and the hedge budget allows,
+     * a second time. The request must be safe to send twice, i.e. a read.
+     */
+    public <T> Mono<T> execute(Mono<T> request) {
+        if (!enabled) {
+            return request;
+        }
+        return Mono.defer(() -> {
+            recordRequest();
+            Mono<T> primary = timed(request);
+            // A hedge that is not sent must never signal, or firstWithSignal would take its completion as the answer
+            Mono<T> hedge = Mono.delay(currentDelay())
+                    .flatMap(tick -> {
+                        if (!tryHedge()) {
+                            return Mono.never();
+                        }
+                        fired.increment();
+                        return timed(request).doOnNext(value -> won.increment());
+                    });
+            return Mono.firstWithSignal(primary, hedge);
+        });
+    }
+
+    synchronized Duration currentDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    private <T> Mono<T> timed(Mono<T> request) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return request.doOnNext(value -> recordLatency(System.nanoTime() - start));
+        });
+    }
+
+    private synchronized void recordRequest() {
+        tokens = Math.min(maxTokens, tokens + maxRatio);
+    }
+
+    private synchronized boolean tryHedge() {
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized void recordLatency(long nanos) {
+        samples[sampleNext] = nanos;
+        sampleNext = (sampleNext + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+        if (sampleCount >= MIN_SAMPLES && ++sinceRecompute >= RECOMPUTE_EVERY) {
+            sinceRecompute = 0;
+            long[] sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+        }
+    }
+}
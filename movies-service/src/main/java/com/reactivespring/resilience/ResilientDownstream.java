@@ -0,0 +1,56 @@
+package com.reactivespring.resilience;
+
+import com.reactivespring.util.RetryUtil;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * The circuit breaker, bulkhead and retry budget of one downstream service. A call is first checked against the
+ * breaker, then takes a bulkhead permit for its whole duration including retries, and retries server errors only
+ * while the budget allows; the breaker records one outcome per call rather than one per attempt. Reads that
+ * are latency sensitive can additionally be hedged.
+ */
+public class ResilientDownstream {
+
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final RetryBudget retryBudget;
+    private final Hedger hedger;
+    private final long maxRetries;
+    private final Duration minBackoff;
+
+    public ResilientDownstream(CircuitBreaker circuitBreaker, Bulkhead bulkhead, RetryBudget retryBudget, Hedger hedger,
+                               long maxRetries, Duration minBackoff) {
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.retryBudget = retryBudget;
+        this.hedger = hedger;
+        this.maxRetries = maxRetries;
+        this.minBackoff = minBackoff;
+    }
+
+    public <T> Mono<T> call(Mono<T> request) {
+        return circuitBreaker.execute(bulkhead.execute(Mono.defer(() -> {
+            retryBudget.recordRequest();
+            return request.retryWhen(RetryUtil.retryBackoffSpec(maxRetries, minBackoff, retryBudget));
+        })));
+    }
+
+    // Every attempt, the first one and each retry, is hedged on its own; request must be safe to send twice
+    public <T> Mono<T> callHedged(Mono<T> request) {
+        return call(hedger.execute(request));
+    }
+
+    public <T> Flux<T> call(Flux<T> request) {
+        return circuitBreaker.execute(bulkhead.execute(Flux.defer(() -> {
+            retryBudget.recordRequest();
+            return request.retryWhen(RetryUtil.retryBackoffSpec(maxRetries, minBackoff, retryBudget));
+        })));
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+}
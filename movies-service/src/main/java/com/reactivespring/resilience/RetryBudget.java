@@ -0,0 +1,41 @@
+package com.reactivespring.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Limits retries to a share of the requests made, so a failing downstream sees at most (1 + ratio) times its
+ * normal load instead of (1 + maxRetries) times. Every request deposits ratio tokens up to maxTokens and every
+ * retry spends a whole token; the bucket starts full so a quiet client can still retry a few times.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double maxTokens;
+    private double tokens;
+
+    private final Counter allowed;
+    private final Counter denied;
+
+    public RetryBudget(String name, double ratio, int maxTokens, MeterRegistry meterRegistry) {
+        this.ratio = ratio;
+        this.maxTokens = maxTokens;
+        this.tokens = maxTokens;
+        this.allowed = Counter.builder("retry.budget.retries").tag("name", name).tag("result", "allowed").register(meterRegistry);
+        this.denied = Counter.builder("retry.budget.retries").tag("name", name).tag("result", "denied").register(meterRegistry);
+    }
+
+    public synchronized void recordRequest() {
+        tokens = Math.min(maxTokens, tokens + ratio);
+    }
+
+    public synchronized boolean tryRetry() {
+        if (tokens >= 1) {
+            tokens -= 1;
+            allowed.increment();
+            return true;
+        }
+        denied.increment();
+        return false;
+    }
+}
@@ -0,0 +1,31 @@
+package com.reactivespring.util;
+
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.function.Consumer;
+
+public class MetricsUtil {
+
+    public static final String DOWNSTREAM_METRIC = "movies.downstream";
+
+    // The request attribute the http.client.requests uri tag is read from. WebClient only sets it when uri() is given
+    // a template with variables, so calls that expand their uri up front pass the template here to keep ids out of it.
+    private static final String URI_TEMPLATE_ATTRIBUTE = WebClient.class.getName() + ".uriTemplate";
+
+    public static Consumer<Map<String, Object>> uriTemplate(String uriTemplate) {
+        return attributes -> attributes.put(URI_TEMPLATE_ATTRIBUTE, uriTemplate);
+    }
+
+    // Reactor metrics (movies.downstream.flow.duration etc.) for a downstream operation as the caller sees it, i.e.
+    // including cache hits, retries, hedges and fallbacks, where http.client.requests times each single request
+    public static <T> Mono<T> timed(Mono<T> source, String downstream, String operation) {
+        return source.name(DOWNSTREAM_METRIC).tag("downstream", downstream).tag("operation", operation).metrics();
+    }
+
+    public static <T> Flux<T> timed(Flux<T> source, String downstream, String operation) {
+        return source.name(DOWNSTREAM_METRIC).tag("downstream", downstream).tag("operation", operation).metrics();
+    }
+}
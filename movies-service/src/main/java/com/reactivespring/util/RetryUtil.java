@@ -2,17 +2,29 @@ package com.reactivespring.util;
 
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsServerException;
+import com.reactivespring.resilience.RetryBudget;
 import reactor.core.Exceptions;
 import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RetryUtil {
 
-    public static RetryBackoffSpec retryBackoffSpec() {
-        return Retry.backoff(3, Duration.ofMillis(300))
-                .filter(e -> e instanceof MoviesInfoServerException || e instanceof ReviewsServerException)
+    // Retries server errors with backoff while the downstream's retry budget has tokens left. The spec counts the
+    // retries of one call so the budget is only charged for retries that would otherwise happen: build one per call.
+    public static RetryBackoffSpec retryBackoffSpec(long maxRetries, Duration minBackoff, RetryBudget retryBudget) {
+        AtomicLong retries = new AtomicLong();
+        return Retry.backoff(maxRetries, minBackoff)
+                .filter(e -> {
+                    if (!(e instanceof MoviesInfoServerException || e instanceof ReviewsServerException)
+                            || retries.get() >= maxRetries || !retryBudget.tryRetry()) {
+                        return false;
+                    }
+                    retries.incrementAndGet();
+                    return true;
+                })
                 .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) -> Exceptions.propagate(retrySignal.failure()));
     }
 }
@@ -2,19 +2,25 @@ package com.reactivespring.controller;
 
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.reactivespring.domain.Movie;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.reactive.server.WebTestClient;
 
+import java.time.Duration;
+import java.util.List;
+
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
@@ -23,13 +29,18 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 @TestPropertySource(
         properties = {
                 "restClient.moviesInfoUrl=http://localhost:8084/v1/movie-infos",
-                "restClient.reviewsUrl=http://localhost:8084/v1/reviews"
+                "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+                "restClient.cache.movieInfo.enabled=false",
+                "restClient.cache.reviews.enabled=true"
         })
 public class MoviesControllerIntgTest {
 
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    MeterRegistry meterRegistry;
+
     @Test
     void findMovieById() {
         String movieId = "97";
@@ -37,12 +48,12 @@ public class MoviesControllerIntgTest {
         stubFor(get(urlEqualTo("/v1/movie-infos/" + movieId))
                 .willReturn(aResponse()
                         .withHeader("Content-Type", "application/json")
-                        .withBodyFile("/movieInfo.json")));
+                        .withBodyFile("movieInfo.json")));
 
         stubFor(get(urlEqualTo("/v1/reviews/" + movieId))
                 .willReturn(aResponse()
                         .withHeader("Content-Type", "application/json")
-                        .withBodyFile("/reviews.json")));
+                        .withBodyFile("reviews.json")));
 
         webTestClient.get()
                 .uri("/v1/movies/{id}", movieId)
@@ -57,6 +68,141 @@ public class MoviesControllerIntgTest {
                 });
     }
 
+    @Test
+    @DisplayName("findMovieById with topReviews embeds only the top rated reviews and the rating summary")
+    void findMovieByIdWithTopReviews() {
+        String movieId = "97";
+
+        stubFor(get(urlEqualTo("/v1/movie-infos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieInfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews/" + movieId))
+                .withQueryParam("sort", equalTo("rating"))
+                .withQueryParam("limit", equalTo("2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews/" + movieId + "/summary"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviewSummary.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}?topReviews=2", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .consumeWith(res -> {
+                    Movie movieRes = res.getResponseBody();
+                    assertNotNull(movieRes);
+                    assertNotNull(movieRes.getMovieInfo());
+                    Assertions.assertEquals(2, movieRes.getReviewList().size());
+                    Assertions.assertEquals(2, movieRes.getReviewSummary().getCount());
+                    Assertions.assertEquals(4.3, movieRes.getReviewSummary().getAverage());
+                });
+
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/reviews/" + movieId))
+                .withQueryParam("sort", equalTo("rating")));
+    }
+
+    @Test
+    @DisplayName("findMovieById revalidates cached reviews with If-None-Match and answers 304 for an unchanged movie")
+    void findMovieByIdConditionalRequests() {
+        String movieId = "103";
+
+        stubFor(get(urlEqualTo("/v1/movie-infos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieInfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withHeader("ETag", "\"reviews-v1\"")
+                        .withBodyFile("reviews.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews/" + movieId))
+                .withHeader("If-None-Match", equalTo("\"reviews-v1\""))
+                .willReturn(aResponse().withStatus(304).withHeader("ETag", "\"reviews-v1\"")));
+
+        String eTag = webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .returnResult(Movie.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(eTag);
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectHeader()
+                .valueEquals("ETag", eTag)
+                .expectBody(Movie.class)
+                .consumeWith(res -> {
+                    Movie movie = res.getResponseBody();
+                    assertNotNull(movie);
+                    Assertions.assertEquals(2, movie.getReviewList().size());
+                });
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .header("If-None-Match", eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        WireMock.verify(2, getRequestedFor(urlEqualTo("/v1/reviews/" + movieId))
+                .withHeader("If-None-Match", equalTo("\"reviews-v1\"")));
+    }
+
+    @Test
+    @DisplayName("Client metrics are tagged with the uri template rather than the movie id")
+    void findMovieByIdRecordsClientMetrics() {
+        String movieId = "109";
+
+        stubFor(get(urlEqualTo("/v1/movie-infos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieInfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        assertNotNull(meterRegistry.find("http.client.requests").tag("uri", "/v1/movie-infos/{id}").timer());
+        assertNotNull(meterRegistry.find("http.client.requests").tag("uri", "/v1/reviews/{id}").timer());
+        Assertions.assertNull(meterRegistry.find("http.client.requests").tag("uri", "/v1/reviews/" + movieId).timer());
+        assertNotNull(meterRegistry.find("movies.downstream.flow.duration")
+                .tag("downstream", "moviesInfo")
+                .tag("operation", "getMovieInfo")
+                .timer());
+    }
+
+    @Test
+    void findMovieByIdRejectsTooManyTopReviews() {
+        webTestClient.get()
+                .uri("/v1/movies/{id}?topReviews=100000", "97")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     @DisplayName("findMovieById when movie with ID does not exist")
     void findMovieById404() {
@@ -141,4 +287,106 @@ public class MoviesControllerIntgTest {
 
         WireMock.verify(4, getRequestedFor(urlEqualTo("/v1/reviews/" + movieId)));
     }
+
+    @Test
+    @DisplayName("findMovieById fetches movie info and reviews in parallel")
+    void findMovieByIdParallelLatency() {
+        String movieId = "97";
+        int infoDelay = 1000;
+        int reviewsDelay = 800;
+
+        stubFor(get(urlEqualTo("/v1/movie-infos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieInfo.json")
+                        .withFixedDelay(infoDelay)));
+
+        stubFor(get(urlEqualTo("/v1/reviews/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                        .withFixedDelay(reviewsDelay)));
+
+        // warm up connections so the measured call only reflects the downstream delays
+        webTestClient.get().uri("/v1/movies/{id}", movieId).exchange().expectStatus().isOk();
+
+        long start = System.nanoTime();
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody(Movie.class)
+                .consumeWith(res -> {
+                    Movie movie = res.getResponseBody();
+                    assertNotNull(movie);
+                    Assertions.assertEquals(2, movie.getReviewList().size());
+                });
+        long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertTrue(elapsed >= infoDelay, "took " + elapsed + "ms");
+        assertTrue(elapsed < infoDelay + reviewsDelay, "took " + elapsed + "ms, expected close to max(info, reviews)");
+    }
+
+    @Test
+    @DisplayName("findMovieById 404 from movie info cancels the in-flight reviews call")
+    void findMovieById404CancelsReviews() {
+        String movieId = "102";
+
+        stubFor(get(urlEqualTo("/v1/movie-infos/" + movieId))
+                .willReturn(aResponse().withStatus(404)));
+
+        stubFor(get(urlEqualTo("/v1/reviews/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")
+                        .withFixedDelay(3000)));
+
+        long start = System.nanoTime();
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .exchange()
+                .expectStatus()
+                .isNotFound()
+                .expectBody(String.class)
+                .isEqualTo("Unable to find movie with id 102");
+        long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        assertTrue(elapsed < 3000, "took " + elapsed + "ms, reviews call was not cancelled");
+    }
+
+    @Test
+    @DisplayName("getMoviesByIds aggregates a page of movies with one call to each downstream service")
+    void getMoviesByIds() {
+        stubFor(get(urlPathEqualTo("/v1/movie-infos"))
+                .withQueryParam("ids", equalTo("97,98"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieInfos.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withQueryParam("movieInfoId", equalTo("97,98"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviewsForMovies.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies?ids=97,98,97")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(Movie.class)
+                .consumeWith(res -> {
+                    List<Movie> movies = res.getResponseBody();
+                    assertNotNull(movies);
+                    Assertions.assertEquals(2, movies.size());
+                    Assertions.assertEquals("97", movies.get(0).getMovieInfo().getMovieInfoId());
+                    Assertions.assertEquals(2, movies.get(0).getReviewList().size());
+                    Assertions.assertEquals(1, movies.get(1).getReviewList().size());
+                });
+
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/movie-infos")));
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
 }
@@ -0,0 +1,104 @@
+package com.reactivespring.tracing;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@AutoConfigureWireMock(port = 8084)
+@TestPropertySource(
+        properties = {
+                "restClient.moviesInfoUrl=http://localhost:8084/v1/movie-infos",
+                "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+                "restClient.cache.movieInfo.enabled=false",
+                "tracing.file.path=build/spans/tracing-intg-test.jsonl"
+        })
+class TracingIntgTest {
+
+    static final Path SPANS = Path.of("build/spans/tracing-intg-test.jsonl");
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    void stubMovie(String movieId) {
+        stubFor(get(urlEqualTo("/v1/movie-infos/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("movieInfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/reviews/" + movieId))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type", "application/json")
+                        .withBodyFile("reviews.json")));
+    }
+
+    @Test
+    void traceContextIsPropagatedToBothDownstreams() {
+        String movieId = "121";
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        stubMovie(movieId);
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .header("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // Same trace, but a new parent: the client span movies-service started for the call
+        verify(getRequestedFor(urlEqualTo("/v1/movie-infos/" + movieId))
+                .withHeader("traceparent", matching("00-" + traceId + "-(?!00f067aa0ba902b7)[0-9a-f]{16}-01")));
+        verify(getRequestedFor(urlEqualTo("/v1/reviews/" + movieId))
+                .withHeader("traceparent", matching("00-" + traceId + "-(?!00f067aa0ba902b7)[0-9a-f]{16}-01")));
+    }
+
+    @Test
+    void spansAreWrittenToTheFileExporter() throws Exception {
+        String movieId = "122";
+        String traceId = "0af7651916cd43dd8448eb211c80319c";
+        stubMovie(movieId);
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}", movieId)
+                .header("traceparent", "00-" + traceId + "-b7ad6b7169203331-01")
+                .exchange()
+                .expectStatus()
+                .isOk();
+
+        // The server span ends once the response has been written, which can be just after the client has it
+        List<String> spans = List.of();
+        for (int i = 0; i < 50 && spans.stream().noneMatch(span -> span.contains("\"kind\":\"SERVER\"")); i++) {
+            Thread.sleep(100);
+            spans = spansOf(traceId);
+        }
+
+        assertTrue(spans.stream().anyMatch(span -> span.contains("\"name\":\"GET /v1/movies/{id}\"")
+                && span.contains("\"parentSpanId\":\"b7ad6b7169203331\"")), spans::toString);
+        assertTrue(spans.stream().filter(span -> span.contains("\"kind\":\"CLIENT\"")).count() >= 2, spans::toString);
+    }
+
+    List<String> spansOf(String traceId) throws IOException {
+        if (!Files.exists(SPANS)) {
+            return List.of();
+        }
+        return Files.readAllLines(SPANS).stream()
+                .filter(line -> line.contains("\"traceId\":\"" + traceId + "\""))
+                .collect(Collectors.toList());
+    }
+}
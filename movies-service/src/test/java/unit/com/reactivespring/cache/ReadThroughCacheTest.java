@@ -0,0 +1,226 @@
+package com.reactivespring.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ReadThroughCacheTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loads = new AtomicInteger();
+    }
+
+    ReadThroughCache<String> cache(int maxSize, Duration ttl) {
+        return new ReadThroughCache<>("test", true, maxSize, ttl, Duration.ofMinutes(1),
+                e -> e instanceof IllegalStateException, meterRegistry);
+    }
+
+    Mono<String> loader(String key) {
+        return Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return "value-" + key;
+        });
+    }
+
+    @Test
+    void hitAfterMiss() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+
+        StepVerifier.create(cache.get("1", this::loader)).expectNext("value-1").verifyComplete();
+        StepVerifier.create(cache.get("1", this::loader)).expectNext("value-1").verifyComplete();
+
+        Assertions.assertEquals(1, loads.get());
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").counter().count());
+        Assertions.assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void expiredEntryIsReloaded() throws InterruptedException {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMillis(50));
+
+        cache.get("1", this::loader).block();
+        Thread.sleep(100);
+        cache.get("1", this::loader).block();
+
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void expiredValueIsHandedToTheLoaderForRevalidation() throws InterruptedException {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMillis(50));
+        List<String> staleValues = new ArrayList<>();
+
+        cache.getOrRevalidate("1", (key, stale) -> {
+            staleValues.add(stale);
+            return loader(key);
+        }).block();
+        Thread.sleep(100);
+        StepVerifier.create(cache.getOrRevalidate("1", (key, stale) -> {
+                    staleValues.add(stale);
+                    return Mono.just(stale);
+                }))
+                .expectNext("value-1")
+                .verifyComplete();
+
+        Assertions.assertEquals(Arrays.asList(null, "value-1"), staleValues);
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ReadThroughCache<String> cache = cache(2, Duration.ofMinutes(1));
+
+        cache.get("1", this::loader).block();
+        cache.get("2", this::loader).block();
+        cache.get("1", this::loader).block();
+        cache.get("3", this::loader).block();
+        cache.get("1", this::loader).block();
+        cache.get("2", this::loader).block();
+
+        Assertions.assertEquals(4, loads.get());
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(2.0, meterRegistry.get("cache.evictions").counter().count());
+    }
+
+    @Test
+    void negativeCacheableErrorsAreRemembered() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+        Mono<String> notFound = Mono.defer(() -> {
+            loads.incrementAndGet();
+            return Mono.error(new IllegalStateException("not found"));
+        });
+
+        StepVerifier.create(cache.get("1", key -> notFound)).expectError(IllegalStateException.class).verify();
+        StepVerifier.create(cache.get("1", key -> notFound)).expectError(IllegalStateException.class).verify();
+
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void otherErrorsAreNotCached() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+        Mono<String> serverError = Mono.defer(() -> {
+            loads.incrementAndGet();
+            return Mono.error(new RuntimeException("server down"));
+        });
+
+        StepVerifier.create(cache.get("1", key -> serverError)).expectError().verify();
+        StepVerifier.create(cache.get("1", key -> serverError)).expectError().verify();
+
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+        Mono<String> slowLoader = Mono.fromSupplier(() -> {
+            loads.incrementAndGet();
+            return "value";
+        }).delayElement(Duration.ofMillis(100));
+
+        StepVerifier.create(Flux.range(0, 10).flatMap(i -> cache.get("1", key -> slowLoader)))
+                .expectNextCount(10)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void evict() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+
+        cache.get("1", this::loader).block();
+        cache.evict("1");
+        cache.get("1", this::loader).block();
+
+        Assertions.assertEquals(2, loads.get());
+    }
+
+    @Test
+    void evictWhileLoadingKeepsTheLoadedValueOutOfTheCache() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+        Sinks.One<String> source = Sinks.one();
+
+        StepVerifier.create(cache.get("1", key -> source.asMono()))
+                .then(() -> cache.evict("1"))
+                .then(() -> source.tryEmitValue("stale"))
+                .expectNext("stale")
+                .verifyComplete();
+
+        Assertions.assertEquals(0, cache.size());
+        StepVerifier.create(cache.get("1", this::loader)).expectNext("value-1").verifyComplete();
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void missAfterEvictDoesNotJoinTheDetachedLoad() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+        Sinks.One<String> source = Sinks.one();
+
+        StepVerifier.create(cache.get("1", key -> source.asMono()))
+                .then(() -> cache.evict("1"))
+                .then(() -> StepVerifier.create(cache.get("1", this::loader)).expectNext("value-1").verifyComplete())
+                .then(() -> source.tryEmitValue("stale"))
+                .expectNext("stale")
+                .verifyComplete();
+
+        StepVerifier.create(cache.get("1", this::loader)).expectNext("value-1").verifyComplete();
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void replaceWhileLoadingKeepsTheReplacement() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+        Sinks.One<String> source = Sinks.one();
+
+        StepVerifier.create(cache.get("1", key -> source.asMono()))
+                .then(() -> cache.put("1", "new"))
+                .then(() -> cache.replaceIfPresent("1", "newer"))
+                .then(() -> source.tryEmitValue("old"))
+                .expectNext("old")
+                .verifyComplete();
+
+        StepVerifier.create(cache.get("1", this::loader)).expectNext("newer").verifyComplete();
+        Assertions.assertEquals(0, loads.get());
+    }
+
+    @Test
+    void replaceIfPresentRejectsNull() {
+        ReadThroughCache<String> cache = cache(10, Duration.ofMinutes(1));
+        cache.get("1", this::loader).block();
+
+        Assertions.assertThrows(NullPointerException.class, () -> cache.replaceIfPresent("1", null));
+        StepVerifier.create(cache.get("1", this::loader)).expectNext("value-1").verifyComplete();
+        Assertions.assertEquals(1, loads.get());
+    }
+
+    @Test
+    void inadmissibleValuesAreNotStored() {
+        ReadThroughCache<String> cache = new ReadThroughCache<>("test", true, 10, Duration.ofMinutes(1), Duration.ofMinutes(1),
+                e -> false, value -> value.length() <= 7, meterRegistry);
+
+        StepVerifier.create(cache.get("1", this::loader)).expectNext("value-1").verifyComplete();
+        StepVerifier.create(cache.get("10", this::loader)).expectNext("value-10").verifyComplete();
+        cache.get("10", this::loader).block();
+
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(3, loads.get());
+    }
+}
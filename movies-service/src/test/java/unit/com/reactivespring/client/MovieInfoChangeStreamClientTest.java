@@ -0,0 +1,74 @@
+package com.reactivespring.client;
+
+import com.reactivespring.cache.ReadThroughCache;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoChangeStreamClientTest {
+
+    ReadThroughCache<MovieInfo> cache = new ReadThroughCache<>("movieInfo", true, 10,
+            Duration.ofHours(1), Duration.ofSeconds(10), e -> false, new SimpleMeterRegistry());
+
+    MovieInfoChangeStreamClient client = new MovieInfoChangeStreamClient(null, cache);
+
+    MovieInfo movieInfo(String name) {
+        return new MovieInfo("97", name, 2024, List.of("Kieran", "Jasper"), LocalDate.parse("2024-01-02"));
+    }
+
+    String cachedName() {
+        return cache.get("97", id -> Mono.just(movieInfo("loaded"))).block().getName();
+    }
+
+    @Test
+    void updateRefreshesCachedEntry() {
+        cache.put("97", movieInfo("old"));
+
+        client.apply(new MovieInfoEvent("e-1", MovieInfoEvent.Type.UPDATED, "97", movieInfo("new")));
+
+        assertEquals("new", cachedName());
+    }
+
+    @Test
+    void updateDoesNotAdmitUncachedEntry() {
+        client.apply(new MovieInfoEvent("e-1", MovieInfoEvent.Type.CREATED, "97", movieInfo("new")));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void updateWithoutBodyEvictsEntry() {
+        cache.put("97", movieInfo("old"));
+
+        client.apply(new MovieInfoEvent("e-1", MovieInfoEvent.Type.UPDATED, "97", null));
+
+        assertEquals("loaded", cachedName());
+    }
+
+    @Test
+    void deleteEvictsEntry() {
+        cache.put("97", movieInfo("old"));
+
+        client.apply(new MovieInfoEvent("e-2", MovieInfoEvent.Type.DELETED, "97", null));
+
+        assertEquals("loaded", cachedName());
+    }
+
+    @Test
+    void resetClearsCache() {
+        cache.put("97", movieInfo("old"));
+        cache.put("98", movieInfo("other"));
+
+        client.apply(new MovieInfoEvent(null, MovieInfoEvent.Type.RESET, null, null));
+
+        assertEquals(0, cache.size());
+    }
+}
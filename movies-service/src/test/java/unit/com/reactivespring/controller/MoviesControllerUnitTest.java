@@ -1,4 +1,65 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewsRestClient;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 public class MoviesControllerUnitTest {
+
+    MoviesInfoRestClient moviesInfoRestClient = mock(MoviesInfoRestClient.class);
+
+    ReviewsRestClient reviewsRestClient = mock(ReviewsRestClient.class);
+
+    MoviesController moviesController;
+
+    @BeforeEach
+    void setUp() {
+        moviesController = new MoviesController(moviesInfoRestClient, reviewsRestClient, new ObjectMapper());
+        ReflectionTestUtils.setField(moviesController, "maxBatchIds", 100);
+    }
+
+    static MovieInfo movieInfo(String id) {
+        return new MovieInfo(id, "Movie " + id, 2005, List.of("Christian Bale"), null, 0L);
+    }
+
+    @Test
+    void getMoviesByIdsStreamsEachMovieAsItsInfoArrives() {
+        Sinks.Many<MovieInfo> movieInfos = Sinks.many().unicast().onBackpressureBuffer();
+        AtomicBoolean reviewsRequested = new AtomicBoolean();
+        when(moviesInfoRestClient.getMovieInfos(List.of("1", "2"))).thenReturn(movieInfos.asFlux());
+        when(reviewsRestClient.getReviews(List.of("1", "2")))
+                .thenReturn(Flux.just(new Review("r1", 1L, "Great", 4.5)).doOnSubscribe(s -> reviewsRequested.set(true)));
+
+        StepVerifier.create(moviesController.getMoviesByIds(List.of("1", "2", "1")).getBody())
+                .then(() -> Assertions.assertTrue(reviewsRequested.get()))
+                .then(() -> movieInfos.tryEmitNext(movieInfo("1")))
+                .assertNext(movie -> {
+                    Assertions.assertEquals("1", movie.getMovieInfo().getMovieInfoId());
+                    Assertions.assertEquals(1, movie.getReviewList().size());
+                })
+                .then(() -> movieInfos.tryEmitNext(movieInfo("2")))
+                .assertNext(movie -> {
+                    Assertions.assertEquals("2", movie.getMovieInfo().getMovieInfoId());
+                    Assertions.assertTrue(movie.getReviewList().isEmpty());
+                })
+                .then(movieInfos::tryEmitComplete)
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+    }
 }
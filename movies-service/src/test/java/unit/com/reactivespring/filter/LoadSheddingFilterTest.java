@@ -0,0 +1,65 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class LoadSheddingFilterTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    LoadSheddingFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        StaticListableBeanFactory beanFactory = new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry));
+        filter = new LoadSheddingFilter(true, 10, 10, 10, Duration.ofMillis(500), 0.9, 0.9, 0.6, 0.5,
+                beanFactory.getBeanProvider(MeterRegistry.class));
+    }
+
+    // Runs the request through the filter with a handler that never answers, so it keeps its slot until disposed
+    Disposable hold(MockServerHttpRequest request) {
+        return filter.filter(MockServerWebExchange.from(request), exchange -> Mono.never()).subscribe();
+    }
+
+    HttpStatus statusOf(MockServerHttpRequest request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, e -> Mono.empty()).block();
+        return exchange.getResponse().getStatusCode();
+    }
+
+    @Test
+    void batchRequestsAreShedBeforeSingleMovies() {
+        for (int i = 0; i < 6; i++) {
+            hold(MockServerHttpRequest.get("/v1/movies?ids=1,2").build());
+        }
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, statusOf(MockServerHttpRequest.get("/v1/movies?ids=3").build()));
+        assertNull(statusOf(MockServerHttpRequest.get("/v1/movies/3").build()));
+        assertEquals(1.0, meterRegistry.get("http.server.requests.shed").tag("priority", "BULK").counter().count());
+    }
+
+    @Test
+    void slowResponsesLowerTheLimit() {
+        filter = new LoadSheddingFilter(true, 10, 1, 10, Duration.ZERO, 0.5, 0.9, 0.6, 0.5,
+                new StaticListableBeanFactory().getBeanProvider(MeterRegistry.class));
+
+        statusOf(MockServerHttpRequest.get("/v1/movies/1").build());
+
+        assertEquals(5, filter.getLimiter().getLimit());
+    }
+}
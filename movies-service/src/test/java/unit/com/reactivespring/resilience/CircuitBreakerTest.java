@@ -0,0 +1,86 @@
+package com.reactivespring.resilience;
+
+import com.reactivespring.exception.DownstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CircuitBreakerTest {
+
+    AtomicLong now;
+
+    AtomicInteger calls;
+
+    CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        calls = new AtomicInteger();
+        circuitBreaker = new CircuitBreaker("test", 50, 4, 4, Duration.ofSeconds(10), 2,
+                e -> !(e instanceof IllegalArgumentException), new SimpleMeterRegistry(), now::get);
+    }
+
+    Mono<String> succeeding() {
+        return Mono.fromSupplier(() -> {
+            calls.incrementAndGet();
+            return "ok";
+        });
+    }
+
+    Mono<String> failing(RuntimeException e) {
+        return Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(e);
+        });
+    }
+
+    @Test
+    void opensOnceFailureRateIsReached() {
+        circuitBreaker.execute(succeeding()).block();
+        circuitBreaker.execute(succeeding()).block();
+        StepVerifier.create(circuitBreaker.execute(failing(new IllegalStateException()))).expectError().verify();
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+
+        StepVerifier.create(circuitBreaker.execute(failing(new IllegalStateException()))).expectError().verify();
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        StepVerifier.create(circuitBreaker.execute(succeeding()))
+                .expectError(DownstreamUnavailableException.class)
+                .verify();
+        Assertions.assertEquals(4, calls.get());
+    }
+
+    @Test
+    void ignoredErrorsDoNotOpen() {
+        for (int i = 0; i < 4; i++) {
+            StepVerifier.create(circuitBreaker.execute(failing(new IllegalArgumentException()))).expectError().verify();
+        }
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    void halfOpenTrialsCloseOrReopen() {
+        for (int i = 0; i < 4; i++) {
+            circuitBreaker.execute(failing(new IllegalStateException())).onErrorResume(e -> Mono.empty()).block();
+        }
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        circuitBreaker.execute(failing(new IllegalStateException())).onErrorResume(e -> Mono.empty()).block();
+        Assertions.assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        now.addAndGet(Duration.ofSeconds(10).toNanos());
+        circuitBreaker.execute(succeeding()).block();
+        Assertions.assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        circuitBreaker.execute(succeeding()).block();
+        Assertions.assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+}
@@ -0,0 +1,93 @@
+package com.reactivespring.resilience;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class HedgerTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    AtomicInteger attempts;
+
+    AtomicBoolean firstCancelled;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        attempts = new AtomicInteger();
+        firstCancelled = new AtomicBoolean();
+    }
+
+    Hedger hedger(double maxRatio, int maxTokens) {
+        return new Hedger("test", true, 0.95, Duration.ofMillis(20), Duration.ofMillis(1), maxRatio, maxTokens, 100,
+                meterRegistry);
+    }
+
+    // The first attempt hangs for a long time, every later one answers straight away
+    Mono<String> slowThenFast() {
+        return Mono.defer(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                return Mono.delay(Duration.ofSeconds(5)).thenReturn("slow")
+                        .doOnCancel(() -> firstCancelled.set(true));
+            }
+            return Mono.just("fast");
+        });
+    }
+
+    double count(String result) {
+        return meterRegistry.get("hedge.requests").tag("result", result).counter().count();
+    }
+
+    @Test
+    void hedgeWinsAndCancelsTheSlowAttempt() {
+        StepVerifier.create(hedger(0.05, 10).execute(slowThenFast()))
+                .expectNext("fast")
+                .verifyComplete();
+
+        Assertions.assertEquals(2, attempts.get());
+        Assertions.assertTrue(firstCancelled.get());
+        Assertions.assertEquals(1.0, count("fired"));
+        Assertions.assertEquals(1.0, count("won"));
+    }
+
+    @Test
+    void fastAnswerIsNotHedged() {
+        StepVerifier.create(hedger(0.05, 10).execute(Mono.fromCallable(() -> attempts.incrementAndGet())))
+                .expectNext(1)
+                .verifyComplete();
+
+        Assertions.assertEquals(1, attempts.get());
+        Assertions.assertEquals(0.0, count("fired"));
+    }
+
+    @Test
+    void hedgesStopWhenTheBudgetIsSpent() {
+        StepVerifier.create(hedger(0.0, 0).execute(slowThenFast()).timeout(Duration.ofMillis(200)))
+                .expectError(TimeoutException.class)
+                .verify();
+
+        Assertions.assertEquals(1, attempts.get());
+        Assertions.assertEquals(0.0, count("fired"));
+    }
+
+    @Test
+    void delayFollowsTheLatencyPercentile() {
+        Hedger hedger = hedger(0.05, 10);
+        Assertions.assertEquals(Duration.ofMillis(20), hedger.currentDelay());
+
+        for (int i = 1; i <= 100; i++) {
+            hedger.recordLatency(Duration.ofMillis(i).toNanos());
+        }
+
+        Assertions.assertEquals(Duration.ofMillis(95), hedger.currentDelay());
+    }
+}
@@ -0,0 +1,85 @@
+package com.reactivespring.resilience;
+
+import com.reactivespring.exception.DownstreamUnavailableException;
+import com.reactivespring.exception.ReviewsServerException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class ResilientDownstreamTest {
+
+    SimpleMeterRegistry meterRegistry;
+
+    AtomicInteger attempts;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        attempts = new AtomicInteger();
+    }
+
+    ResilientDownstream downstream(int maxConcurrentCalls, double retryBudgetRatio, int retryBudgetMaxTokens) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker("test", 50, 100, 100, Duration.ofSeconds(10), 1,
+                e -> true, meterRegistry);
+        return new ResilientDownstream(circuitBreaker, new Bulkhead("test", maxConcurrentCalls, meterRegistry),
+                new RetryBudget("test", retryBudgetRatio, retryBudgetMaxTokens, meterRegistry),
+                new Hedger("test", false, 0.95, Duration.ofMillis(100), Duration.ofMillis(10), 0.05, 10, 500, meterRegistry),
+                3, Duration.ofMillis(1));
+    }
+
+    Mono<String> serverError() {
+        return Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new ReviewsServerException("down"));
+        });
+    }
+
+    @Test
+    void retriesStopWhenTheBudgetIsSpent() {
+        ResilientDownstream downstream = downstream(10, 0.0, 4);
+
+        StepVerifier.create(downstream.call(serverError())).expectError(ReviewsServerException.class).verify();
+        Assertions.assertEquals(4, attempts.get());
+
+        attempts.set(0);
+        StepVerifier.create(downstream.call(serverError())).expectError(ReviewsServerException.class).verify();
+        Assertions.assertEquals(2, attempts.get());
+
+        attempts.set(0);
+        StepVerifier.create(downstream.call(serverError())).expectError(ReviewsServerException.class).verify();
+        Assertions.assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void requestsRefillTheBudget() {
+        ResilientDownstream downstream = downstream(10, 0.5, 1);
+
+        downstream.call(Mono.just("ok")).block();
+        StepVerifier.create(downstream.call(serverError())).expectError(ReviewsServerException.class).verify();
+
+        Assertions.assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void bulkheadRejectsCallsOverTheLimit() {
+        ResilientDownstream downstream = downstream(1, 0.1, 10);
+        Sinks.One<String> slow = Sinks.one();
+
+        StepVerifier.create(downstream.call(slow.asMono()))
+                .then(() -> StepVerifier.create(downstream.call(Mono.just("second")))
+                        .expectError(DownstreamUnavailableException.class)
+                        .verify())
+                .then(() -> slow.tryEmitValue("first"))
+                .expectNext("first")
+                .verifyComplete();
+
+        StepVerifier.create(downstream.call(Mono.just("third"))).expectNext("third").verifyComplete();
+    }
+}
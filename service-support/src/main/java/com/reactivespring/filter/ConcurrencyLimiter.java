@@ -0,0 +1,98 @@
+package com.reactivespring.filter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * AIMD concurrency limit driven by latency, so the limit settles around the concurrency the backing store can
+ * serve within latencyThreshold. A request slower than the threshold shrinks the limit by backoffRatio, but only
+ * if it started after the previous decrease: the burst of slow responses from one congestion episode backs off
+ * once per round trip rather than once per response. Each faster request grows the limit by 1 / limit while at
+ * least half of it is in use, which adds about one per round trip's worth of requests.
+ */
+public class ConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final LongSupplier nanoClock;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+
+    // Guarded by this, like the limit updates
+    private boolean decreased;
+    private long lastDecreaseNanos;
+
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, double backoffRatio) {
+        this(initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold, double backoffRatio,
+                       LongSupplier nanoClock) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.nanoClock = nanoClock;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Takes a slot if fewer than share of the limit are in flight; every successful call must be followed by
+     * exactly one {@link #release}.
+     */
+    public boolean tryAcquire(double share) {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= threshold(share)) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Admission check that does not take a slot
+    public boolean admits(double share) {
+        return inFlight.get() < threshold(share);
+    }
+
+    // Frees the slot; latencyNanos is null when the request gives no useful sample, e.g. it was cancelled
+    public void release(Long latencyNanos) {
+        int current = inFlight.getAndDecrement();
+        if (latencyNanos != null) {
+            onSample(latencyNanos, current);
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private int threshold(double share) {
+        return Math.max(1, (int) (limit * share));
+    }
+
+    private synchronized void onSample(long latencyNanos, int inFlightAtRelease) {
+        long now = nanoClock.getAsLong();
+        if (latencyNanos > latencyThresholdNanos) {
+            long startedAt = now - latencyNanos;
+            if (!decreased || startedAt - lastDecreaseNanos >= 0) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                decreased = true;
+                lastDecreaseNanos = now;
+            }
+        } else if (inFlightAtRelease * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.reactivespring.filter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+
+/**
+ * Sheds load before it reaches the service's handlers: requests over the adaptive concurrency limit are answered
+ * with 503 and Retry-After straight away instead of queueing on the event loop until they time out. Streams and bulk
+ * requests may only use part of the limit, so they are turned away first; actuator endpoints are never limited.
+ * <p>
+ * Each service subclasses this with its own settings prefix and decides in {@link #priorityOf} which of its routes
+ * are bulk or streams.
+ */
+public abstract class LoadSheddingWebFilter implements WebFilter {
+
+    private final boolean enabled;
+
+    private final ConcurrencyLimiter limiter;
+
+    private final double normalShare;
+
+    private final double bulkShare;
+
+    private final double streamShare;
+
+    private final MeterRegistry meterRegistry;
+
+    protected LoadSheddingWebFilter(boolean enabled, int initialLimit, int minLimit, int maxLimit, Duration latencyThreshold,
+                                    double backoffRatio, double normalShare, double bulkShare, double streamShare,
+                                    ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.limiter = new ConcurrencyLimiter(initialLimit, minLimit, maxLimit, latencyThreshold, backoffRatio);
+        this.normalShare = normalShare;
+        this.bulkShare = bulkShare;
+        this.streamShare = streamShare;
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+
+        this.meterRegistry.gauge("http.server.concurrency.limit", limiter, ConcurrencyLimiter::getLimit);
+        this.meterRegistry.gauge("http.server.concurrency.inflight", limiter, ConcurrencyLimiter::getInFlight);
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (!enabled || request.getPath().pathWithinApplication().value().startsWith("/actuator")) {
+            return chain.filter(exchange);
+        }
+
+        RequestPriority priority = priorityOf(request);
+        if (priority == RequestPriority.STREAM) {
+            return limiter.admits(streamShare) ? chain.filter(exchange) : reject(exchange, priority);
+        }
+        if (!limiter.tryAcquire(shareOf(priority))) {
+            return reject(exchange, priority);
+        }
+
+        // Bulk requests take as long as their payload does, so only the others feed latency into the limit
+        boolean sampled = priority != RequestPriority.BULK;
+        long start = System.nanoTime();
+        return chain.filter(exchange)
+                .doFinally(signal -> limiter.release(
+                        sampled && signal != SignalType.CANCEL ? System.nanoTime() - start : null));
+    }
+
+    protected abstract RequestPriority priorityOf(ServerHttpRequest request);
+
+    protected static boolean acceptsNdjson(ServerHttpRequest request) {
+        return request.getHeaders().getAccept().stream()
+                .anyMatch(mediaType -> mediaType.equalsTypeAndSubtype(MediaType.APPLICATION_NDJSON));
+    }
+
+    ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    private double shareOf(RequestPriority priority) {
+        switch (priority) {
+            case NORMAL:
+                return normalShare;
+            case BULK:
+                return bulkShare;
+            default:
+                return 1.0;
+        }
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange, RequestPriority priority) {
+        meterRegistry.counter("http.server.requests.shed", "priority", priority.name()).increment();
+        ServerHttpResponse response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, "1");
+        return response.setComplete();
+    }
+}
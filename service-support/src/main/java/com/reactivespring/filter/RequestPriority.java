@@ -0,0 +1,20 @@
+package com.reactivespring.filter;
+
+/**
+ * How important a request is when the service is overloaded; lower priorities are shed first because they are
+ * only admitted while fewer requests than their share of the concurrency limit are in flight.
+ */
+public enum RequestPriority {
+
+    // Single entity reads and writes
+    CRITICAL,
+
+    // Paged and filtered queries
+    NORMAL,
+
+    // Bulk writes, batch reads and NDJSON exports
+    BULK,
+
+    // Long-lived streams; checked on admission but not counted as in flight, as they would hold a slot for hours
+    STREAM
+}
@@ -0,0 +1,73 @@
+package com.reactivespring.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes a sampled access log to the "access" logger: sampleRate of all requests, plus every failed or slow one
+ * and every debug request. Also turns on {@link ReactiveLogging} signal logging for debug requests.
+ * <p>
+ * Configured under app.logging rather than Boot's own logging namespace, which only holds logging system settings.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class AccessLogFilter implements WebFilter {
+
+    public static final String DEBUG_HEADER = "X-Debug-Log";
+
+    private static final Logger accessLog = LoggerFactory.getLogger("access");
+
+    private final double sampleRate;
+
+    private final long slowThresholdNanos;
+
+    private final boolean signals;
+
+    private final boolean debugHeader;
+
+    public AccessLogFilter(@Value("${app.logging.access.sampleRate:0.01}") double sampleRate,
+                           @Value("${app.logging.access.slowThreshold:1s}") Duration slowThreshold,
+                           @Value("${app.logging.reactive.signals:false}") boolean signals,
+                           @Value("${app.logging.reactive.debugHeader:false}") boolean debugHeader) {
+        this.sampleRate = sampleRate;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.signals = signals;
+        this.debugHeader = debugHeader;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        boolean debug = signals
+                || (debugHeader && Boolean.parseBoolean(exchange.getRequest().getHeaders().getFirst(DEBUG_HEADER)));
+        boolean sampled = debug || ThreadLocalRandom.current().nextDouble() < sampleRate;
+        long start = System.nanoTime();
+
+        Mono<Void> response = chain.filter(exchange)
+                .doFinally(signal -> log(exchange, signal, System.nanoTime() - start, sampled));
+        return debug ? response.contextWrite(context -> context.put(ReactiveLogging.DEBUG_KEY, true)) : response;
+    }
+
+    private void log(ServerWebExchange exchange, SignalType signal, long durationNanos, boolean sampled) {
+        Integer status = exchange.getResponse().getRawStatusCode();
+        boolean failed = signal == SignalType.ON_ERROR || (status != null && status >= 500);
+        if (!(sampled || failed || durationNanos >= slowThresholdNanos) || !accessLog.isInfoEnabled()) {
+            return;
+        }
+        ServerHttpRequest request = exchange.getRequest();
+        accessLog.info("method={} path={} status={} durationMs={} signal={}", request.getMethodValue(),
+                request.getURI().getRawPath(), status == null ? "-" : status, durationNanos / 1_000_000, signal);
+    }
+}
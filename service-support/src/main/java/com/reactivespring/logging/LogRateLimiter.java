@@ -0,0 +1,55 @@
+package com.reactivespring.logging;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lets at most permits log statements through per interval and counts the rest, so a burst of failing requests
+ * cannot turn into a burst of stack traces. The next statement that gets through reports how many were dropped.
+ * <p>
+ * The current window and the statements let through in it share one long, so moving to the next window and taking
+ * a permit happen in the same compareAndSet.
+ */
+public class LogRateLimiter {
+
+    private static final long USED_MASK = 0xFFFFFFFFL;
+
+    private final int permits;
+    private final long intervalNanos;
+    private final LongSupplier nanoClock;
+    private final long origin;
+    // window number in the high 32 bits, permits used in it in the low 32
+    private final AtomicLong state = new AtomicLong();
+    private final AtomicLong suppressed = new AtomicLong();
+
+    public LogRateLimiter(int permits, Duration interval) {
+        this(permits, interval, System::nanoTime);
+    }
+
+    LogRateLimiter(int permits, Duration interval, LongSupplier nanoClock) {
+        this.permits = permits;
+        this.intervalNanos = interval.toNanos();
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    /**
+     * -1 when the statement should be skipped, otherwise the number of statements skipped since the last one that
+     * was let through.
+     */
+    public long tryAcquire() {
+        long window = ((nanoClock.getAsLong() - origin) / intervalNanos) & USED_MASK;
+        long current;
+        long used;
+        do {
+            current = state.get();
+            used = current >>> 32 == window ? current & USED_MASK : 0;
+            if (used >= permits) {
+                suppressed.incrementAndGet();
+                return -1;
+            }
+        } while (!state.compareAndSet(current, window << 32 | (used + 1)));
+        return suppressed.getAndSet(0);
+    }
+}
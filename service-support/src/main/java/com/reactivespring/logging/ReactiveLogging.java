@@ -0,0 +1,24 @@
+package com.reactivespring.logging;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Reactor signal logging that is off unless asked for. Logging every subscribe, request and onNext synchronously
+ * costs more than most of the pipelines it watches, so it only happens for requests that {@link AccessLogFilter}
+ * marked as debug in the Reactor Context: those sent with the debug header, or all of them while
+ * app.logging.reactive.signals is on. SignalLoggingBenchmark in the benchmarks project measures both the cost of the
+ * check when the flag is off and of the logging itself.
+ */
+public class ReactiveLogging {
+
+    public static final String DEBUG_KEY = ReactiveLogging.class.getName() + ".debug";
+
+    public static <T> Mono<T> debugSignals(Mono<T> source, String category) {
+        return Mono.deferContextual(context -> context.getOrDefault(DEBUG_KEY, false) ? source.log(category) : source);
+    }
+
+    public static <T> Flux<T> debugSignals(Flux<T> source, String category) {
+        return Flux.deferContextual(context -> context.getOrDefault(DEBUG_KEY, false) ? source.log(category) : source);
+    }
+}
@@ -0,0 +1,130 @@
+package com.reactivespring.repository;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mapping.PropertyHandler;
+import org.springframework.data.mapping.model.ConvertingPropertyAccessor;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Writes a batch of versioned documents with a single bulkWrite: documents with an id are upserted, the rest are
+ * inserted with a generated ObjectId that is set on them as well.
+ * <p>
+ * New documents start at version 0 like the ones save inserts: uploads with an id that is not stored yet are
+ * upserted with $setOnInsert, since $inc on an upsert would start them at 1. One _id lookup per batch tells the
+ * two apart; a document inserted in between is left as it is. Stored documents get replace semantics without a
+ * replace: $set what the upload has, $unset the mapped fields it leaves out and $inc the version, which a
+ * ReplaceOne would otherwise reset.
+ */
+public class BulkUpsert<T> {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MongoPersistentEntity<?> entity;
+
+    public BulkUpsert(ReactiveMongoTemplate reactiveMongoTemplate, Class<T> type) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.entity = reactiveMongoTemplate.getConverter().getMappingContext().getRequiredPersistentEntity(type);
+    }
+
+    public Mono<BulkWriteResult> bulkWrite(List<T> beans, boolean ordered) {
+        MongoConverter converter = reactiveMongoTemplate.getConverter();
+        List<Document> documents = new ArrayList<>(beans.size());
+        List<Object> ids = new ArrayList<>();
+        for (T bean : beans) {
+            Document document = new Document();
+            converter.write(bean, document);
+            if (document.containsKey("_id")) {
+                ids.add(document.get("_id"));
+            } else {
+                ObjectId id = new ObjectId();
+                document.put("_id", id);
+                PersistentPropertyAccessor<T> accessor =
+                        new ConvertingPropertyAccessor<>(entity.getPropertyAccessor(bean), converter.getConversionService());
+                accessor.setProperty(entity.getRequiredIdProperty(), id.toHexString());
+                accessor.setProperty(entity.getRequiredVersionProperty(), 0L);
+            }
+            documents.add(document);
+        }
+        return reactiveMongoTemplate.getCollection(entity.getCollection())
+                .flatMap(collection -> existingIds(collection, ids)
+                        .map(existing -> writes(documents, Set.copyOf(ids), existing))
+                        .flatMap(writes -> Mono.from(collection.bulkWrite(writes, new BulkWriteOptions().ordered(ordered)))));
+    }
+
+    private Mono<Set<Object>> existingIds(MongoCollection<Document> collection, List<Object> ids) {
+        if (ids.isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        return Flux.from(collection.find(new Document("_id", new Document("$in", ids)))
+                        .projection(new Document("_id", 1)))
+                .map(document -> document.get("_id"))
+                .collect(Collectors.toSet());
+    }
+
+    private List<WriteModel<Document>> writes(List<Document> documents, Set<Object> uploadedIds, Set<Object> stored) {
+        // An id uploaded twice in one batch is inserted by the first upload and updated by the second
+        Set<Object> existing = new HashSet<>(stored);
+        List<WriteModel<Document>> writes = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            Object id = document.get("_id");
+            if (existing.contains(id)) {
+                writes.add(new UpdateOneModel<>(new Document("_id", id), replacement(document), new UpdateOptions().upsert(true)));
+            } else if (uploadedIds.contains(id)) {
+                existing.add(id);
+                Document insert = initial(document);
+                insert.remove("_id");
+                writes.add(new UpdateOneModel<>(new Document("_id", id), new Document("$setOnInsert", insert),
+                        new UpdateOptions().upsert(true)));
+            } else {
+                writes.add(new InsertOneModel<>(initial(document)));
+            }
+        }
+        return writes;
+    }
+
+    private Document initial(Document document) {
+        Document initial = new Document(document);
+        initial.put(versionField(), 0L);
+        return initial;
+    }
+
+    private Document replacement(Document document) {
+        Document set = new Document(document);
+        set.remove("_id");
+        set.remove(versionField());
+        Document unset = new Document();
+        entity.doWithProperties((PropertyHandler<MongoPersistentProperty>) property -> {
+            if (!property.isIdProperty() && !property.isVersionProperty() && !document.containsKey(property.getFieldName())) {
+                unset.put(property.getFieldName(), "");
+            }
+        });
+        Document update = new Document("$set", set).append("$inc", new Document(versionField(), 1L));
+        if (!unset.isEmpty()) {
+            update.append("$unset", unset);
+        }
+        return update;
+    }
+
+    private String versionField() {
+        return entity.getRequiredVersionProperty().getFieldName();
+    }
+}
@@ -0,0 +1,46 @@
+package com.reactivespring.repository;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Times every repository method, derived queries and custom fragments alike, with Reactor metrics
+ * (mongo.repository.flow.duration etc. tagged with repository and method). Timing the returned Mono or Flux
+ * rather than the method call measures the query itself, from subscription until the last document. Only the
+ * services with repositories have Spring Data on their classpath; the others skip this post processor.
+ */
+@Component
+@ConditionalOnClass(name = "org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport")
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+    public static final String REPOSITORY_METRIC = "mongo.repository";
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport) {
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                    factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                            proxyFactory.addAdvice(timing(repositoryInformation.getRepositoryInterface().getSimpleName()))));
+        }
+        return bean;
+    }
+
+    static MethodInterceptor timing(String repository) {
+        return invocation -> {
+            Object result = invocation.proceed();
+            String method = invocation.getMethod().getName();
+            if (result instanceof Mono) {
+                return ((Mono<?>) result).name(REPOSITORY_METRIC).tag("repository", repository).tag("method", method).metrics();
+            }
+            if (result instanceof Flux) {
+                return ((Flux<?>) result).name(REPOSITORY_METRIC).tag("repository", repository).tag("method", method).metrics();
+            }
+            return result;
+        };
+    }
+}
@@ -0,0 +1,53 @@
+package com.reactivespring.tracing;
+
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.util.function.Function;
+
+/**
+ * The OpenTelemetry Context travels in the Reactor Context rather than in a ThreadLocal, so it follows a request
+ * across the event loop and driver threads. {@link TracingWebFilter} puts it there and everything downstream
+ * reads it back with {@link #current}.
+ */
+public class ReactorTracing {
+
+    public static final Class<Context> CONTEXT_KEY = Context.class;
+
+    public static Context current(ContextView contextView) {
+        return contextView.getOrDefault(CONTEXT_KEY, Context.root());
+    }
+
+    // Starts a span, with the current span as its parent, when source is subscribed to and ends it when source
+    // terminates or is cancelled; source itself sees the new span as the current one
+    public static <T> Mono<T> traced(Mono<T> source, Function<Context, Span> startSpan) {
+        return Mono.deferContextual(contextView -> {
+            Context parent = current(contextView);
+            Span span = startSpan.apply(parent);
+            return source
+                    .doOnError(e -> failed(span, e))
+                    .doFinally(signal -> span.end())
+                    .contextWrite(context -> context.put(CONTEXT_KEY, parent.with(span)));
+        });
+    }
+
+    public static <T> Flux<T> traced(Flux<T> source, Function<Context, Span> startSpan) {
+        return Flux.deferContextual(contextView -> {
+            Context parent = current(contextView);
+            Span span = startSpan.apply(parent);
+            return source
+                    .doOnError(e -> failed(span, e))
+                    .doFinally(signal -> span.end())
+                    .contextWrite(context -> context.put(CONTEXT_KEY, parent.with(span)));
+        });
+    }
+
+    static void failed(Span span, Throwable e) {
+        span.recordException(e);
+        span.setStatus(StatusCode.ERROR);
+    }
+}
@@ -0,0 +1,69 @@
+package com.reactivespring.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Gives every repository call a CLIENT span (e.g. MovieInfoRepository.findById), child of the request's span in the
+ * Reactor Context, lasting from subscription until the last document. The Mongo driver in use predates
+ * RequestContext, so its command listener cannot see the Reactor Context; the repository is the lowest layer
+ * that can. Only the services with repositories have Spring Data on their classpath; the others skip this post
+ * processor.
+ */
+@Component
+@ConditionalOnClass(name = "org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport")
+public class RepositoryTracingPostProcessor implements BeanPostProcessor {
+
+    // Resolved when the repositories are created, not when this post processor is
+    private final ObjectProvider<OpenTelemetry> openTelemetry;
+
+    public RepositoryTracingPostProcessor(ObjectProvider<OpenTelemetry> openTelemetry) {
+        this.openTelemetry = openTelemetry;
+    }
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport) {
+            ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                    factory.addRepositoryProxyPostProcessor((proxyFactory, repositoryInformation) ->
+                            proxyFactory.addAdvice(tracing(
+                                    openTelemetry.getIfAvailable(OpenTelemetry::noop).getTracer(TracingConfig.INSTRUMENTATION_NAME),
+                                    repositoryInformation.getRepositoryInterface().getSimpleName()))));
+        }
+        return bean;
+    }
+
+    static MethodInterceptor tracing(Tracer tracer, String repository) {
+        return invocation -> {
+            Object result = invocation.proceed();
+            String name = repository + "." + invocation.getMethod().getName();
+            if (result instanceof Mono) {
+                return ReactorTracing.traced((Mono<?>) result, parent -> span(tracer, parent, name));
+            }
+            if (result instanceof Flux) {
+                return ReactorTracing.traced((Flux<?>) result, parent -> span(tracer, parent, name));
+            }
+            return result;
+        };
+    }
+
+    private static Span span(Tracer tracer, Context parent, String name) {
+        return tracer.spanBuilder(name)
+                .setParent(parent)
+                .setSpanKind(SpanKind.CLIENT)
+                .setAttribute("db.system", "mongodb")
+                .setAttribute("db.operation", name.substring(name.indexOf('.') + 1))
+                .startSpan();
+    }
+}
@@ -0,0 +1,80 @@
+package com.reactivespring.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.exporter.otlp.trace.OtlpGrpcSpanExporter;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.resources.Resource;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.SdkTracerProviderBuilder;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * OpenTelemetry SDK with W3C trace context propagation. Spans are batched to an OTLP collector, or to a file, one
+ * JSON line each, when tracing.exporter is file. The default, none, keeps tracing (trace context is still
+ * propagated) but exports nothing, so a run without a collector neither logs export failures nor pays for them;
+ * environments with a collector set tracing.exporter=otlp.
+ */
+@Configuration
+public class TracingConfig {
+
+    static final String INSTRUMENTATION_NAME = "com.reactivespring";
+
+    public enum Exporter {
+        OTLP, FILE, NONE
+    }
+
+    @Bean
+    public SdkTracerProvider sdkTracerProvider(@Value("${spring.application.name}") String serviceName,
+                                               @Value("${tracing.exporter:none}") Exporter exporter,
+                                               @Value("${tracing.otlp.endpoint:http://localhost:4317}") String otlpEndpoint,
+                                               @Value("${tracing.file.path:build/spans/${spring.application.name}.jsonl}") String filePath,
+                                               @Value("${tracing.file.scheduleDelay:1s}") Duration fileScheduleDelay,
+                                               @Value("${tracing.sampleRatio:1.0}") double sampleRatio) {
+        SdkTracerProviderBuilder builder = SdkTracerProvider.builder()
+                .setResource(Resource.getDefault().merge(Resource.create(
+                        Attributes.of(AttributeKey.stringKey("service.name"), serviceName))))
+                // Follows the caller's sampling decision, so a trace is either complete or absent
+                .setSampler(Sampler.parentBased(Sampler.traceIdRatioBased(sampleRatio)));
+        switch (exporter) {
+            case OTLP:
+                builder.addSpanProcessor(BatchSpanProcessor.builder(
+                        OtlpGrpcSpanExporter.builder().setEndpoint(otlpEndpoint).build()).build());
+                break;
+            case FILE:
+                // Batched as well, so the blocking file writes happen on the processor's thread, not the event loop
+                builder.addSpanProcessor(BatchSpanProcessor.builder(new FileSpanExporter(Path.of(filePath)))
+                        .setScheduleDelay(fileScheduleDelay)
+                        .build());
+                break;
+            default:
+                break;
+        }
+        return builder.build();
+    }
+
+    @Bean
+    public OpenTelemetry openTelemetry(SdkTracerProvider sdkTracerProvider) {
+        return OpenTelemetrySdk.builder()
+                .setTracerProvider(sdkTracerProvider)
+                .setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance()))
+                .build();
+    }
+
+    // Applied to the auto-configured WebClient.Builder, so every WebClient built from it propagates the trace
+    @Bean
+    public WebClientCustomizer tracingWebClientCustomizer(OpenTelemetry openTelemetry) {
+        return builder -> builder.filter(new TracingExchangeFilterFunction(openTelemetry));
+    }
+}
@@ -0,0 +1,62 @@
+package com.reactivespring.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+/**
+ * Wraps every WebClient exchange in a CLIENT span, child of the span in the Reactor Context, and sends it along
+ * as a traceparent header. Each attempt gets its own span, so retries and hedged requests show up separately.
+ */
+public class TracingExchangeFilterFunction implements ExchangeFilterFunction {
+
+    private static final TextMapSetter<HttpHeaders> HEADERS = (headers, key, value) -> headers.set(key, value);
+
+    private final Tracer tracer;
+
+    private final TextMapPropagator propagator;
+
+    public TracingExchangeFilterFunction(OpenTelemetry openTelemetry) {
+        this.tracer = openTelemetry.getTracer(TracingConfig.INSTRUMENTATION_NAME);
+        this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return Mono.deferContextual(contextView -> {
+            Context parent = ReactorTracing.current(contextView);
+            String method = request.method().name();
+            Span span = tracer.spanBuilder("HTTP " + method)
+                    .setParent(parent)
+                    .setSpanKind(SpanKind.CLIENT)
+                    .setAttribute("http.method", method)
+                    .setAttribute("http.url", request.url().toString())
+                    .startSpan();
+            Context context = parent.with(span);
+
+            ClientRequest traced = ClientRequest.from(request)
+                    .headers(headers -> propagator.inject(context, headers, HEADERS))
+                    .build();
+            return next.exchange(traced)
+                    .doOnNext(response -> {
+                        span.setAttribute("http.status_code", response.rawStatusCode());
+                        if (response.rawStatusCode() >= 500) {
+                            span.setStatus(StatusCode.ERROR);
+                        }
+                    })
+                    .doOnError(e -> ReactorTracing.failed(span, e))
+                    .doFinally(signal -> span.end());
+        });
+    }
+}
@@ -0,0 +1,95 @@
+package com.reactivespring.tracing;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.propagation.TextMapGetter;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Starts a SERVER span for every request, continuing the trace of the caller's traceparent header, and hands
+ * it to the handlers, repositories and WebClient calls of the request through the Reactor Context. Runs right after
+ * load shedding, so shed requests stay cheap; actuator endpoints are not traced.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class TracingWebFilter implements WebFilter {
+
+    private static final TextMapGetter<HttpHeaders> HEADERS = new TextMapGetter<>() {
+        @Override
+        public Iterable<String> keys(HttpHeaders headers) {
+            return headers.keySet();
+        }
+
+        @Override
+        public String get(HttpHeaders headers, String key) {
+            return headers == null ? null : headers.getFirst(key);
+        }
+    };
+
+    private final Tracer tracer;
+
+    private final TextMapPropagator propagator;
+
+    // No-op without an OpenTelemetry bean, e.g. in @WebFluxTest slices
+    public TracingWebFilter(ObjectProvider<OpenTelemetry> openTelemetry) {
+        OpenTelemetry otel = openTelemetry.getIfAvailable(OpenTelemetry::noop);
+        this.tracer = otel.getTracer(TracingConfig.INSTRUMENTATION_NAME);
+        this.propagator = otel.getPropagators().getTextMapPropagator();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (request.getPath().pathWithinApplication().value().startsWith("/actuator")) {
+            return chain.filter(exchange);
+        }
+
+        Context parent = propagator.extract(Context.root(), request.getHeaders(), HEADERS);
+        String method = request.getMethodValue();
+        Span span = tracer.spanBuilder("HTTP " + method)
+                .setParent(parent)
+                .setSpanKind(SpanKind.SERVER)
+                .setAttribute("http.method", method)
+                .setAttribute("http.target", request.getURI().getRawPath())
+                .startSpan();
+
+        return chain.filter(exchange)
+                .doOnError(span::recordException)
+                .doFinally(signal -> end(span, exchange, method, signal))
+                .contextWrite(context -> context.put(ReactorTracing.CONTEXT_KEY, parent.with(span)));
+    }
+
+    private void end(Span span, ServerWebExchange exchange, String method, SignalType signal) {
+        Object pattern = exchange.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            String route = pattern instanceof PathPattern ? ((PathPattern) pattern).getPatternString() : pattern.toString();
+            span.updateName(method + " " + route);
+            span.setAttribute("http.route", route);
+        }
+        Integer status = exchange.getResponse().getRawStatusCode();
+        if (status != null) {
+            span.setAttribute("http.status_code", status);
+        }
+        if (signal == SignalType.ON_ERROR || (status != null && status >= 500)) {
+            span.setStatus(StatusCode.ERROR);
+        }
+        span.end();
+    }
+}
@@ -0,0 +1,52 @@
+package com.reactivespring.validation;
+
+import org.springframework.stereotype.Component;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bean Validation that reports violations as a value instead of an exception. Hibernate Validator keeps the
+ * constraint metadata of each class in the Validator, so the one shared Spring Validator is used for every request
+ * and bulk item.
+ */
+@Component
+public class BeanValidation {
+
+    private static final Comparator<ValidationErrors.FieldError> BY_MESSAGE =
+            Comparator.comparing(ValidationErrors.FieldError::getMessage).thenComparing(ValidationErrors.FieldError::getField);
+
+    private final Validator validator;
+
+    public BeanValidation(Validator validator) {
+        this.validator = validator;
+    }
+
+    public <T> ValidationErrors validate(T bean) {
+        return errors(validator.validate(bean));
+    }
+
+    // Checks the constraints of the given properties only, for partial updates that never hold the whole bean
+    public <T> ValidationErrors validateValues(Class<T> type, Map<String, Object> values) {
+        Set<ConstraintViolation<T>> violations = new HashSet<>();
+        values.forEach((property, value) -> violations.addAll(validator.validateValue(type, property, value)));
+        return errors(violations);
+    }
+
+    private static <T> ValidationErrors errors(Set<ConstraintViolation<T>> violations) {
+        if (violations.isEmpty()) {
+            return ValidationErrors.NONE;
+        }
+        List<ValidationErrors.FieldError> errors = violations.stream()
+                .map(violation -> new ValidationErrors.FieldError(violation.getPropertyPath().toString(), violation.getMessage()))
+                .sorted(BY_MESSAGE)
+                .collect(Collectors.toList());
+        return ValidationErrors.of(errors);
+    }
+}
@@ -0,0 +1,51 @@
+package com.reactivespring.validation;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Getter;
+import lombok.Value;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The outcome of validating a request, written as-is as an RFC 7807 application/problem+json body.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_EMPTY)
+public class ValidationErrors {
+
+    public static final ValidationErrors NONE = new ValidationErrors(null, List.of());
+
+    @Value
+    public static class FieldError {
+        String field;
+        String message;
+    }
+
+    private final String type = "about:blank";
+    private final String title = "Bad Request";
+    private final int status = 400;
+    // The messages sorted and joined with ",", the same text the plain-text 400 responses used to carry
+    private final String detail;
+    private final List<FieldError> errors;
+
+    private ValidationErrors(String detail, List<FieldError> errors) {
+        this.detail = detail;
+        this.errors = errors;
+    }
+
+    // A problem with the request itself (a query parameter, a path variable) rather than with fields of the body
+    public static ValidationErrors of(String detail) {
+        return new ValidationErrors(detail, List.of());
+    }
+
+    // errors must already be sorted by message
+    static ValidationErrors of(List<FieldError> errors) {
+        String detail = errors.stream().map(FieldError::getMessage).collect(Collectors.joining(","));
+        return new ValidationErrors(detail, List.copyOf(errors));
+    }
+
+    public boolean hasErrors() {
+        return detail != null;
+    }
+}
@@ -0,0 +1,86 @@
+package com.reactivespring.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    static final long FAST = Duration.ofMillis(10).toNanos();
+    static final long SLOW = Duration.ofSeconds(1).toNanos();
+
+    AtomicLong now = new AtomicLong(Duration.ofSeconds(2).toNanos());
+
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 2, 20, Duration.ofMillis(500), 0.5, now::get);
+
+    @Test
+    void rejectsOverTheShareOfTheLimit() {
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire(0.5));
+        }
+
+        assertFalse(limiter.tryAcquire(0.5));
+        assertFalse(limiter.admits(0.5));
+        assertTrue(limiter.tryAcquire(1.0));
+        assertEquals(6, limiter.getInFlight());
+    }
+
+    @Test
+    void aBurstOfSlowResponsesBacksOffOnce() {
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(1.0);
+        }
+        for (int i = 0; i < 5; i++) {
+            limiter.release(SLOW);
+        }
+        assertEquals(5, limiter.getLimit());
+
+        // Started after the first decrease, so it is a new congestion signal
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        limiter.tryAcquire(1.0);
+        limiter.release(SLOW);
+        assertEquals(2, limiter.getLimit());
+
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        limiter.tryAcquire(1.0);
+        limiter.release(SLOW);
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void fastRequestsGrowTheLimitByAboutOnePerLimitsWorth() {
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(1.0);
+        }
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(1.0);
+            limiter.release(FAST);
+        }
+        assertEquals(10, limiter.getLimit());
+
+        limiter.tryAcquire(1.0);
+        limiter.release(FAST);
+        assertEquals(11, limiter.getLimit());
+    }
+
+    @Test
+    void idleOrCancelledRequestsDoNotGrowTheLimit() {
+        for (int i = 0; i < 20; i++) {
+            limiter.tryAcquire(1.0);
+            limiter.release(FAST);
+        }
+        assertEquals(10, limiter.getLimit());
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(1.0);
+        }
+        limiter.release(null);
+        assertEquals(10, limiter.getLimit());
+        assertEquals(4, limiter.getInFlight());
+    }
+}
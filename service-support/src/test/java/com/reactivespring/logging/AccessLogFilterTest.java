@@ -0,0 +1,89 @@
+package com.reactivespring.logging;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccessLogFilterTest {
+
+    ListAppender<ILoggingEvent> accessLog = new ListAppender<>();
+
+    ListAppender<ILoggingEvent> signalLog = new ListAppender<>();
+
+    @BeforeEach
+    void setUp() {
+        accessLog.start();
+        signalLog.start();
+        ((Logger) LoggerFactory.getLogger("access")).addAppender(accessLog);
+        ((Logger) LoggerFactory.getLogger("AccessLogFilterTest.pipeline")).addAppender(signalLog);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ((Logger) LoggerFactory.getLogger("access")).detachAppender(accessLog);
+        ((Logger) LoggerFactory.getLogger("AccessLogFilterTest.pipeline")).detachAppender(signalLog);
+    }
+
+    // Runs the request through the filter with a handler whose pipeline is wrapped in debugSignals
+    void run(AccessLogFilter filter, MockServerHttpRequest request, HttpStatus status) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, e -> {
+            e.getResponse().setStatusCode(status);
+            return ReactiveLogging.debugSignals(Mono.just("body"), "AccessLogFilterTest.pipeline").then();
+        }).block();
+    }
+
+    @Test
+    void signalsAreOnlyLoggedForDebugRequests() {
+        AccessLogFilter filter = new AccessLogFilter(0.0, Duration.ofSeconds(1), false, true);
+
+        run(filter, MockServerHttpRequest.get("/v1/movies/1").build(), HttpStatus.OK);
+        assertTrue(signalLog.list.isEmpty());
+        assertTrue(accessLog.list.isEmpty());
+
+        run(filter, MockServerHttpRequest.get("/v1/movies/1").header(AccessLogFilter.DEBUG_HEADER, "true").build(), HttpStatus.OK);
+        assertFalse(signalLog.list.isEmpty());
+        assertEquals(1, accessLog.list.size());
+    }
+
+    @Test
+    void debugHeaderIsIgnoredUnlessEnabled() {
+        AccessLogFilter filter = new AccessLogFilter(0.0, Duration.ofSeconds(1), false, false);
+        AtomicBoolean debug = new AtomicBoolean();
+
+        filter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/1")
+                        .header(AccessLogFilter.DEBUG_HEADER, "true").build()),
+                e -> Mono.deferContextual(context -> {
+                    debug.set(context.getOrDefault(ReactiveLogging.DEBUG_KEY, false));
+                    return Mono.empty();
+                })).block();
+
+        assertFalse(debug.get());
+    }
+
+    @Test
+    void failedRequestsAreLoggedWhateverTheSampleRate() {
+        AccessLogFilter filter = new AccessLogFilter(0.0, Duration.ofSeconds(1), false, false);
+
+        run(filter, MockServerHttpRequest.get("/v1/movies/1").build(), HttpStatus.OK);
+        run(filter, MockServerHttpRequest.get("/v1/movies/2").build(), HttpStatus.BAD_GATEWAY);
+
+        assertEquals(1, accessLog.list.size());
+        assertTrue(accessLog.list.get(0).getFormattedMessage().contains("path=/v1/movies/2 status=502"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.reactivespring.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LogRateLimiterTest {
+
+    @Test
+    void dropsOverThePermitsAndReportsThemOnceTheWindowTurns() throws InterruptedException {
+        LogRateLimiter limiter = new LogRateLimiter(2, Duration.ofMillis(50));
+
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+
+        Thread.sleep(60);
+        assertEquals(2, limiter.tryAcquire());
+        assertEquals(0, limiter.tryAcquire());
+        assertEquals(-1, limiter.tryAcquire());
+    }
+
+    @Test
+    void concurrentCallersShareThePermitsOfAWindowAndNoDropGoesUnreported() throws Exception {
+        AtomicLong now = new AtomicLong();
+        LogRateLimiter limiter = new LogRateLimiter(10, Duration.ofSeconds(1), now::get);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        long reported = 0;
+        try {
+            for (int window = 0; window < 50; window++) {
+                List<Callable<Long>> calls = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    calls.add(limiter::tryAcquire);
+                }
+                long acquired = 0;
+                for (Future<Long> result : executor.invokeAll(calls)) {
+                    if (result.get() >= 0) {
+                        acquired++;
+                        reported += result.get();
+                    }
+                }
+                assertEquals(10, acquired);
+                now.addAndGet(Duration.ofSeconds(1).toNanos());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(50 * 90, reported + limiter.tryAcquire());
+    }
+}
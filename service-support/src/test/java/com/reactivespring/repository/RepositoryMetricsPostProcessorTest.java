@@ -0,0 +1,83 @@
+package com.reactivespring.repository;
+
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RepositoryMetricsPostProcessorTest {
+
+    interface TitleRepository {
+
+        Flux<String> findAll();
+
+        Mono<String> findById(String id);
+
+        long count();
+    }
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    TitleRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.addRegistry(meterRegistry);
+        ProxyFactory proxyFactory = new ProxyFactory(new TitleRepository() {
+            @Override
+            public Flux<String> findAll() {
+                return Flux.just("Batman Begins", "The Dark Knight");
+            }
+
+            @Override
+            public Mono<String> findById(String id) {
+                return Mono.error(new IllegalStateException("down"));
+            }
+
+            @Override
+            public long count() {
+                return 2;
+            }
+        });
+        proxyFactory.addAdvice(RepositoryMetricsPostProcessor.timing("TitleRepository"));
+        repository = (TitleRepository) proxyFactory.getProxy();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.removeRegistry(meterRegistry);
+    }
+
+    Timer flowDuration(String method, String status) {
+        return meterRegistry.find("mongo.repository.flow.duration")
+                .tag("repository", "TitleRepository")
+                .tag("method", method)
+                .tag("status", status)
+                .timer();
+    }
+
+    @Test
+    void timesTheReturnedPublisherPerMethod() {
+        StepVerifier.create(repository.findAll()).expectNextCount(2).verifyComplete();
+        StepVerifier.create(repository.findById("abc")).expectError(IllegalStateException.class).verify();
+
+        assertEquals(1, flowDuration("findAll", "completed").count());
+        assertEquals(1, flowDuration("findById", "error").count());
+    }
+
+    @Test
+    void leavesNonReactiveResultsAlone() {
+        assertEquals(2, repository.count());
+
+        assertNull(meterRegistry.find("mongo.repository.flow.duration").tag("method", "count").timer());
+    }
+}